@@ -55,6 +55,8 @@ public class MavenConfigModule extends AbstractModule {
     bind(WhiteList.class).toInstance(new RegExpWhiteList(testabilityExplorerMojo.whiteList));
     bind(ReportFormat.class).toInstance(ReportFormat.valueOf(testabilityExplorerMojo.format));
     bindConstant().annotatedWith(Names.named("printDepth")).to(testabilityExplorerMojo.printDepth);
+    bindConstant().annotatedWith(Names.named("memoize")).to(
+        testabilityExplorerMojo.memoize != null && testabilityExplorerMojo.memoize);
     bind(new TypeLiteral<List<String>>() {}).toInstance(Arrays.asList(testabilityExplorerMojo.filter));
     bind(Runnable.class).to(JavaTestabilityRunner.class);
   }
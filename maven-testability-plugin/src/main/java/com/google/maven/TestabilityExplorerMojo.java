@@ -93,6 +93,14 @@ public class TestabilityExplorerMojo extends AbstractMavenReport {
    */
   Integer printDepth;
 
+  /**
+   * Reuse the cost of methods which are identical to an already analyzed method
+   * apart from the class name, such as generated accessors.
+   *
+   * @parameter default-value=false
+   */
+  Boolean memoize;
+
   /**
    * Minimum cost to print a class metrics
    *
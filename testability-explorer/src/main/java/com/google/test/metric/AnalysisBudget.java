@@ -0,0 +1,54 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much work the analysis of a single method may take. Once any of the
+ * limits is reached the analysis stops, and the cost found so far is reported
+ * as {@link MethodCost#isTruncated() truncated}. A limit of 0 means no limit.
+ */
+public class AnalysisBudget {
+
+  private final int maxFrames;
+  private final long maxOperations;
+  private final long maxNanos;
+
+  /**
+   * @param maxFrames how many method calls may be followed.
+   * @param maxOperations how many operations may be applied.
+   * @param maxMillis how long the analysis may take.
+   */
+  public AnalysisBudget(int maxFrames, long maxOperations, long maxMillis) {
+    this.maxFrames = maxFrames;
+    this.maxOperations = maxOperations;
+    this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+  }
+
+  public boolean isExceeded(int frames, long operations, long startNanos) {
+    return (maxFrames > 0 && frames > maxFrames)
+        || (maxOperations > 0 && operations > maxOperations)
+        || (maxNanos > 0 && System.nanoTime() - startNanos > maxNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "AnalysisBudget[frames=" + maxFrames + ", operations=" + maxOperations
+        + ", millis=" + TimeUnit.NANOSECONDS.toMillis(maxNanos) + "]";
+  }
+
+}
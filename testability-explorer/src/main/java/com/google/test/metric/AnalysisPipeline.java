@@ -0,0 +1,512 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.classpath.ClassPath;
+import com.google.test.metric.report.ReportGenerator;
+
+/**
+ * Analyzes classes in four stages which run at the same time:
+ * <ol>
+ * <li>a single thread reads the class files from the class path, or streams
+ * them with a {@link ClassPathStreamer},</li>
+ * <li>a pool of threads builds their {@link ClassInfo}s,</li>
+ * <li>a pool of threads computes their {@link ClassCost}s,</li>
+ * <li>and the calling thread adds the costs to the model and the report, in
+ * the order the classes were given.</li>
+ * </ol>
+ * The stages are joined by bounded queues, so a fast stage waits for a slow one
+ * rather than filling up memory. For the same reason, a class is only read
+ * once it is less than {@link #EARLY_PER_QUEUE_SLOT} times the queue size
+ * after the next class to report, so that at most that many costs are held
+ * back for the classes before them.
+ * The classes may be read in a different order than they are reported, such
+ * as the one of a {@link CostSchedule}, which then applies within windows of
+ * that size.
+ */
+public class AnalysisPipeline {
+
+  /** A class on its way through the pipeline. */
+  static class Work {
+    private static final Work END = new Work(-1, null, null);
+
+    private final int sequence;
+    private final String className;
+    private final String resource;
+    private byte[] classBytes;
+    private ClassInfo classInfo;
+    private ClassCost classCost;
+    private long analyzeNanos;
+    private String warning;
+
+    Work(int sequence, String className, String resource) {
+      this.sequence = sequence;
+      this.className = className;
+      this.resource = resource;
+    }
+  }
+
+  /** Counts how much each stage did, and for how long. */
+  public static class Stage {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+
+    Stage(String name) {
+      this.name = name;
+    }
+
+    void record(long startNanos) {
+      count.incrementAndGet();
+      nanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getCount() {
+      return count.get();
+    }
+
+    public long getMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    @Override
+    public String toString() {
+      long millis = getMillis();
+      return String.format("%s: %d classes in %d ms of thread time (%.1f classes/s)", name,
+          getCount(), millis, millis == 0 ? 0.0 : 1000.0 * getCount() / millis);
+    }
+  }
+
+  static final int EARLY_PER_QUEUE_SLOT = 10;
+
+  private final ClassPath classPath;
+  private final ClassRepository classRepository;
+  private final MetricComputer computer;
+  private final int threads;
+  private final int queueSize;
+  private final Stage read = new Stage("read");
+  private final Stage parse = new Stage("parse");
+  private final Stage analyze = new Stage("analyze");
+  private final Stage report = new Stage("report");
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private final Map<String, Long> analysisMicros = new TreeMap<String, Long>();
+  private ClassPathStreamer streamer;
+  private ClassPrefetcher prefetcher;
+  private List<Integer> schedule;
+  private final Object progress = new Object();
+  private int reported;
+
+  public AnalysisPipeline(ClassPath classPath, ClassRepository classRepository,
+      MetricComputer computer, int threads, int queueSize) {
+    this.classPath = classPath;
+    this.classRepository = classRepository;
+    this.computer = computer;
+    this.threads = threads;
+    this.queueSize = queueSize;
+  }
+
+  /**
+   * Analyzes the given classes, and adds their costs to the {@code model} and
+   * the {@code reportGenerator} in the order of {@code classNames}.
+   *
+   * @param classNames names of the classes to analyze, in report order.
+   * @param resources the class file of each class, such as {@code a/B$C.class}.
+   * @param model can be {@code null}, if only the report needs the costs.
+   * @param reportGenerator can be {@code null}.
+   */
+  public void run(List<String> classNames, List<String> resources, AnalysisModel model,
+      ReportGenerator reportGenerator, PrintStream err) {
+    final BlockingQueue<Work> parseQueue = new ArrayBlockingQueue<Work>(queueSize);
+    final BlockingQueue<Work> analyzeQueue = new ArrayBlockingQueue<Work>(queueSize);
+    final BlockingQueue<Work> results = new ArrayBlockingQueue<Work>(queueSize);
+    synchronized (progress) {
+      reported = 0;
+    }
+    ExecutorService readers = Executors.newSingleThreadExecutor();
+    ExecutorService parsers = Executors.newFixedThreadPool(threads);
+    ExecutorService analyzers = Executors.newFixedThreadPool(threads);
+    try {
+      readers.execute(guard(readStage(classNames, resources, parseQueue)));
+      AtomicInteger parsing = new AtomicInteger(threads);
+      AtomicInteger analyzing = new AtomicInteger(threads);
+      for (int i = 0; i < threads; i++) {
+        parsers.execute(guard(parseStage(parseQueue, analyzeQueue, results, parsing)));
+        analyzers.execute(guard(analyzeStage(analyzeQueue, results, analyzing)));
+      }
+      reportStage(results, model, reportGenerator, err);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      readers.shutdownNow();
+      parsers.shutdownNow();
+      analyzers.shutdownNow();
+    }
+  }
+
+  /**
+   * Read the class files front to back with the {@code streamer}, rather than
+   * one by one from the class path.
+   */
+  public void setStreamer(ClassPathStreamer streamer) {
+    this.streamer = streamer;
+  }
+
+  /**
+   * Start loading the classes which a class calls as soon as it is parsed, so
+   * that they are ready by the time it is analyzed.
+   */
+  public void setPrefetcher(ClassPrefetcher prefetcher) {
+    this.prefetcher = prefetcher;
+  }
+
+  /**
+   * Read the classes in this order rather than in report order. Since only so
+   * many classes can be held back, the order applies within windows of
+   * {@link #getWindow()} classes in report order.
+   *
+   * @param schedule indexes of the class names given to {@link #run}.
+   */
+  public void setSchedule(List<Integer> schedule) {
+    this.schedule = schedule;
+  }
+
+  /**
+   * @return how many classes can be read ahead of the next class to report.
+   */
+  int getWindow() {
+    return queueSize * EARLY_PER_QUEUE_SLOT;
+  }
+
+  /**
+   * @return how long the analysis of each class of the last run took, in
+   *         microseconds, by class name.
+   */
+  public Map<String, Long> getAnalysisMicros() {
+    return analysisMicros;
+  }
+
+  public List<Stage> getStages() {
+    List<Stage> stages = new ArrayList<Stage>();
+    stages.add(read);
+    stages.add(parse);
+    stages.add(analyze);
+    stages.add(report);
+    return stages;
+  }
+
+  private Runnable readStage(final List<String> classNames, final List<String> resources,
+      final BlockingQueue<Work> parseQueue) {
+    return new Runnable() {
+      public void run() {
+        try {
+          Map<String, Integer> unread = new HashMap<String, Integer>();
+          for (int i = 0; i < resources.size(); i++) {
+            unread.put(resources.get(i), i);
+          }
+          if (streamer != null) {
+            stream(classNames, unread, parseQueue);
+          }
+          for (int i : readOrder(classNames.size())) {
+            if (unread.containsKey(resources.get(i))) {
+              awaitWindow(i);
+              long start = System.nanoTime();
+              Work work = new Work(i, classNames.get(i), resources.get(i));
+              work.classBytes = readBytes(work.resource);
+              read.record(start);
+              parseQueue.put(work);
+            }
+          }
+          for (int i = 0; i < threads; i++) {
+            parseQueue.put(Work.END);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  /**
+   * Blocks until the class with this sequence is within the window after the
+   * next class to report.
+   */
+  private void awaitWindow(int sequence) throws InterruptedException {
+    synchronized (progress) {
+      while (sequence >= reported + getWindow()) {
+        progress.wait();
+      }
+    }
+  }
+
+  private boolean inWindow(int sequence) {
+    synchronized (progress) {
+      return sequence < reported + getWindow();
+    }
+  }
+
+  /**
+   * The schedule within each window of the report order, so that the next class
+   * to report is always read before the window is full. Classes the schedule
+   * leaves out are read at the end of their window.
+   */
+  List<Integer> readOrder(int size) {
+    int window = getWindow();
+    List<List<Integer>> windows = new ArrayList<List<Integer>>();
+    for (int i = 0; i < size; i += window) {
+      windows.add(new ArrayList<Integer>(window));
+    }
+    boolean[] scheduled = new boolean[size];
+    if (schedule != null) {
+      for (int i : schedule) {
+        if (!scheduled[i]) {
+          scheduled[i] = true;
+          windows.get(i / window).add(i);
+        }
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (!scheduled[i]) {
+        windows.get(i / window).add(i);
+      }
+    }
+    List<Integer> order = new ArrayList<Integer>(size);
+    for (List<Integer> classes : windows) {
+      order.addAll(classes);
+    }
+    return order;
+  }
+
+  private void stream(final List<String> classNames, final Map<String, Integer> unread,
+      final BlockingQueue<Work> parseQueue) {
+    final long[] start = {System.nanoTime()};
+    try {
+      streamer.stream(new ClassPathStreamer.Handler() {
+        public void handle(String resource, byte[] classBytes) {
+          Integer sequence = unread.get(resource);
+          if (sequence == null || !inWindow(sequence)) {
+            // Too far ahead to hold back: read it in report order after streaming.
+            return;
+          }
+          unread.remove(resource);
+          Work work = new Work(sequence, classNames.get(sequence), resource);
+          work.classBytes = classBytes;
+          read.record(start[0]);
+          try {
+            parseQueue.put(work);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+          }
+          start[0] = System.nanoTime();
+        }
+      });
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Runnable parseStage(final BlockingQueue<Work> parseQueue,
+      final BlockingQueue<Work> analyzeQueue, final BlockingQueue<Work> results,
+      final AtomicInteger parsing) {
+    return new Runnable() {
+      public void run() {
+        try {
+          for (Work work = parseQueue.take(); work != Work.END; work = parseQueue.take()) {
+            long start = System.nanoTime();
+            try {
+              work.classInfo = loadClass(work);
+            } catch (ClassNotFoundException e) {
+              work.warning = warning(work.className, e);
+            }
+            work.classBytes = null;
+            parse.record(start);
+            if (work.classInfo == null) {
+              results.put(work);
+            } else {
+              if (prefetcher != null) {
+                prefetcher.prefetch(work.classInfo);
+              }
+              analyzeQueue.put(work);
+            }
+          }
+          if (parsing.decrementAndGet() == 0) {
+            for (int i = 0; i < threads; i++) {
+              analyzeQueue.put(Work.END);
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private Runnable analyzeStage(final BlockingQueue<Work> analyzeQueue,
+      final BlockingQueue<Work> results, final AtomicInteger analyzing) {
+    return new Runnable() {
+      public void run() {
+        try {
+          for (Work work = analyzeQueue.take(); work != Work.END; work = analyzeQueue.take()) {
+            long start = System.nanoTime();
+            try {
+              work.classCost = computer.compute(work.classInfo);
+            } catch (ClassNotFoundException e) {
+              work.warning = warning(work.className, e);
+            }
+            work.classInfo = null;
+            work.analyzeNanos = System.nanoTime() - start;
+            analyze.record(start);
+            results.put(work);
+          }
+          if (analyzing.decrementAndGet() == 0) {
+            results.put(Work.END);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  /**
+   * Hands the results to the model and the report in sequence, holding back
+   * the ones which arrive early. The read stage keeps them within the window.
+   */
+  private void reportStage(BlockingQueue<Work> results, AnalysisModel model,
+      ReportGenerator reportGenerator, PrintStream err) throws InterruptedException {
+    TreeMap<Integer, Work> early = new TreeMap<Integer, Work>();
+    int next = 0;
+    while (true) {
+      Work work = results.poll(100, TimeUnit.MILLISECONDS);
+      checkFailure();
+      if (work == Work.END) {
+        break;
+      } else if (work == null) {
+        continue;
+      }
+      early.put(work.sequence, work);
+      int before = next;
+      for (work = early.remove(next); work != null; work = early.remove(next)) {
+        reportClass(work, model, reportGenerator, err);
+        next++;
+      }
+      if (next > before) {
+        synchronized (progress) {
+          reported = next;
+          progress.notifyAll();
+        }
+      }
+    }
+    for (Work work : early.values()) {
+      reportClass(work, model, reportGenerator, err);
+    }
+  }
+
+  private void reportClass(Work work, AnalysisModel model, ReportGenerator reportGenerator,
+      PrintStream err) {
+    long start = System.nanoTime();
+    if (work.warning != null) {
+      err.println(work.warning);
+    }
+    if (work.classCost != null) {
+      analysisMicros.put(work.className, TimeUnit.NANOSECONDS.toMicros(work.analyzeNanos));
+      if (model != null) {
+        model.addClassCost(work.classCost);
+      }
+      if (reportGenerator != null) {
+        reportGenerator.addClassCost(work.classCost);
+      }
+    }
+    report.record(start);
+  }
+
+  private ClassInfo loadClass(Work work) {
+    if (work.classBytes != null && classRepository instanceof JavaClassRepository) {
+      return ((JavaClassRepository) classRepository).getClass(work.className,
+          new ByteArrayInputStream(work.classBytes));
+    }
+    return classRepository.getClass(work.className);
+  }
+
+  private byte[] readBytes(String resource) {
+    InputStream in = classPath.getResourceAsStream(resource);
+    if (in == null) {
+      return null;
+    }
+    try {
+      try {
+        return ClassPathStreamer.readBytes(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static String warning(String className, ClassNotFoundException e) {
+    return "WARNING: can not analyze class '" + className + "' since class '"
+        + e.getClassName() + "' was not found. Chain: " + e.getMessage();
+  }
+
+  /** Records a failure of any stage, so that the report stage can give up. */
+  private Runnable guard(final Runnable stage) {
+    return new Runnable() {
+      public void run() {
+        try {
+          stage.run();
+        } catch (RuntimeException e) {
+          failure.compareAndSet(null, e);
+        } catch (Error e) {
+          failure.compareAndSet(null, e);
+        }
+      }
+    };
+  }
+
+  private void checkFailure() {
+    Throwable e = failure.get();
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    }
+  }
+
+}
@@ -30,13 +30,32 @@ public class ClassCost {
     }
 
     public int compare(ClassCost c1, ClassCost c2) {
-      int diff = (costModel.computeClass(c2) - costModel.computeClass(c1));
+      int diff = (c2.getOverallCost(costModel) - c1.getOverallCost(costModel));
       return diff == 0 ? c1.className.compareTo(c2.className) : diff;
     }
   }
 
+  /** The overall cost of a class under one {@link CostModel}. */
+  private static class Score {
+    private final CostModel costModel;
+    private final int overallCost;
+
+    Score(CostModel costModel, int overallCost) {
+      this.costModel = costModel;
+      this.overallCost = overallCost;
+    }
+  }
+
+  /**
+   * Reports use one or two cost models. A sweep uses more, but its summaries
+   * keep the score of each class they hold, see {@code SummaryAggregate}.
+   */
+  static final int MAX_SCORES = 16;
+
   private final List<MethodCost> methods;
   private final String className;
+  /** The most recently used first, of at most {@link #MAX_SCORES} cost models. */
+  private volatile Score[] scores = new Score[0];
 
   public ClassCost(String className, List<MethodCost> methods) {
     this.className = className;
@@ -58,6 +77,26 @@ public class ClassCost {
     return className;
   }
 
+  /**
+   * @return the overall cost of this class under the {@code costModel}, which
+   *         is computed once for each of the last few cost models asked, rather
+   *         than on every comparison or report which needs it.
+   */
+  public int getOverallCost(CostModel costModel) {
+    Score[] known = scores;
+    for (Score score : known) {
+      if (score.costModel == costModel) {
+        return score.overallCost;
+      }
+    }
+    Score score = new Score(costModel, costModel.computeClassCost(this));
+    Score[] updated = new Score[Math.min(known.length + 1, MAX_SCORES)];
+    updated[0] = score;
+    System.arraycopy(known, 0, updated, 1, updated.length - 1);
+    scores = updated;
+    return score.overallCost;
+  }
+
   public String getClassName() {
     return className;
   }
@@ -111,9 +150,24 @@ public class ClassCost {
     return cost;
   }
 
+  /**
+   * @return true if the analysis of any of the methods was truncated.
+   */
+  public boolean isTruncated() {
+    for (MethodCost methodCost : getMethods()) {
+      if (methodCost.isTruncated()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public Map<String, Object> getAttributes() {
     HashMap<String, Object> map = new HashMap<String, Object>();
     map.put(CLASS_NAME, className);
+    if (isTruncated()) {
+      map.put(MethodCost.TRUNCATED_ATTRIBUTE, true);
+    }
     return map;
   }
 
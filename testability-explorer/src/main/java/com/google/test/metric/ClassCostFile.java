@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Reads any class of a file written by a {@link ClassCostWriter}, by its name,
+ * without reading the classes before it.
+ */
+public class ClassCostFile {
+
+  /** Where a class starts in the file. */
+  private static class Entry {
+    private final int sequence;
+    private final long offset;
+    private final int length;
+
+    Entry(int sequence, long offset, int length) {
+      this.sequence = sequence;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private final RandomAccessFile file;
+  private final Shard shard;
+  private final boolean details;
+  /** All names of the file, shared read only by the readers of its classes. */
+  private final List<String> strings = new ArrayList<String>();
+  private final SortedMap<String, Entry> index = new TreeMap<String, Entry>();
+
+  public ClassCostFile(File resultsFile) throws IOException {
+    file = new RandomAccessFile(resultsFile, "r");
+    try {
+      ClassCostReader.readHeader(file);
+      shard = new Shard(ClassCostReader.readUnsigned(file), ClassCostReader.readUnsigned(file));
+      details = file.readBoolean();
+      file.seek(file.length() - ClassCostWriter.TRAILER_SIZE);
+      long indexOffset = file.readLong();
+      if (file.readInt() != ClassCostWriter.MAGIC || indexOffset < 0
+          || indexOffset > file.length() - ClassCostWriter.TRAILER_SIZE) {
+        throw new IOException("The results in " + resultsFile + " are incomplete");
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(indexOffset,
+          (int) (file.length() - ClassCostWriter.TRAILER_SIZE - indexOffset))));
+      int stringCount = ClassCostReader.readUnsigned(in);
+      for (int i = 0; i < stringCount; i++) {
+        strings.add(in.readUTF());
+      }
+      int classCount = ClassCostReader.readUnsigned(in);
+      for (int i = 0; i < classCount; i++) {
+        String className = strings.get(ClassCostReader.readUnsigned(in));
+        index.put(className, new Entry(ClassCostReader.readUnsigned(in),
+            ClassCostReader.readUnsignedLong(in), (int) ClassCostReader.readUnsignedLong(in)));
+      }
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return whether the file starts like a file written by a
+   *         {@link ClassCostWriter}, rather than like a report.
+   */
+  public static boolean isResultsFile(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      return in.readInt() == ClassCostWriter.MAGIC;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      in.close();
+    }
+  }
+
+  public Shard getShard() {
+    return shard;
+  }
+
+  /**
+   * @return whether the file has the costs which make up the totals of each
+   *         method, or only the totals.
+   */
+  public boolean hasDetails() {
+    return details;
+  }
+
+  /**
+   * @return the names of all classes in the file, in order.
+   */
+  public SortedSet<String> getClassNames() {
+    return new TreeSet<String>(index.keySet());
+  }
+
+  /**
+   * @return the place of the class in the order of the whole analysis, or -1
+   *         if the file does not have it.
+   */
+  public int getSequence(String className) {
+    Entry entry = index.get(className);
+    return entry == null ? -1 : entry.sequence;
+  }
+
+  /**
+   * @return the class, or {@code null} if the file does not have it.
+   */
+  public ClassCost read(String className) throws IOException {
+    Entry entry = index.get(className);
+    if (entry == null) {
+      return null;
+    }
+    ClassCostReader reader = new ClassCostReader(new ByteArrayInputStream(read(entry.offset,
+        entry.length)), shard, details, strings);
+    ClassCost classCost = reader.read();
+    if (classCost == null || !classCost.getClassName().equals(className)) {
+      throw new IOException("The index of the results does not match " + className);
+    }
+    return classCost;
+  }
+
+  public void close() throws IOException {
+    file.close();
+  }
+
+  private synchronized byte[] read(long offset, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    file.seek(offset);
+    file.readFully(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static com.google.test.metric.ClassCostWriter.CONSTRUCTOR_INVOCATION;
+import static com.google.test.metric.ClassCostWriter.CYCLOMATIC;
+import static com.google.test.metric.ClassCostWriter.GLOBAL;
+import static com.google.test.metric.ClassCostWriter.LOD;
+import static com.google.test.metric.ClassCostWriter.METHOD_INVOCATION;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads the {@link ClassCost}s written by a {@link ClassCostWriter}, and
+ * merges the results of the shards of an analysis.
+ */
+public class ClassCostReader {
+
+  private final DataInputStream in;
+  private final Shard shard;
+  private final boolean details;
+  private List<String> strings;
+  /** Whether {@link #strings} belongs to a {@link ClassCostFile}, and must be copied to add to. */
+  private boolean sharedStrings;
+  private final List<MethodCost> read = new ArrayList<MethodCost>();
+  private int sequence = -1;
+
+  public ClassCostReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    readHeader(this.in);
+    shard = new Shard(readUnsigned(this.in), readUnsigned(this.in));
+    details = this.in.readBoolean();
+    strings = new ArrayList<String>();
+  }
+
+  /**
+   * Reads the classes of a {@link ClassCostFile}, which knows all names of the
+   * file already. The names are shared, and only copied if the class has a
+   * name which is not among them.
+   */
+  ClassCostReader(InputStream in, Shard shard, boolean details, List<String> strings) {
+    this.in = new DataInputStream(in);
+    this.shard = shard;
+    this.details = details;
+    this.strings = strings;
+    sharedStrings = true;
+  }
+
+  static void readHeader(DataInput in) throws IOException {
+    if (in.readInt() != ClassCostWriter.MAGIC) {
+      throw new IOException("Not a result file");
+    }
+    int version = in.readInt();
+    if (version != ClassCostWriter.VERSION) {
+      throw new IOException("Unknown result file version " + version);
+    }
+  }
+
+  public Shard getShard() {
+    return shard;
+  }
+
+  /**
+   * @return whether the file has the costs which make up the totals of each
+   *         method, or only the totals.
+   */
+  public boolean hasDetails() {
+    return details;
+  }
+
+  /**
+   * @return the next class, or {@code null} at the end of the results.
+   */
+  public ClassCost read() throws IOException {
+    if (readUnsigned(in) == 0) {
+      return null;
+    }
+    sequence = readUnsigned(in);
+    String className = readString();
+    int methodCount = readUnsigned(in);
+    List<MethodCost> methods = new ArrayList<MethodCost>(methodCount);
+    for (int i = 0; i < methodCount; i++) {
+      methods.add(readMethodCost());
+    }
+    read.clear();
+    return new ClassCost(className, methods);
+  }
+
+  /**
+   * @return the place in the order of the whole analysis of the class which
+   *         was read last.
+   */
+  public int getSequence() {
+    return sequence;
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private MethodCost readMethodCost() throws IOException {
+    int id = readUnsigned(in);
+    if (id > 0) {
+      return read.get(id - 1);
+    }
+    String className = readString();
+    String methodName = readString();
+    int lineNumber = readSigned(in);
+    int flags = in.readUnsignedByte();
+    MethodCost methodCost = new MethodCost(className, methodName, lineNumber,
+        (flags & ClassCostWriter.CONSTRUCTOR) != 0, (flags & ClassCostWriter.STATIC) != 0,
+        (flags & ClassCostWriter.STATIC_INIT) != 0);
+    read.add(methodCost);
+    methodCost.setTruncated((flags & ClassCostWriter.TRUNCATED) != 0);
+    Cost direct = readCost();
+    Cost dependent = readCost();
+    Cost constructorDependent = readCost();
+    List<ViolationCost> violations = new ArrayList<ViolationCost>();
+    if (details) {
+      int violationCount = readUnsigned(in);
+      for (int i = 0; i < violationCount; i++) {
+        violations.add(readViolationCost());
+      }
+    }
+    methodCost.restore(direct, dependent, constructorDependent, violations);
+    methodCost.link();
+    return methodCost;
+  }
+
+  private ViolationCost readViolationCost() throws IOException {
+    byte kind = in.readByte();
+    String file = in.readBoolean() ? readString() : null;
+    SourceLocation location = new SourceLocation(file, readSigned(in));
+    Cost cost = readCost();
+    switch (kind) {
+      case CYCLOMATIC:
+        return new CyclomaticCost(location, cost);
+      case GLOBAL:
+        String name = readString();
+        Variable variable = new Variable(name, JavaType.fromDesc(readString()), false, true);
+        return new GlobalCost(location, variable, cost);
+      case LOD:
+        return new LoDViolation(location, readString(), cost, readSigned(in));
+      case METHOD_INVOCATION:
+        Reason reason = Reason.valueOf(readString());
+        return new MethodInvocationCost(location, readMethodCost(), reason, cost);
+      case CONSTRUCTOR_INVOCATION:
+        reason = Reason.valueOf(readString());
+        return new ConstructorInvocationCost(location, readMethodCost(), reason, cost);
+      default:
+        throw new IOException("Unknown cost kind " + kind);
+    }
+  }
+
+  private Cost readCost() throws IOException {
+    int cyclomatic = readSigned(in);
+    int global = readSigned(in);
+    int[] lodDistribution = new int[readUnsigned(in)];
+    for (int i = 0; i < lodDistribution.length; i++) {
+      lodDistribution[i] = readSigned(in);
+    }
+    return new Cost(cyclomatic, global, lodDistribution);
+  }
+
+  private String readString() throws IOException {
+    int ref = readUnsigned(in);
+    if (ref > 0) {
+      if (ref > strings.size() || strings.get(ref - 1) == null) {
+        throw new IOException("Unknown string " + (ref - 1));
+      }
+      return strings.get(ref - 1);
+    }
+    int id = readUnsigned(in);
+    String string = in.readUTF();
+    if (sharedStrings) {
+      strings = new ArrayList<String>(strings);
+      sharedStrings = false;
+    }
+    while (strings.size() <= id) {
+      strings.add(null);
+    }
+    strings.set(id, string);
+    return string;
+  }
+
+  static long readUnsignedLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed number");
+  }
+
+  static int readUnsigned(DataInput in) throws IOException {
+    return (int) readUnsignedLong(in);
+  }
+
+  static int readSigned(DataInput in) throws IOException {
+    int value = readUnsigned(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Adds the classes of all shards of an analysis to the {@code model}, in the
+   * order of the whole analysis.
+   *
+   * @param shards the results of each shard, in any order.
+   * @throws IllegalArgumentException if a shard is missing, or given twice.
+   */
+  public static void merge(List<ClassCostReader> shards, AnalysisModel model)
+      throws IOException {
+    boolean[] found = new boolean[shards.isEmpty() ? 0 : shards.get(0).shard.getCount()];
+    for (ClassCostReader reader : shards) {
+      Shard shard = reader.getShard();
+      if (shard.getCount() != found.length || found[shard.getIndex()]) {
+        throw new IllegalArgumentException("Shard " + shard + " does not belong with the "
+            + "other " + found.length + " shards, or is given twice");
+      }
+      found[shard.getIndex()] = true;
+    }
+    if (shards.size() != found.length) {
+      throw new IllegalArgumentException("Got " + shards.size() + " of " + found.length
+          + " shards");
+    }
+    PriorityQueue<Next> next = new PriorityQueue<Next>(Math.max(1, shards.size()),
+        new Comparator<Next>() {
+          public int compare(Next a, Next b) {
+            return a.sequence - b.sequence;
+          }
+        });
+    for (ClassCostReader reader : shards) {
+      Next first = Next.of(reader);
+      if (first != null) {
+        next.add(first);
+      }
+    }
+    while (!next.isEmpty()) {
+      Next head = next.poll();
+      model.addClassCost(head.classCost);
+      Next following = Next.of(head.reader);
+      if (following != null) {
+        next.add(following);
+      }
+    }
+  }
+
+  /** The class which a shard has read, and which waits to be merged. */
+  private static class Next {
+    private final ClassCostReader reader;
+    private final ClassCost classCost;
+    private final int sequence;
+
+    private Next(ClassCostReader reader, ClassCost classCost) {
+      this.reader = reader;
+      this.classCost = classCost;
+      this.sequence = reader.getSequence();
+    }
+
+    static Next of(ClassCostReader reader) throws IOException {
+      ClassCost classCost = reader.read();
+      return classCost == null ? null : new Next(reader, classCost);
+    }
+  }
+
+}
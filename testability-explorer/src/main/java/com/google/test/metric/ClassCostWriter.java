@@ -0,0 +1,275 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link ClassCost}s of an analysis, or of one {@link Shard} of it,
+ * so that a {@link ClassCostReader} can read them back exactly as they were.
+ * Each class is written with its place in the order of the whole analysis, so
+ * that the results of several shards can be merged into that order.
+ * <p>
+ * Numbers are written as variable length integers, and each class, method and
+ * file name once per file; later uses refer to it. Methods which are called
+ * from several places of a class, see {@link MethodCostInterner}, are written
+ * once per class, so that each class can be read on its own. The costs which
+ * make up the totals of each method may be left out, which makes the file much
+ * smaller, but leaves nothing to report issues from.
+ * <p>
+ * After the classes come all names and an index of where each class starts,
+ * so that a {@link ClassCostFile} can read any class without reading the
+ * ones before it.
+ */
+public class ClassCostWriter {
+
+  static final int MAGIC = 0x54455253;
+  static final int VERSION = 2;
+  /** The bytes after the index: where the index starts, and the magic number. */
+  static final int TRAILER_SIZE = 12;
+
+  static final byte CYCLOMATIC = 1;
+  static final byte GLOBAL = 2;
+  static final byte LOD = 3;
+  static final byte METHOD_INVOCATION = 4;
+  static final byte CONSTRUCTOR_INVOCATION = 5;
+
+  static final int CONSTRUCTOR = 1;
+  static final int STATIC = 2;
+  static final int STATIC_INIT = 4;
+  static final int TRUNCATED = 8;
+
+  /** Where a class starts in the file, for the index. */
+  private static class IndexEntry {
+    private final int nameId;
+    private final int sequence;
+    private final long offset;
+    private final long length;
+
+    IndexEntry(int nameId, int sequence, long offset, long length) {
+      this.nameId = nameId;
+      this.sequence = sequence;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /** Counts the bytes written, since DataOutputStream counts only up to 2GB. */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  private final CountingOutputStream counter;
+  private final DataOutputStream out;
+  private final boolean details;
+  private final Map<MethodCost, Integer> written = new IdentityHashMap<MethodCost, Integer>();
+  private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+  private final List<String> strings = new ArrayList<String>();
+  private final List<IndexEntry> index = new ArrayList<IndexEntry>();
+
+  public ClassCostWriter(OutputStream out, Shard shard) throws IOException {
+    this(out, shard, true);
+  }
+
+  /**
+   * @param details whether to write the costs which make up the totals of each
+   *          method, which the reports of issues and details need.
+   */
+  public ClassCostWriter(OutputStream out, Shard shard, boolean details) throws IOException {
+    counter = new CountingOutputStream(new BufferedOutputStream(out));
+    this.out = new DataOutputStream(counter);
+    this.details = details;
+    this.out.writeInt(MAGIC);
+    this.out.writeInt(VERSION);
+    writeUnsigned(this.out, shard.getIndex());
+    writeUnsigned(this.out, shard.getCount());
+    this.out.writeBoolean(details);
+  }
+
+  /**
+   * @param sequence the place of the class in the order of the whole analysis.
+   */
+  public void write(int sequence, ClassCost classCost) throws IOException {
+    long offset = counter.count;
+    writeUnsigned(out, 1);
+    writeUnsigned(out, sequence);
+    int nameId = write(classCost.getClassName());
+    writeUnsigned(out, classCost.getMethods().size());
+    for (MethodCost methodCost : classCost.getMethods()) {
+      write(methodCost);
+    }
+    written.clear();
+    index.add(new IndexEntry(nameId, sequence, offset, counter.count - offset));
+  }
+
+  /** Marks the end of the classes, writes the index and closes the stream. */
+  public void close() throws IOException {
+    writeUnsigned(out, 0);
+    long indexOffset = counter.count;
+    writeUnsigned(out, strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+    writeUnsigned(out, index.size());
+    for (IndexEntry entry : index) {
+      writeUnsigned(out, entry.nameId);
+      writeUnsigned(out, entry.sequence);
+      writeUnsignedLong(out, entry.offset);
+      writeUnsignedLong(out, entry.length);
+    }
+    out.writeLong(indexOffset);
+    out.writeInt(MAGIC);
+    out.close();
+  }
+
+  private void write(MethodCost methodCost) throws IOException {
+    Integer id = written.get(methodCost);
+    if (id != null) {
+      writeUnsigned(out, id + 1);
+      return;
+    }
+    writeUnsigned(out, 0);
+    written.put(methodCost, written.size());
+    write(methodCost.getClassName());
+    write(methodCost.getMethodName());
+    writeSigned(out, methodCost.getMethodLineNumber());
+    out.writeByte((methodCost.isConstructor() ? CONSTRUCTOR : 0)
+        | (methodCost.isStatic() ? STATIC : 0)
+        | (methodCost.isStaticInit() ? STATIC_INIT : 0)
+        | (methodCost.isTruncated() ? TRUNCATED : 0));
+    write(methodCost.getDirectCost());
+    write(methodCost.getDependentCost());
+    write(methodCost.getConstructorDependentCost());
+    if (details) {
+      writeUnsigned(out, methodCost.getViolationCosts().size());
+      for (ViolationCost violation : methodCost.getViolationCosts()) {
+        write(violation);
+      }
+    }
+  }
+
+  private void write(ViolationCost violation) throws IOException {
+    if (violation instanceof ConstructorInvocationCost) {
+      out.writeByte(CONSTRUCTOR_INVOCATION);
+    } else if (violation instanceof MethodInvocationCost) {
+      out.writeByte(METHOD_INVOCATION);
+    } else if (violation instanceof CyclomaticCost) {
+      out.writeByte(CYCLOMATIC);
+    } else if (violation instanceof GlobalCost) {
+      out.writeByte(GLOBAL);
+    } else if (violation instanceof LoDViolation) {
+      out.writeByte(LOD);
+    } else {
+      throw new IllegalArgumentException("Can not write " + violation.getClass());
+    }
+    String file = violation.getLocation().getFile();
+    out.writeBoolean(file != null);
+    if (file != null) {
+      write(file);
+    }
+    writeSigned(out, violation.getLocation().getLineNumber());
+    write(violation.getCost());
+    if (violation instanceof MethodInvocationCost) {
+      MethodInvocationCost invocation = (MethodInvocationCost) violation;
+      write(invocation.getCostSourceType().name());
+      write(invocation.getMethodCost());
+    } else if (violation instanceof GlobalCost) {
+      Variable variable = ((GlobalCost) violation).getVariable();
+      write(variable.getName());
+      write(variable.getType().getCode());
+    } else if (violation instanceof LoDViolation) {
+      LoDViolation lod = (LoDViolation) violation;
+      write(lod.getMethodName());
+      writeSigned(out, lod.getDistance());
+    }
+  }
+
+  private void write(Cost cost) throws IOException {
+    writeSigned(out, cost.getCyclomaticComplexityCost());
+    writeSigned(out, cost.getGlobalCost());
+    int[] lodDistribution = cost.getLoDDistribution();
+    writeUnsigned(out, lodDistribution.length);
+    for (int count : lodDistribution) {
+      writeSigned(out, count);
+    }
+  }
+
+  /**
+   * Writes a reference to a string which has been written before, or 0, the
+   * id of the string and the string itself. The id is written as well, so
+   * that a class read on its own knows it.
+   *
+   * @return the id of the string.
+   */
+  private int write(String string) throws IOException {
+    Integer id = stringIds.get(string);
+    if (id != null) {
+      writeUnsigned(out, id + 1);
+      return id;
+    }
+    id = strings.size();
+    stringIds.put(string, id);
+    strings.add(string);
+    writeUnsigned(out, 0);
+    writeUnsigned(out, id);
+    out.writeUTF(string);
+    return id;
+  }
+
+  /** Writes 7 bits per byte, with the high bit set on all but the last byte. */
+  static void writeUnsignedLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static void writeUnsigned(DataOutputStream out, int value) throws IOException {
+    writeUnsignedLong(out, value & 0xFFFFFFFFL);
+  }
+
+  /** Writes small negative numbers, such as the line -1, in few bytes too. */
+  static void writeSigned(DataOutputStream out, int value) throws IOException {
+    writeUnsigned(out, (value << 1) ^ (value >> 31));
+  }
+
+}
@@ -38,7 +38,7 @@ public class ClassInfo {
     this.superClass = superClass;
     this.interfaces = interfaces;
     this.fileName = fileName;
-    this.name = name.replace("/", ".");
+    this.name = name.replace('/', '.');
   }
 
   public String getName() {
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.classpath.ClassPathFactory;
+
+/**
+ * Reads all class files of a class path front to back: each jar once, in
+ * archive order, and each directory in file name order. This avoids the random
+ * access lookups of {@link com.google.classpath.ClassPath}, which is a lot
+ * faster when every class of a large jar is going to be analyzed.
+ */
+public class ClassPathStreamer {
+
+  /** Receives the class files in the order they are read. */
+  public interface Handler {
+    void handle(String resource, byte[] classBytes);
+  }
+
+  private final String[] roots;
+
+  /**
+   * @param classPath colon delimited jars and directories, as given to
+   *          {@link ClassPathFactory#createFromPath(String)}.
+   */
+  public ClassPathStreamer(String classPath) {
+    roots = new ClassPathFactory().parseClasspath(classPath);
+  }
+
+  /**
+   * Hands every class file to the {@code handler}. A resource which is on the
+   * class path more than once is only handed over the first time, like
+   * {@link com.google.classpath.ClassPath} would.
+   */
+  public void stream(Handler handler) throws IOException {
+    Set<String> seen = new HashSet<String>();
+    for (String root : roots) {
+      File file = new File(root);
+      if (file.isDirectory()) {
+        streamDirectory(file, "", seen, handler);
+      } else if (file.isFile()) {
+        streamJar(file, seen, handler);
+      }
+    }
+  }
+
+  private void streamJar(File jar, Set<String> seen, Handler handler) throws IOException {
+    ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(jar)));
+    try {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        String resource = entry.getName();
+        if (!entry.isDirectory() && resource.endsWith(".class") && seen.add(resource)) {
+          handler.handle(resource, readBytes(zip));
+        }
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  private void streamDirectory(File directory, String path, Set<String> seen, Handler handler)
+      throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String resource = path + file.getName();
+      if (file.isDirectory()) {
+        streamDirectory(file, resource + "/", seen, handler);
+      } else if (resource.endsWith(".class") && seen.add(resource)) {
+        InputStream in = new FileInputStream(file);
+        try {
+          handler.handle(resource, readBytes(in));
+        } finally {
+          in.close();
+        }
+      }
+    }
+  }
+
+  static byte[] readBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int count = in.read(buffer); count != -1; count = in.read(buffer)) {
+      bytes.write(buffer, 0, count);
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
+
+/**
+ * Loads the classes which the methods of a class call, on background threads,
+ * so that they are in the {@link ClassRepository} by the time the analysis
+ * gets to them. The owners of fields need no prefetching, since they are
+ * resolved while the class is built.
+ * <p>
+ * The repository has to be safe to use from several threads, like
+ * {@link JavaClassRepository}. Prefetching is only a hint: when more than
+ * the queue size of loads are waiting, further ones are dropped, and the
+ * analysis loads those classes itself if it needs them.
+ */
+public class ClassPrefetcher {
+
+  public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+  private final ClassRepository classRepository;
+  private final WhiteList whitelist;
+  private final int depth;
+  private final ThreadPoolExecutor executor;
+  private final ConcurrentMap<String, Boolean> requested =
+      new ConcurrentHashMap<String, Boolean>();
+  private final AtomicInteger loaded = new AtomicInteger();
+  private final AtomicInteger dropped = new AtomicInteger();
+
+  /**
+   * @param depth how many calls away from the given class to prefetch; 1 only
+   *          loads the classes called directly.
+   */
+  public ClassPrefetcher(ClassRepository classRepository, WhiteList whitelist, int threads,
+      int depth) {
+    this(classRepository, whitelist, threads, depth, DEFAULT_QUEUE_SIZE);
+  }
+
+  /**
+   * @param queueSize how many loads may wait for a thread before further ones
+   *          are dropped.
+   */
+  public ClassPrefetcher(ClassRepository classRepository, WhiteList whitelist, int threads,
+      int depth, int queueSize) {
+    this.classRepository = classRepository;
+    this.whitelist = whitelist;
+    this.depth = depth;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "prefetch");
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, new RejectedExecutionHandler() {
+          public void rejectedExecution(Runnable load, ThreadPoolExecutor executor) {
+            requested.remove(((Load) load).className);
+            dropped.incrementAndGet();
+          }
+        });
+  }
+
+  /** Loads one class, and prefetches what it calls in turn. */
+  private class Load implements Runnable {
+    private final String className;
+    private final int remainingDepth;
+
+    Load(String className, int remainingDepth) {
+      this.className = className;
+      this.remainingDepth = remainingDepth;
+    }
+
+    public void run() {
+      try {
+        ClassInfo clazz = classRepository.getClass(className);
+        loaded.incrementAndGet();
+        prefetch(clazz, remainingDepth);
+      } catch (RuntimeException e) {
+        // The analysis reports classes which can't be loaded, if it needs them.
+      }
+    }
+  }
+
+  /**
+   * Starts loading the classes which {@code clazz} calls, and returns right
+   * away.
+   */
+  public void prefetch(ClassInfo clazz) {
+    prefetch(clazz, depth);
+  }
+
+  private void prefetch(ClassInfo clazz, int remainingDepth) {
+    if (remainingDepth == 0) {
+      return;
+    }
+    for (MethodInfo method : clazz.getMethods()) {
+      for (Operation operation : method.getOperations()) {
+        if (operation instanceof MethodInvocation) {
+          load(((MethodInvocation) operation).getOwner(), remainingDepth - 1);
+        }
+      }
+    }
+  }
+
+  private void load(String className, int remainingDepth) {
+    if (whitelist != null && whitelist.isClassWhiteListed(className)) {
+      return;
+    }
+    if (requested.putIfAbsent(className, Boolean.TRUE) != null) {
+      return;
+    }
+    executor.execute(new Load(className, remainingDepth));
+  }
+
+  public int getRequested() {
+    return requested.size();
+  }
+
+  public int getLoaded() {
+    return loaded.get();
+  }
+
+  /**
+   * @return how many loads were dropped because the queue was full, or
+   *         prefetching had stopped.
+   */
+  public int getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * Stops prefetching, and waits for the loads in progress to finish.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Prefetched " + getLoaded() + " of " + getRequested() + " called classes, dropped "
+        + getDropped();
+  }
+
+}
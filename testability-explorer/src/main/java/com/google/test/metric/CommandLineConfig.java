@@ -19,6 +19,8 @@ import com.google.inject.Inject;
 import com.google.test.metric.ConfigModule.Error;
 import com.google.test.metric.ConfigModule.Output;
 import com.google.test.metric.ReportGeneratorProvider.ReportFormat;
+import com.google.test.metric.report.ReportOptions;
+import com.google.test.metric.report.SweepReportGenerator;
 
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
@@ -68,6 +70,11 @@ public class CommandLineConfig {
       + "xml: print computer readable XML format.")
   String printer = "summary";
 
+  @Option(name = "-allClasses", usage = "With -print xml, write every class as soon as it is "
+      + "analyzed, in the order of their names, followed by the summary, rather than the worst "
+      + "offenders once all classes are analyzed.")
+  boolean allClasses = false;
+
   @Option(name = "-srcFileLineUrl", usage = "template for urls linking to a specific LINE in a file in a web "
       + "source code repository.\n"
       + "Ex. -srcFileLineUrl http://code.repository/basepath/{path}&line={line}\n"
@@ -99,6 +106,101 @@ public class CommandLineConfig {
   @Option(name = "-constructor", metaVar = "work in constructor multiplier", usage = "Additional multiplier on costs that are incurred in a constructor")
   double constructorMultiplier = 1;
 
+  @Option(name = "-sweep", metaVar = "parameter sets", usage = "Rather than the -print report, "
+      + "summarize the classes under each of these sets of parameters, separated by spaces. Each "
+      + "set is cyclomatic,global,constructor[,maxExcellentCost,maxAcceptableCost]. With -merge, "
+      + "saved results are scored again without analyzing any classes.\n"
+      + "Ex. -sweep \"1,10,1 1,5,1 1,10,1,25,50\"")
+  String sweep = null;
+  /** The parameter sets of {@link #sweep}, once validated. */
+  List<ReportOptions> sweepOptions = null;
+
+  @Option(name = "-memoize", usage = "Reuse the cost of methods which are identical to an "
+      + "already analyzed method apart from the class name, such as generated accessors. "
+      + "Their detailed costs are copied, at the lines of their own class. With -shard, only "
+      + "the methods of the same part are reused, so fewer are, but the costs are the same.")
+  boolean memoize = false;
+
+  @Option(name = "-shareCosts", usage = "With a -printDepth above 0, keep each distinct cost "
+      + "of a called method once, and share it between all the methods which call it. Saves "
+      + "memory when the report keeps the details of all classes.")
+  boolean shareCosts = false;
+
+  @Option(name = "-schedule", usage = "Scan the constant pools of all classes first, and analyze "
+      + "each class after the classes it uses, with or without -threads. The report is in the "
+      + "same order either way. Can not be used with -stream, which reads the classes in the "
+      + "order of the class path, or with -longestFirst.")
+  boolean schedule = false;
+
+  @Option(name = "-threads", usage = "Read, parse, analyze and report classes in a pipeline, with "
+      + "this many threads each for parsing and analysis. Defaults to 0, which analyzes on the "
+      + "main thread.")
+  int threads = 0;
+
+  @Option(name = "-longestFirst", usage = "With -threads, scan all classes first and start the "
+      + "ones which are expected to take longest first, so that no thread is left with a large "
+      + "class at the end. The report is in the same order either way.")
+  boolean longestFirst = false;
+
+  @Option(name = "-timings", metaVar = "file", usage = "With -threads, write how long the analysis "
+      + "of each class took to this file. With -longestFirst, the timings of the previous run "
+      + "are read from it first.")
+  String timings = null;
+
+  @Option(name = "-stream", usage = "Read each jar and directory of the -cp class path once, front "
+      + "to back, instead of looking up each class. Faster when analyzing most of a large jar.")
+  boolean stream = false;
+
+  @Option(name = "-prefetch", usage = "Load the classes which the analyzed classes call with this "
+      + "many background threads, ahead of the analysis. Defaults to 0, which loads them when "
+      + "they are needed.")
+  int prefetch = 0;
+
+  @Option(name = "-methodThreads", usage = "Compute the methods of classes with many methods "
+      + "with this many threads. Defaults to 0, which computes them one after another.")
+  int methodThreads = 0;
+
+  @Option(name = "-renderThreads", usage = "Render the class pages of the source report with "
+      + "this many threads. Defaults to 0, which renders each page as its class is reported.")
+  int renderThreads = 0;
+
+  @Option(name = "-wholeProgram", usage = "Find out which fields hold global state once for "
+      + "all analyzed classes, and which are injectable once per class, rather than separately "
+      + "for each method. A field made global anywhere counts as global everywhere.")
+  boolean wholeProgram = false;
+
+  @Option(name = "-budgetFrames", usage = "Stop analyzing a method after following this many "
+      + "method calls, and report its cost so far as truncated. Defaults to 0, no limit.")
+  int budgetFrames = 0;
+
+  @Option(name = "-budgetOperations", usage = "Stop analyzing a method after this many "
+      + "operations, and report its cost so far as truncated. Defaults to 0, no limit.")
+  int budgetOperations = 0;
+
+  @Option(name = "-budgetMillis", usage = "Stop analyzing a method after this many "
+      + "milliseconds, and report its cost so far as truncated. Defaults to 0, no limit.")
+  int budgetMillis = 0;
+
+  @Option(name = "-shard", metaVar = "i/N", usage = "Analyze only the i-th of N parts of the "
+      + "classes, counting from 0, such as 0/4. Every process given the same classes agrees on "
+      + "the parts. Use with -results, and -merge the results of all N parts.")
+  String shard = null;
+
+  @Option(name = "-results", metaVar = "file", usage = "Write the costs of the analyzed classes to "
+      + "this file, rather than printing a report, so that they can be merged with -merge.")
+  String results = null;
+
+  @Option(name = "-resultsTotalsOnly", usage = "Write only the total costs of each method to the "
+      + "-results file, which makes it much smaller, but leaves out the costs which the issues "
+      + "and the details of the reports are made of.")
+  boolean resultsTotalsOnly = false;
+
+  @Option(name = "-merge", metaVar = "files", usage = "Print the report for the results files "
+      + "written by all parts of a -shard analysis, or for the single file of an analysis "
+      + "which was not sharded, in any -print format, rather than analyzing any classes. The "
+      + "files are separated like the class path.")
+  String merge = null;
+
   @Argument(metaVar = "classes and packages to analyze", usage = "Classes or packages to analyze. "
       + "Matches any class starting with these.\n"
       + "Ex. com.example.analyze.these com.google.and.these.packages " + "com.google.AClass")
@@ -115,7 +217,7 @@ public class CommandLineConfig {
   }
 
   public void validate() throws CmdLineException {
-    if (cp == null && entryList.isEmpty()) {
+    if (cp == null && entryList.isEmpty() && merge == null) {
       throw new CmdLineException("You must supply either the -cp flag, " +
           "or the argument \"classes and packages to analyze\".");
     }
@@ -128,5 +230,29 @@ public class CommandLineConfig {
     } catch (IllegalArgumentException e) {
       throw new CmdLineException("Don't understand '-print' option '" + printer + "'");
     }
+    if (shard != null) {
+      try {
+        Shard.parse(shard);
+      } catch (IllegalArgumentException e) {
+        throw new CmdLineException(e.getMessage());
+      }
+    }
+    if (schedule && (stream || longestFirst)) {
+      throw new CmdLineException("-schedule can not be used with "
+          + (stream ? "-stream" : "-longestFirst"));
+    }
+    if (sweep != null) {
+      try {
+        sweepOptions = SweepReportGenerator.parseParameterSets(sweep, getReportOptions());
+      } catch (IllegalArgumentException e) {
+        throw new CmdLineException(e.getMessage());
+      }
+    }
+  }
+
+  public ReportOptions getReportOptions() {
+    return new ReportOptions(cyclomaticMultiplier, globalMultiplier, constructorMultiplier,
+        maxExcellentCost, maxAcceptableCost, worstOffenderCount, maxMethodCount, maxLineCount,
+        printDepth, minCost, srcFileLineUrl, srcFileUrl);
   }
 }
@@ -58,12 +58,42 @@ public class ConfigModule extends AbstractModule {
       err.println("Exiting...");
     }
     bind(CommandLineConfig.class).toInstance(config);
-    bind(ReportOptions.class).toInstance(new ReportOptions(
-        config.cyclomaticMultiplier, config.globalMultiplier, config.constructorMultiplier,
-        config.maxExcellentCost, config.maxAcceptableCost, config.worstOffenderCount,
-        config.maxMethodCount, config.maxLineCount, config.printDepth, config.minCost,
-        config.srcFileLineUrl, config.srcFileUrl));
+    bind(ReportOptions.class).toInstance(config.getReportOptions());
+    if (config.sweepOptions != null) {
+      bind(new TypeLiteral<List<ReportOptions>>() {}).annotatedWith(Names.named("sweep"))
+          .toInstance(config.sweepOptions);
+    }
     bindConstant().annotatedWith(Names.named("printDepth")).to(config.printDepth);
+    bindConstant().annotatedWith(Names.named("allClasses")).to(config.allClasses);
+    bindConstant().annotatedWith(Names.named("renderThreads")).to(config.renderThreads);
+    bindConstant().annotatedWith(Names.named("memoize")).to(config.memoize);
+    bindConstant().annotatedWith(Names.named("shareCosts")).to(config.shareCosts);
+    bindConstant().annotatedWith(Names.named("schedule")).to(config.schedule);
+    bindConstant().annotatedWith(Names.named("threads")).to(config.threads);
+    bindConstant().annotatedWith(Names.named("prefetch")).to(config.prefetch);
+    bindConstant().annotatedWith(Names.named("wholeProgram")).to(config.wholeProgram);
+    bindConstant().annotatedWith(Names.named("methodThreads")).to(config.methodThreads);
+    if (config.budgetFrames > 0 || config.budgetOperations > 0 || config.budgetMillis > 0) {
+      bind(AnalysisBudget.class).toInstance(new AnalysisBudget(config.budgetFrames,
+          config.budgetOperations, config.budgetMillis));
+    }
+    bindConstant().annotatedWith(Names.named("longestFirst")).to(config.longestFirst);
+    if (config.timings != null) {
+      bindConstant().annotatedWith(Names.named("timings")).to(config.timings);
+    }
+    if (config.shard != null) {
+      bindConstant().annotatedWith(Names.named("shard")).to(config.shard);
+    }
+    if (config.results != null) {
+      bindConstant().annotatedWith(Names.named("results")).to(config.results);
+    }
+    bindConstant().annotatedWith(Names.named("resultsTotalsOnly")).to(config.resultsTotalsOnly);
+    if (config.merge != null) {
+      bindConstant().annotatedWith(Names.named("merge")).to(config.merge);
+    }
+    if (config.stream && config.cp != null) {
+      bindConstant().annotatedWith(Names.named("streamClassPath")).to(config.cp);
+    }
     bind(new TypeLiteral<List<String>>() {}).toInstance(config.entryList);
 
     //TODO: install the appropriate language-specific module
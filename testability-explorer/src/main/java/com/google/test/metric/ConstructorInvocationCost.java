@@ -7,6 +7,11 @@ public class ConstructorInvocationCost extends MethodInvocationCost {
     super(location, methodCost, costSourceType, invocationCost);
   }
 
+  @Override
+  public MethodInvocationCost withMethodCost(MethodCost methodCost) {
+    return new ConstructorInvocationCost(getLocation(), methodCost, getCostSourceType(), cost);
+  }
+
   @Override
   public void link(Cost directCost, Cost dependentCost,
       Cost constructorDependentCost) {
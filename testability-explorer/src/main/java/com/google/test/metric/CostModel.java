@@ -57,6 +57,14 @@ public class CostModel {
   }
 
   public int computeClass(ClassCost classCost) {
+    return classCost.getOverallCost(this);
+  }
+
+  /**
+   * Computes the overall cost of the class anew; use
+   * {@link #computeClass(ClassCost)}, which remembers it on the class.
+   */
+  int computeClassCost(ClassCost classCost) {
     WeightedAverage average = createWeighedAverage();
     for (MethodCost methodCost : classCost.getMethods()) {
       double overallCost;
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.classpath.ClassPath;
+import com.google.test.metric.asm.ConstantPoolScanner;
+
+/**
+ * Orders the analysis of classes so that the ones which are expected to take
+ * longest start first. When several threads analyze the classes in
+ * alphabetical order, an expensive class near the end keeps one of them busy
+ * long after the others are done; started first, it runs alongside the rest.
+ * <p>
+ * A class is expected to take as long as it took in a previous run, if that is
+ * known. Otherwise it is expected to take time in proportion to the length of
+ * its byte code plus a fixed amount per method, scaled to the timings of the
+ * classes for which both are known.
+ */
+public class CostSchedule {
+
+  /** How much byte code the analysis of a method is worth on its own. */
+  static final int METHOD_CODE_LENGTH = 32;
+
+  private final Map<String, Long> codeSizes = new HashMap<String, Long>();
+  private final Map<String, Long> timings = new HashMap<String, Long>();
+
+  /**
+   * Scans the class files for their methods and byte code. Classes which can
+   * not be read are expected to be cheap.
+   *
+   * @param resources class files on the {@code classPath}, such as
+   *          {@code com/google/Foo.class}.
+   */
+  public static CostSchedule scan(ClassPath classPath, Collection<String> resources) {
+    CostSchedule schedule = new CostSchedule();
+    for (String resource : resources) {
+      InputStream classFile = classPath.getResourceAsStream(resource);
+      if (classFile != null) {
+        try {
+          try {
+            ConstantPoolScanner scanner = new ConstantPoolScanner(classFile);
+            schedule.addClass(scanner.getClassName(), scanner.getMethodCount(),
+                scanner.getCodeLength());
+          } finally {
+            classFile.close();
+          }
+        } catch (IOException e) {
+          // Unreadable classes go last.
+        }
+      }
+    }
+    return schedule;
+  }
+
+  public void addClass(String className, int methodCount, int codeLength) {
+    codeSizes.put(className, (long) methodCount * METHOD_CODE_LENGTH + codeLength);
+  }
+
+  /**
+   * @param micros how long the analysis of the class took before.
+   */
+  public void addTiming(String className, long micros) {
+    timings.put(className, micros);
+  }
+
+  /**
+   * Reads timings as written by {@link #writeTimings(Writer, Map)}. Lines which
+   * can not be parsed are skipped.
+   */
+  public void readTimings(Reader reader) throws IOException {
+    BufferedReader in = new BufferedReader(reader);
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      int space = line.indexOf(' ');
+      if (space > 0) {
+        try {
+          addTiming(line.substring(space + 1).trim(), Long.parseLong(line.substring(0, space)));
+        } catch (NumberFormatException e) {
+          // Not a timing.
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes one line of {@code micros className} for each class, in the order
+   * of the map.
+   */
+  public static void writeTimings(Writer writer, Map<String, Long> micros) {
+    PrintWriter out = new PrintWriter(writer);
+    for (Map.Entry<String, Long> timing : micros.entrySet()) {
+      out.println(timing.getValue() + " " + timing.getKey());
+    }
+    out.flush();
+  }
+
+  /**
+   * @return how long the analysis of the class is expected to take, in
+   *         microseconds if there are any timings, and 0 for unknown classes.
+   */
+  public double estimate(String className) {
+    return estimate(className, getMicrosPerByte());
+  }
+
+  private double estimate(String className, double microsPerByte) {
+    Long timing = timings.get(className);
+    if (timing != null) {
+      return timing;
+    }
+    Long codeSize = codeSizes.get(className);
+    return codeSize == null ? 0 : codeSize * microsPerByte;
+  }
+
+  /**
+   * @return how the timings compare to the code sizes, for the classes which
+   *         have both, or 1 if there are none.
+   */
+  private double getMicrosPerByte() {
+    long totalTime = 0;
+    long totalSize = 0;
+    for (Map.Entry<String, Long> timing : timings.entrySet()) {
+      Long codeSize = codeSizes.get(timing.getKey());
+      if (codeSize != null) {
+        totalTime += timing.getValue();
+        totalSize += codeSize;
+      }
+    }
+    return totalTime == 0 || totalSize == 0 ? 1 : (double) totalTime / totalSize;
+  }
+
+  /**
+   * @return the indexes of {@code classNames}, with the classes which are
+   *         expected to take longest first. Classes which are expected to take
+   *         equally long keep their order.
+   */
+  public List<Integer> schedule(List<String> classNames) {
+    double microsPerByte = getMicrosPerByte();
+    final double[] estimates = new double[classNames.size()];
+    List<Integer> order = new ArrayList<Integer>();
+    for (int i = 0; i < classNames.size(); i++) {
+      estimates[i] = estimate(classNames.get(i), microsPerByte);
+      order.add(i);
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return Double.compare(estimates[b], estimates[a]);
+      }
+    });
+    return order;
+  }
+
+}
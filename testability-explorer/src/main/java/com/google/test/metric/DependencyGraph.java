@@ -0,0 +1,255 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.classpath.ClassPath;
+import com.google.test.metric.asm.ConstantPoolScanner;
+
+/**
+ * Class level dependencies, as found in the constant pools of the class files.
+ * Only dependencies between classes of the graph are kept, so that it can be
+ * used to order the analysis of a set of classes: a class is scheduled after
+ * the classes it uses, and classes which depend on each other are scheduled
+ * together.
+ */
+public class DependencyGraph {
+
+  private final Map<String, Set<String>> dependencies = new TreeMap<String, Set<String>>();
+
+  /**
+   * Scans the constant pools of the given class files. Classes which can not be
+   * read are added without dependencies.
+   *
+   * @param resources class files on the {@code classPath}, such as
+   *          {@code com/google/Foo.class}.
+   */
+  public static DependencyGraph scan(ClassPath classPath, Collection<String> resources) {
+    DependencyGraph graph = new DependencyGraph();
+    for (String resource : resources) {
+      String className = resource.replace(".class", "").replace('/', '.').replace('$', '.');
+      Set<String> referencedClasses = Collections.emptySet();
+      InputStream classFile = classPath.getResourceAsStream(resource);
+      if (classFile != null) {
+        try {
+          try {
+            referencedClasses = new ConstantPoolScanner(classFile).getReferencedClasses();
+          } finally {
+            classFile.close();
+          }
+        } catch (IOException e) {
+          // Unreadable classes are scheduled without dependencies.
+        }
+      }
+      graph.addClass(className, referencedClasses);
+    }
+    return graph;
+  }
+
+  public void addClass(String className, Collection<String> referencedClasses) {
+    dependencies.put(className, new TreeSet<String>(referencedClasses));
+  }
+
+  public Set<String> getClasses() {
+    return dependencies.keySet();
+  }
+
+  /**
+   * @return the classes of this graph which {@code className} refers to.
+   */
+  public Set<String> getDependencies(String className) {
+    Set<String> result = new TreeSet<String>();
+    Set<String> referencedClasses = dependencies.get(className);
+    if (referencedClasses != null) {
+      for (String referencedClass : referencedClasses) {
+        if (dependencies.containsKey(referencedClass) && !referencedClass.equals(className)) {
+          result.add(referencedClass);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return all of the classes which depend on any of the {@code changed}
+   *         classes, directly or transitively, including the changed classes
+   *         themselves. These are the classes whose analysis is invalidated by
+   *         a change.
+   */
+  public Set<String> getDependents(Collection<String> changed) {
+    Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+    for (String className : dependencies.keySet()) {
+      for (String dependency : getDependencies(className)) {
+        List<String> list = dependents.get(dependency);
+        if (list == null) {
+          list = new ArrayList<String>();
+          dependents.put(dependency, list);
+        }
+        list.add(className);
+      }
+    }
+    Set<String> result = new TreeSet<String>();
+    LinkedList<String> queue = new LinkedList<String>(changed);
+    while (!queue.isEmpty()) {
+      String className = queue.removeFirst();
+      if (result.add(className) && dependents.containsKey(className)) {
+        queue.addAll(dependents.get(className));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the strongly connected components of the graph, each one after all
+   *         the components it depends on.
+   */
+  public List<SortedSet<String>> getComponents() {
+    Map<String, Integer> index = new HashMap<String, Integer>();
+    Map<String, Integer> lowLink = new HashMap<String, Integer>();
+    List<String> stack = new ArrayList<String>();
+    Set<String> onStack = new HashSet<String>();
+    List<SortedSet<String>> components = new ArrayList<SortedSet<String>>();
+    // Explicit stack of the depth first search, since class graphs are deep.
+    List<String> path = new ArrayList<String>();
+    List<Iterator<String>> pathIterators = new ArrayList<Iterator<String>>();
+    for (String root : dependencies.keySet()) {
+      if (index.containsKey(root)) {
+        continue;
+      }
+      visit(root, index, lowLink, stack, onStack, path, pathIterators);
+      while (!path.isEmpty()) {
+        int top = path.size() - 1;
+        String node = path.get(top);
+        Iterator<String> iterator = pathIterators.get(top);
+        if (iterator.hasNext()) {
+          String next = iterator.next();
+          if (!index.containsKey(next)) {
+            visit(next, index, lowLink, stack, onStack, path, pathIterators);
+          } else if (onStack.contains(next)) {
+            lowLink.put(node, Math.min(lowLink.get(node), index.get(next)));
+          }
+          continue;
+        }
+        path.remove(top);
+        pathIterators.remove(top);
+        if (top > 0) {
+          String parent = path.get(top - 1);
+          lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+        }
+        if (lowLink.get(node).equals(index.get(node))) {
+          SortedSet<String> component = new TreeSet<String>();
+          String member;
+          do {
+            member = stack.remove(stack.size() - 1);
+            onStack.remove(member);
+            component.add(member);
+          } while (!member.equals(node));
+          components.add(component);
+        }
+      }
+    }
+    return components;
+  }
+
+  private void visit(String node, Map<String, Integer> index, Map<String, Integer> lowLink,
+      List<String> stack, Set<String> onStack, List<String> path,
+      List<Iterator<String>> pathIterators) {
+    index.put(node, index.size());
+    lowLink.put(node, index.get(node));
+    stack.add(node);
+    onStack.add(node);
+    path.add(node);
+    pathIterators.add(getDependencies(node).iterator());
+  }
+
+  /**
+   * @return all classes of the graph, each one after the classes it depends on
+   *         unless they depend on each other. Of the components which are ready
+   *         to go, the largest is scheduled first.
+   */
+  public List<String> schedule() {
+    final List<SortedSet<String>> components = getComponents();
+    Map<String, Integer> componentOf = new HashMap<String, Integer>();
+    for (int i = 0; i < components.size(); i++) {
+      for (String className : components.get(i)) {
+        componentOf.put(className, i);
+      }
+    }
+    int[] waitingFor = new int[components.size()];
+    List<Set<Integer>> dependents = new ArrayList<Set<Integer>>();
+    for (int i = 0; i < components.size(); i++) {
+      dependents.add(new HashSet<Integer>());
+    }
+    for (int i = 0; i < components.size(); i++) {
+      Set<Integer> dependsOn = new HashSet<Integer>();
+      for (String className : components.get(i)) {
+        for (String dependency : getDependencies(className)) {
+          dependsOn.add(componentOf.get(dependency));
+        }
+      }
+      dependsOn.remove(i);
+      waitingFor[i] = dependsOn.size();
+      for (Integer dependency : dependsOn) {
+        dependents.get(dependency).add(i);
+      }
+    }
+    PriorityQueue<Integer> ready = new PriorityQueue<Integer>(Math.max(1, components.size()),
+        new Comparator<Integer>() {
+          public int compare(Integer a, Integer b) {
+            SortedSet<String> first = components.get(a);
+            SortedSet<String> second = components.get(b);
+            if (first.size() != second.size()) {
+              return second.size() - first.size();
+            }
+            return first.first().compareTo(second.first());
+          }
+        });
+    for (int i = 0; i < components.size(); i++) {
+      if (waitingFor[i] == 0) {
+        ready.add(i);
+      }
+    }
+    List<String> order = new ArrayList<String>();
+    while (!ready.isEmpty()) {
+      int component = ready.poll();
+      order.addAll(components.get(component));
+      for (Integer dependent : dependents.get(component)) {
+        if (--waitingFor[dependent] == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+    return order;
+  }
+
+}
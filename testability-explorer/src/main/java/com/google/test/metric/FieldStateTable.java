@@ -0,0 +1,327 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.test.metric.method.op.turing.FieldAssignment;
+import com.google.test.metric.method.op.turing.LocalAssignment;
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
+import com.google.test.metric.method.op.turing.ReturnOperation;
+
+/**
+ * Which fields hold global state, and which are injectable, for a whole
+ * program at once. {@link TestabilityVisitor} finds this out anew for every
+ * method it analyzes, by following the assignments along the calls of that
+ * method. This table is computed once instead, as a fixed point over the
+ * assignments of all methods reachable from the classes to analyze, and a
+ * {@link VariableState} looks fields up in it rather than tracking them.
+ * <p>
+ * Global state spreads from the whole program. Injectability depends on the
+ * class under test, since only its own non-private fields, and the parameters
+ * of its constructor and setters, are injected; so it is spread from those of
+ * one class at a time, by {@link #forClass}, when the class is first analyzed.
+ * <p>
+ * The table does not depend on the order of the assignments or on which calls
+ * are made, so a field which is made global anywhere in the program counts as
+ * global everywhere.
+ */
+public class FieldStateTable {
+
+  private final Graph graph;
+  private final BitSet injectables;
+  private final ConcurrentMap<String, FieldStateTable> classTables;
+
+  private FieldStateTable(Graph graph, BitSet injectables) {
+    this.graph = graph;
+    this.injectables = injectables;
+    this.classTables = new ConcurrentHashMap<String, FieldStateTable>();
+  }
+
+  /**
+   * Computes the table from the assignments in the methods of the
+   * {@code classes}, and of the methods they call, as long as those can be
+   * found in the {@code classRepository}.
+   */
+  public static FieldStateTable compute(ClassRepository classRepository, WhiteList whitelist,
+      Collection<ClassInfo> classes) {
+    Graph graph = new Graph(classRepository, whitelist);
+    for (ClassInfo clazz : classes) {
+      graph.addClass(clazz);
+    }
+    graph.propagate(graph.globals, true);
+    return new FieldStateTable(graph, new BitSet());
+  }
+
+  /**
+   * @param implicitCosts whether the method under test is an instance method
+   *          which is not a constructor, and so is analyzed after the
+   *          constructor and setters of {@code clazz} inject their parameters.
+   * @return the table in which the fields injectable for testing a method of
+   *         {@code clazz} are injectable.
+   */
+  public FieldStateTable forClass(ClassInfo clazz, boolean implicitCosts) {
+    String key = implicitCosts ? clazz.getName() : clazz.getName() + "#";
+    FieldStateTable table = classTables.get(key);
+    if (table == null) {
+      BitSet seeds = new BitSet();
+      for (FieldInfo field : clazz.getFields()) {
+        if (!field.isPrivate()) {
+          graph.seed(seeds, field);
+        }
+      }
+      if (implicitCosts) {
+        MethodInfo constructor = clazz.getConstructorWithMostNonPrimitiveParameters();
+        if (constructor != null) {
+          graph.seed(seeds, constructor.getParameters());
+        }
+        for (MethodInfo setter : clazz.getSetters()) {
+          graph.seed(seeds, setter.getParameters());
+        }
+      }
+      graph.propagate(seeds, false);
+      classTables.putIfAbsent(key, new FieldStateTable(graph, seeds));
+      table = classTables.get(key);
+    }
+    return table;
+  }
+
+  public boolean isGlobal(FieldInfo field) {
+    Integer node = graph.nodes.get(field);
+    return node != null && graph.globals.get(node);
+  }
+
+  public boolean isInjectable(FieldInfo field) {
+    Integer node = graph.nodes.get(field);
+    return node != null && injectables.get(node);
+  }
+
+  public int getFieldCount() {
+    return graph.fieldCount;
+  }
+
+  public int getGlobalCount() {
+    int count = 0;
+    BitSet globals = graph.globals;
+    for (int node = globals.nextSetBit(0); node >= 0; node = globals.nextSetBit(node + 1)) {
+      if (graph.isField.get(node)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return "Whole program field state: " + getGlobalCount() + " global of "
+        + getFieldCount() + " fields in " + graph.methods.size() + " methods";
+  }
+
+  /**
+   * The assignments of the program: an edge from a variable to another means
+   * that the state of the first flows into the second.
+   */
+  private static class Graph {
+    private final ClassRepository classRepository;
+    private final WhiteList whitelist;
+    private final Map<Variable, Integer> nodes = new HashMap<Variable, Integer>();
+    private final List<List<Integer>> flows = new ArrayList<List<Integer>>();
+    private final List<List<Integer>> globalFlows = new ArrayList<List<Integer>>();
+    private final BitSet globals = new BitSet();
+    private final BitSet isField = new BitSet();
+    private int fieldCount;
+    private final Set<MethodInfo> methods = new HashSet<MethodInfo>();
+    private final List<MethodInfo> unvisited = new ArrayList<MethodInfo>();
+    private final Map<MethodInfo, List<Variable>> returnValues =
+        new HashMap<MethodInfo, List<Variable>>();
+
+    Graph(ClassRepository classRepository, WhiteList whitelist) {
+      this.classRepository = classRepository;
+      this.whitelist = whitelist;
+    }
+
+    void addClass(ClassInfo clazz) {
+      for (FieldInfo field : clazz.getFields()) {
+        node(field);
+      }
+      for (MethodInfo method : clazz.getMethods()) {
+        unvisited.add(method);
+      }
+      while (!unvisited.isEmpty()) {
+        MethodInfo method = unvisited.remove(unvisited.size() - 1);
+        if (methods.add(method)) {
+          addMethod(method);
+        }
+      }
+    }
+
+    void seed(BitSet seeds, Variable variable) {
+      Integer node = nodes.get(variable);
+      if (node != null) {
+        seeds.set(node);
+      }
+    }
+
+    void seed(BitSet seeds, List<? extends Variable> variables) {
+      for (Variable variable : variables) {
+        seed(seeds, variable);
+      }
+    }
+
+    private void addMethod(MethodInfo method) {
+      for (Operation operation : method.getOperations()) {
+        if (operation instanceof LocalAssignment) {
+          LocalAssignment assignment = (LocalAssignment) operation;
+          flow(assignment.getValue(), assignment.getVariable());
+        } else if (operation instanceof FieldAssignment) {
+          FieldAssignment assignment = (FieldAssignment) operation;
+          flow(assignment.getValue(), assignment.getField());
+          if (assignment.getFieldInstance() == null) {
+            globals.set(node(assignment.getField()));
+          } else {
+            globalFlow(assignment.getFieldInstance(), assignment.getField());
+          }
+        } else if (operation instanceof MethodInvocation) {
+          addInvocation((MethodInvocation) operation);
+        }
+      }
+    }
+
+    private void addInvocation(MethodInvocation invocation) {
+      if (whitelist != null && whitelist.isClassWhiteListed(invocation.getOwner())) {
+        return;
+      }
+      MethodInfo toMethod;
+      try {
+        toMethod = classRepository.getClass(invocation.getOwner()).getMethod(
+            invocation.getName());
+      } catch (ClassNotFoundException e) {
+        return;
+      } catch (MethodNotFoundException e) {
+        return;
+      }
+      if (!methods.contains(toMethod)) {
+        unvisited.add(toMethod);
+      }
+      if (toMethod.getMethodThis() != null && invocation.getMethodThis() != null) {
+        flow(invocation.getMethodThis(), toMethod.getMethodThis());
+      }
+      List<ParameterInfo> parameters = toMethod.getParameters();
+      List<Variable> arguments = invocation.getParameters();
+      for (int i = 0; i < parameters.size() && i < arguments.size(); i++) {
+        flow(arguments.get(i), parameters.get(i));
+      }
+      if (invocation.getReturnVariable() != null) {
+        for (Variable value : returnValuesOf(toMethod)) {
+          globalFlow(value, invocation.getReturnVariable());
+        }
+      }
+    }
+
+    private List<Variable> returnValuesOf(MethodInfo method) {
+      List<Variable> values = returnValues.get(method);
+      if (values == null) {
+        values = new ArrayList<Variable>();
+        for (Operation operation : method.getOperations()) {
+          if (operation instanceof ReturnOperation) {
+            values.add(((ReturnOperation) operation).getValue());
+          }
+        }
+        returnValues.put(method, values);
+      }
+      return values;
+    }
+
+    /** Both global state and injectability flow from {@code source}. */
+    private void flow(Variable source, Variable destination) {
+      if (source != null && destination != null) {
+        flows.get(node(source)).add(node(destination));
+      }
+    }
+
+    /** Only global state flows from {@code source}. */
+    private void globalFlow(Variable source, Variable destination) {
+      if (source != null && destination != null) {
+        globalFlows.get(node(source)).add(node(destination));
+      }
+    }
+
+    private int node(Variable variable) {
+      Integer node = nodes.get(variable);
+      if (node == null) {
+        node = nodes.size();
+        nodes.put(variable, node);
+        flows.add(new ArrayList<Integer>());
+        globalFlows.add(new ArrayList<Integer>());
+        if (variable.isGlobal()) {
+          globals.set(node);
+        }
+        if (variable instanceof FieldInfo) {
+          isField.set(node);
+          fieldCount++;
+        }
+        if (variable instanceof LocalField) {
+          // The state of a field read through an instance comes from both.
+          LocalField localField = (LocalField) variable;
+          flows.get(node(localField.getField())).add(node);
+          if (localField.getInstance() != null) {
+            globalFlows.get(node(localField.getInstance())).add(node);
+          }
+        }
+      }
+      return node;
+    }
+
+    /**
+     * Spreads the state set in {@code state} along the edges until nothing
+     * changes. Only global state flows along the {@code globalFlows}.
+     */
+    void propagate(BitSet state, boolean global) {
+      List<Integer> worklist = new ArrayList<Integer>();
+      for (int node = state.nextSetBit(0); node >= 0; node = state.nextSetBit(node + 1)) {
+        worklist.add(node);
+      }
+      while (!worklist.isEmpty()) {
+        int node = worklist.remove(worklist.size() - 1);
+        for (int next : flows.get(node)) {
+          if (!state.get(next)) {
+            state.set(next);
+            worklist.add(next);
+          }
+        }
+        if (global) {
+          for (int next : globalFlows.get(node)) {
+            if (!state.get(next)) {
+              state.set(next);
+              worklist.add(next);
+            }
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -34,6 +34,10 @@ public class GlobalCost extends ViolationCost {
     return "dependency on global mutable state";
   }
 
+  public Variable getVariable() {
+    return variable;
+  }
+
   @Override
   public void link(Cost directCost, Cost dependentCost, Cost constructorDependentCost) {
     directCost.add(getCost());
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.test.metric.method.Constant;
+
+/**
+ * Shares a single instance between equal names, {@link Type}s and constant
+ * {@link Variable}s created while building {@link ClassInfo}s. The same class
+ * names, method names and types show up in every caller, so a repository keeps
+ * one {@code Interner} for all the classes it builds.
+ * <p>
+ * Only literal constants are interned. Constants which stand for a value
+ * produced at a particular call site (such as a return value) must stay
+ * distinct, since injectability and globality are tracked per
+ * {@link Variable} instance.
+ */
+public class Interner {
+
+  private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, Type> descTypes = new ConcurrentHashMap<String, Type>();
+  private final ConcurrentMap<String, Type> javaTypes = new ConcurrentHashMap<String, Type>();
+  private final ConcurrentMap<Type, ConcurrentMap<String, Constant>> constants =
+      new ConcurrentHashMap<Type, ConcurrentMap<String, Constant>>();
+
+  public String name(String name) {
+    if (name == null) {
+      return null;
+    }
+    String interned = names.putIfAbsent(name, name);
+    return interned == null ? name : interned;
+  }
+
+  /**
+   * @return the same {@link Type} instance for the same JVM descriptor, as
+   *         produced by {@link JavaType#fromDesc(String)}.
+   */
+  public Type fromDesc(String desc) {
+    Type type = descTypes.get(desc);
+    if (type == null) {
+      type = JavaType.fromDesc(desc);
+      Type interned = descTypes.putIfAbsent(desc, type);
+      type = interned == null ? type : interned;
+    }
+    return type;
+  }
+
+  /**
+   * @return the same {@link Type} instance for the same class name, as
+   *         produced by {@link JavaType#fromJava(String)}.
+   */
+  public Type fromJava(String clazz) {
+    Type type = javaTypes.get(clazz);
+    if (type == null) {
+      type = JavaType.fromJava(name(clazz));
+      Type interned = javaTypes.putIfAbsent(clazz, type);
+      type = interned == null ? type : interned;
+    }
+    return type;
+  }
+
+  /**
+   * @return the shared {@link Type} for a class, as produced by
+   *         {@link JavaType#fromClass(Class)}.
+   */
+  public Type fromClass(Class<?> clazz) {
+    Type type = JavaType.fromClass(clazz);
+    if (type.isPrimitive() || type.isArray()) {
+      return type;
+    }
+    return fromJava(type.toString());
+  }
+
+  /**
+   * @return a shared {@link Constant} for a literal value, such as a number,
+   *         a string or {@code null}.
+   */
+  public Constant constant(Object value, Type type) {
+    ConcurrentMap<String, Constant> values = constants.get(type);
+    if (values == null) {
+      values = new ConcurrentHashMap<String, Constant>();
+      ConcurrentMap<String, Constant> existing = constants.putIfAbsent(type, values);
+      values = existing == null ? values : existing;
+    }
+    String key = String.valueOf(value);
+    Constant constant = values.get(key);
+    if (constant == null) {
+      constant = new Constant(value, type);
+      Constant interned = values.putIfAbsent(key, constant);
+      constant = interned == null ? constant : interned;
+    }
+    return constant;
+  }
+
+}
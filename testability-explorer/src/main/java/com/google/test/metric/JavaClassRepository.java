@@ -15,19 +15,34 @@
  */
 package com.google.test.metric;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.ClassReader;
 
 import com.google.classpath.ClassPath;
 import com.google.test.metric.asm.ClassInfoBuilderVisitor;
 
+/**
+ * Loads {@link ClassInfo}s from class files. It is safe to use from many
+ * threads: each thread reads and parses the classes it needs without holding a
+ * lock, and a class (along with the classes it pulled in) only becomes visible
+ * to other threads once it is complete. If another thread published one of
+ * those classes first, the build is thrown away and done again on top of the
+ * published classes, so that there is only ever one {@link ClassInfo} per name.
+ */
 public class JavaClassRepository implements ClassRepository {
 
-  private final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+  private final Map<String, ClassInfo> classes = new ConcurrentHashMap<String, ClassInfo>();
+  /** Classes being built by the current thread, or null if it builds none. */
+  private final ThreadLocal<Map<String, ClassInfo>> building =
+      new ThreadLocal<Map<String, ClassInfo>>();
+  private final Interner interner = new Interner();
   private ClassPath classpathRoots;
 
   public JavaClassRepository() {
@@ -46,17 +61,85 @@ public class JavaClassRepository implements ClassRepository {
     }
     ClassInfo classInfo = classes.get(name);
     if (classInfo == null) {
-        try {
-          classInfo = parseClass(inputStreamForClass(name));
-        } catch (ArrayIndexOutOfBoundsException e) {
-          throw new ClassNotFoundException(name);
-        } catch (ClassNotFoundException e) {
-          throw new ClassNotFoundException(name, e);
-        }
+      classInfo = load(name, null);
     }
     return classInfo;
   }
 
+  /**
+   * Same as {@link #getClass(String)}, but parses the class from bytes which
+   * the caller has already read, unless the class is loaded already.
+   */
+  public ClassInfo getClass(String name, InputStream classBytes) {
+    ClassInfo classInfo = classes.get(name);
+    if (classInfo == null) {
+      classInfo = load(name, classBytes);
+    }
+    return classInfo;
+  }
+
+  private ClassInfo load(String name, InputStream classBytes) {
+    Map<String, ClassInfo> built = building.get();
+    if (built != null) {
+      ClassInfo classInfo = built.get(name);
+      return classInfo != null ? classInfo : parse(name, classBytes);
+    }
+    byte[] bytes = classBytes == null ? null : readFully(classBytes);
+    while (true) {
+      ClassInfo classInfo = classes.get(name);
+      if (classInfo != null) {
+        return classInfo;
+      }
+      built = new HashMap<String, ClassInfo>();
+      building.set(built);
+      try {
+        classInfo = parse(name, bytes == null ? null : new ByteArrayInputStream(bytes));
+      } finally {
+        building.remove();
+      }
+      if (publish(built)) {
+        return classInfo;
+      }
+    }
+  }
+
+  private byte[] readFully(InputStream classBytes) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int read; (read = classBytes.read(buffer)) != -1;) {
+        bytes.write(buffer, 0, read);
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private ClassInfo parse(String name, InputStream classBytes) {
+    try {
+      return parseClass(classBytes == null ? inputStreamForClass(name) : classBytes);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new ClassNotFoundException(name);
+    } catch (ClassNotFoundException e) {
+      throw new ClassNotFoundException(name, e);
+    }
+  }
+
+  /**
+   * Makes the classes built by one thread visible to all, unless another
+   * thread has published any of them in the meantime.
+   */
+  private synchronized boolean publish(Map<String, ClassInfo> built) {
+    for (String name : built.keySet()) {
+      if (classes.containsKey(name)) {
+        return false;
+      }
+    }
+    classes.putAll(built);
+    return true;
+  }
+
   private InputStream inputStreamForClass(String clazzName) {
     String resource = clazzName.replace(".", "/");
     InputStream classBytes = null;
@@ -88,7 +171,7 @@ public class JavaClassRepository implements ClassRepository {
   private ClassInfo parseClass(InputStream classBytes) {
     try {
       ClassReader classReader = new ClassReader(classBytes);
-      ClassInfoBuilderVisitor visitor = new ClassInfoBuilderVisitor(this);
+      ClassInfoBuilderVisitor visitor = new ClassInfoBuilderVisitor(this, interner);
       classReader.accept(visitor, 0);
       return visitor.getClassInfo();
     } catch (IOException e) {
@@ -96,6 +179,10 @@ public class JavaClassRepository implements ClassRepository {
     }
   }
 
+  public Interner getInterner() {
+    return interner;
+  }
+
   /* (non-Javadoc)
    * @see com.google.test.metric.ClassRepository#addClass(com.google.test.metric.ClassInfo)
    */
@@ -104,7 +191,12 @@ public class JavaClassRepository implements ClassRepository {
     if (name.contains("$") || name.contains("/")) {
       throw new IllegalStateException();
     }
-    classes.put(name, classInfo);
+    Map<String, ClassInfo> built = building.get();
+    if (built != null) {
+      built.put(name, classInfo);
+    } else {
+      classes.put(name, classInfo);
+    }
   }
 
 }
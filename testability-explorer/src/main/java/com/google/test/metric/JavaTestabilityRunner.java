@@ -20,14 +20,30 @@ import com.google.classpath.RegExpResourceFilter;
 import static com.google.classpath.RegExpResourceFilter.ANY;
 import static com.google.classpath.RegExpResourceFilter.ENDS_WITH_CLASS;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.google.test.metric.ConfigModule.Error;
 import com.google.test.metric.report.ReportGenerator;
 import com.google.test.metric.report.issues.IssuesReporter;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
 import static java.util.Arrays.asList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -39,6 +55,24 @@ import java.util.TreeSet;
  */
 public class JavaTestabilityRunner implements Runnable {
 
+  private static final int QUEUE_SIZE = 100;
+  private static final int PREFETCH_DEPTH = 2;
+
+  /**
+   * Orders class files by the names of their classes, which is the order of
+   * the reports. The file names alone would put {@code A$1.class} before
+   * {@code A.class}.
+   */
+  static final Comparator<String> BY_CLASS_NAME = new Comparator<String>() {
+    public int compare(String resource1, String resource2) {
+      return className(resource1).compareTo(className(resource2));
+    }
+
+    private String className(String resource) {
+      return resource.substring(0, resource.length() - ".class".length()).replace('/', '.');
+    }
+  };
+
   private final ReportGenerator report;
   private final ClassPath classPath;
   private final ClassRepository classRepository;
@@ -46,6 +80,20 @@ public class JavaTestabilityRunner implements Runnable {
   private final List<String> entryList;
   private final WhiteList whiteList;
   private final PrintStream err;
+  private boolean scheduleByDependencies;
+  private int threads;
+  private ClassPathStreamer streamer;
+  private int prefetchThreads;
+  private ClassPrefetcher prefetcher;
+  private boolean wholeProgram;
+  private boolean streamReport;
+  private boolean longestFirst;
+  private File timingsFile;
+  private Shard shard;
+  private File resultsFile;
+  private boolean resultsTotalsOnly;
+  private List<File> mergeFiles;
+  private Map<String, Integer> sequences;
 
   @Inject
   public JavaTestabilityRunner(ReportGenerator report,
@@ -61,10 +109,142 @@ public class JavaTestabilityRunner implements Runnable {
     this.err = err;
   }
 
+  /**
+   * Analyze classes after the classes they use, as found by a {@link DependencyGraph}
+   * of the constant pools, rather than in alphabetical order. The report is the
+   * same either way.
+   */
+  @Inject(optional = true)
+  public void setScheduleByDependencies(@Named("schedule") boolean scheduleByDependencies) {
+    this.scheduleByDependencies = scheduleByDependencies;
+  }
+
+  /**
+   * Hand each class to the report as soon as it is done, without keeping the
+   * classes in an {@link AnalysisModel}, even when the analysis runs on the
+   * calling thread.
+   */
+  @Inject(optional = true)
+  public void setAllClasses(@Named("allClasses") boolean streamReport) {
+    this.streamReport = streamReport;
+  }
+
+  /**
+   * Run the analysis as an {@link AnalysisPipeline} with this many threads for
+   * each of the parse and the analysis stage. With 0 (the default) everything
+   * happens on the calling thread.
+   */
+  @Inject(optional = true)
+  public void setThreads(@Named("threads") int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Read the classes to analyze by streaming each jar and directory of the
+   * class path front to back, rather than looking them up one at a time.
+   *
+   * @param classPath the same colon delimited class path as the {@link ClassPath}.
+   */
+  @Inject(optional = true)
+  public void setStreamClassPath(@Named("streamClassPath") String classPath) {
+    streamer = new ClassPathStreamer(classPath);
+  }
+
+  /**
+   * Load the classes which the analyzed classes call with this many
+   * {@link ClassPrefetcher} threads, while the analysis goes on. With 0 (the
+   * default) classes are loaded when the analysis gets to them.
+   */
+  @Inject(optional = true)
+  public void setPrefetchThreads(@Named("prefetch") int prefetchThreads) {
+    this.prefetchThreads = prefetchThreads;
+  }
+
+  /**
+   * Compute a {@link FieldStateTable} for all classes to analyze before
+   * analyzing them.
+   */
+  @Inject(optional = true)
+  public void setWholeProgram(@Named("wholeProgram") boolean wholeProgram) {
+    this.wholeProgram = wholeProgram;
+  }
+
+  /**
+   * Have the {@link AnalysisPipeline} start the classes which are expected to
+   * take longest first, as found by a {@link CostSchedule}.
+   */
+  @Inject(optional = true)
+  public void setLongestFirst(@Named("longestFirst") boolean longestFirst) {
+    this.longestFirst = longestFirst;
+  }
+
+  /**
+   * Write how long the analysis of each class took to this file, and expect
+   * classes to take as long the next time they are scheduled longest first.
+   */
+  @Inject(optional = true)
+  public void setTimingsFile(@Named("timings") String timingsFile) {
+    this.timingsFile = new File(timingsFile);
+  }
+
+  /**
+   * Analyze only the classes of this {@link Shard}.
+   *
+   * @param shard such as {@code 0/4}.
+   */
+  @Inject(optional = true)
+  public void setShard(@Named("shard") String shard) {
+    this.shard = Shard.parse(shard);
+  }
+
+  /**
+   * Write the costs of the analyzed classes to this file with a
+   * {@link ClassCostWriter} when run, rather than printing a report.
+   */
+  @Inject(optional = true)
+  public void setResultsFile(@Named("results") String resultsFile) {
+    this.resultsFile = new File(resultsFile);
+  }
+
+  /**
+   * Write only the total costs of each method to the results file, and none of
+   * the costs they are made of.
+   */
+  @Inject(optional = true)
+  public void setResultsTotalsOnly(@Named("resultsTotalsOnly") boolean resultsTotalsOnly) {
+    this.resultsTotalsOnly = resultsTotalsOnly;
+  }
+
+  /**
+   * Print the report for the results of all shards of an analysis when run,
+   * rather than analyzing any classes.
+   *
+   * @param mergeFiles results files separated by the path separator.
+   */
+  @Inject(optional = true)
+  public void setMergeFiles(@Named("merge") String mergeFiles) {
+    this.mergeFiles = new ArrayList<File>();
+    for (String file : mergeFiles.split(File.pathSeparator)) {
+      if (file.length() > 0) {
+        this.mergeFiles.add(new File(file));
+      }
+    }
+  }
+
   public AnalysisModel generateModel(IssuesReporter issuesReporter) {
-    SortedSet<String> classNames = new TreeSet<String>();
-    RegExpResourceFilter resourceFilter = new RegExpResourceFilter(ANY, ENDS_WITH_CLASS);
     AnalysisModel model = new AnalysisModel(issuesReporter);
+    analyzeClasses(model, null);
+    return model;
+  }
+
+  /**
+   * @param model can be {@code null}, if only the report needs the costs.
+   * @param reportGenerator if not {@code null}, receives each class cost as soon
+   *          as it is done, in class name order.
+   */
+  private void analyzeClasses(AnalysisModel model, ReportGenerator reportGenerator) {
+    SortedSet<String> classNames = new TreeSet<String>(BY_CLASS_NAME);
+    RegExpResourceFilter resourceFilter = new RegExpResourceFilter(ANY, ENDS_WITH_CLASS);
     for (String entry : entryList) {
       if (entry.equals(".")) {
         entry = "";
@@ -72,21 +252,221 @@ public class JavaTestabilityRunner implements Runnable {
       // TODO(jonathan) seems too complicated, replacing "." with "/" using the resource filter, then right below replace all "/" with "."
       classNames.addAll(asList(classPath.findResources(entry.replace(".", "/"), resourceFilter)));
     }
+    if (wholeProgram) {
+      // Over all classes, so that every shard sees the same field states.
+      computeFieldStates(classNames);
+    }
+    if (shard != null || resultsFile != null) {
+      sequences = selectShard(classNames);
+    }
+    if (prefetchThreads > 0) {
+      prefetcher = new ClassPrefetcher(classRepository, whiteList, prefetchThreads,
+          PREFETCH_DEPTH);
+    }
+    try {
+      if (threads > 0) {
+        runPipeline(classNames, model, reportGenerator);
+      } else {
+        analyze(classNames, model, reportGenerator);
+      }
+    } finally {
+      computer.shutdown();
+      if (prefetcher != null) {
+        prefetcher.shutdown();
+        err.println(prefetcher);
+        prefetcher = null;
+      }
+    }
+    if (computer.getMemo() != null) {
+      err.println(computer.getMemo());
+    }
+    if (computer.getInterner() != null) {
+      err.println(computer.getInterner());
+    }
+  }
+
+  private void analyze(SortedSet<String> classNames, AnalysisModel model,
+      ReportGenerator reportGenerator) {
+    final Map<String, ClassCost> classCosts = new HashMap<String, ClassCost>();
+    if (streamer != null) {
+      final Set<String> unread = new HashSet<String>(classNames);
+      try {
+        streamer.stream(new ClassPathStreamer.Handler() {
+          public void handle(String resource, byte[] classBytes) {
+            if (unread.remove(resource)) {
+              analyze(toClassName(resource), classBytes, classCosts);
+            }
+          }
+        });
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      for (String resource : classNames) {
+        if (unread.contains(resource)) {
+          analyze(toClassName(resource), null, classCosts);
+        }
+      }
+    } else if (scheduleByDependencies) {
+      for (String className : DependencyGraph.scan(classPath, classNames).schedule()) {
+        analyze(className, null, classCosts);
+      }
+    } else {
+      // In report order already, so each class is handed on as soon as it is done.
+      for (String resource : classNames) {
+        String className = toClassName(resource);
+        analyze(className, null, classCosts);
+        addClassCost(classCosts.remove(className), model, reportGenerator);
+      }
+      return;
+    }
     for (String resource : classNames) {
-      String className = resource.replace(".class", "").replace("/", ".").replace('$', '.');
+      addClassCost(classCosts.get(toClassName(resource)), model, reportGenerator);
+    }
+  }
+
+  private void addClassCost(ClassCost classCost, AnalysisModel model,
+      ReportGenerator reportGenerator) {
+    if (classCost != null) {
+      if (model != null) {
+        model.addClassCost(classCost);
+      }
+      if (reportGenerator != null) {
+        reportGenerator.addClassCost(classCost);
+      }
+    }
+  }
+
+  /**
+   * @param classBytes the class file if it has been read already, or {@code null}.
+   */
+  private void analyze(String className, byte[] classBytes, Map<String, ClassCost> classCosts) {
+    try {
+      if (!whiteList.isClassWhiteListed(className)) {
+        ClassInfo clazz;
+        if (classBytes != null && classRepository instanceof JavaClassRepository) {
+          clazz = ((JavaClassRepository) classRepository).getClass(className,
+              new ByteArrayInputStream(classBytes));
+        } else {
+          clazz = classRepository.getClass(className);
+        }
+        if (prefetcher != null) {
+          prefetcher.prefetch(clazz);
+        }
+        classCosts.put(className, computer.compute(clazz));
+      }
+    } catch (ClassNotFoundException e) {
+      err.println(AnalysisPipeline.warning(className, e));
+    }
+  }
+
+  /**
+   * Drops the classes of other shards from {@code classNames}.
+   *
+   * @return the place of each remaining class among all of them.
+   */
+  private Map<String, Integer> selectShard(SortedSet<String> classNames) {
+    Map<String, Integer> selected = new HashMap<String, Integer>();
+    int sequence = 0;
+    for (Iterator<String> resources = classNames.iterator(); resources.hasNext(); sequence++) {
+      String className = toClassName(resources.next());
+      if (shard == null || shard.contains(className)) {
+        selected.put(className, sequence);
+      } else {
+        resources.remove();
+      }
+    }
+    return selected;
+  }
+
+  private void computeFieldStates(SortedSet<String> classNames) {
+    List<ClassInfo> classes = new ArrayList<ClassInfo>();
+    for (String resource : classNames) {
+      String className = toClassName(resource);
+      if (!whiteList.isClassWhiteListed(className)) {
+        try {
+          classes.add(classRepository.getClass(className));
+        } catch (ClassNotFoundException e) {
+          // Reported when the class is analyzed.
+        }
+      }
+    }
+    FieldStateTable fieldStates = FieldStateTable.compute(classRepository, whiteList, classes);
+    computer.setFieldStates(fieldStates);
+    err.println(fieldStates);
+  }
+
+  private void runPipeline(SortedSet<String> classNames, AnalysisModel model,
+      ReportGenerator reportGenerator) {
+    List<String> names = new ArrayList<String>();
+    List<String> resources = new ArrayList<String>();
+    for (String resource : classNames) {
+      String className = toClassName(resource);
+      if (!whiteList.isClassWhiteListed(className)) {
+        names.add(className);
+        resources.add(resource);
+      }
+    }
+    AnalysisPipeline pipeline = new AnalysisPipeline(classPath, classRepository, computer,
+        threads, QUEUE_SIZE);
+    pipeline.setStreamer(streamer);
+    pipeline.setPrefetcher(prefetcher);
+    if (longestFirst) {
+      pipeline.setSchedule(scheduleLongestFirst(names, resources));
+    } else if (scheduleByDependencies) {
+      pipeline.setSchedule(scheduleByDependencies(names, resources));
+    }
+    pipeline.run(names, resources, model, reportGenerator, err);
+    for (AnalysisPipeline.Stage stage : pipeline.getStages()) {
+      err.println(stage);
+    }
+    if (timingsFile != null) {
       try {
-        if (!whiteList.isClassWhiteListed(className)) {
-          ClassInfo clazz = classRepository.getClass(className);
-          ClassCost classCost = computer.compute(clazz);
-          model.addClassCost(classCost);
+        Writer writer = new FileWriter(timingsFile);
+        try {
+          CostSchedule.writeTimings(writer, pipeline.getAnalysisMicros());
+        } finally {
+          writer.close();
         }
-      } catch (ClassNotFoundException e) {
-        err.println("WARNING: can not analyze class '" + className
-            + "' since class '" + e.getClassName() + "' was not found. Chain: " + e.getMessage());
+      } catch (IOException e) {
+        err.println("WARNING: can not write timings to " + timingsFile + ": " + e.getMessage());
       }
     }
+  }
 
-    return model;
+  private List<Integer> scheduleByDependencies(List<String> names, List<String> resources) {
+    Map<String, Integer> indexes = new HashMap<String, Integer>();
+    for (int i = 0; i < names.size(); i++) {
+      indexes.put(names.get(i), i);
+    }
+    List<Integer> schedule = new ArrayList<Integer>(names.size());
+    for (String className : DependencyGraph.scan(classPath, resources).schedule()) {
+      Integer index = indexes.get(className);
+      if (index != null) {
+        schedule.add(index);
+      }
+    }
+    return schedule;
+  }
+
+  private List<Integer> scheduleLongestFirst(List<String> names, List<String> resources) {
+    CostSchedule schedule = CostSchedule.scan(classPath, resources);
+    if (timingsFile != null && timingsFile.exists()) {
+      try {
+        Reader reader = new FileReader(timingsFile);
+        try {
+          schedule.readTimings(reader);
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        err.println("WARNING: can not read timings from " + timingsFile + ": " + e.getMessage());
+      }
+    }
+    return schedule.schedule(names);
+  }
+
+  private String toClassName(String resource) {
+    return resource.replace(".class", "").replace("/", ".").replace('$', '.');
   }
 
   public void renderReport(AnalysisModel model) {
@@ -103,8 +483,59 @@ public class JavaTestabilityRunner implements Runnable {
     }
   }
 
+  private void writeResults(AnalysisModel model) {
+    try {
+      ClassCostWriter writer = new ClassCostWriter(new FileOutputStream(resultsFile),
+          shard == null ? Shard.ALL : shard, !resultsTotalsOnly);
+      try {
+        for (ClassCost classCost : model.getClassCosts()) {
+          writer.write(sequences.get(classCost.getClassName()), classCost);
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private AnalysisModel mergeResults() {
+    List<ClassCostReader> readers = new ArrayList<ClassCostReader>();
+    try {
+      try {
+        for (File file : mergeFiles) {
+          readers.add(new ClassCostReader(new FileInputStream(file)));
+        }
+        AnalysisModel model = new AnalysisModel(null);
+        ClassCostReader.merge(readers, model);
+        return model;
+      } finally {
+        for (ClassCostReader reader : readers) {
+          reader.close();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public void run() {
-    renderReport(generateModel(null));
+    if (mergeFiles != null) {
+      renderReport(mergeResults());
+    } else if (resultsFile != null) {
+      writeResults(generateModel(null));
+    } else if (threads > 0 || streamReport) {
+      // Report each class as soon as it is done, rather than keeping all of them.
+      try {
+        report.printHeader();
+        analyzeClasses(null, report);
+        report.printFooter();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    } else {
+      renderReport(generateModel(null));
+    }
   }
 
 }
@@ -105,7 +105,7 @@ public class JavaType extends Type {
   }
 
   public static Type fromDescReturn(String desc) {
-    return fromDesc(desc.split("\\(.*\\)")[1]);
+    return fromDesc(desc.substring(desc.lastIndexOf(')') + 1));
   }
 
   public static List<Type> fromDescParameters(String desc) {
@@ -37,6 +37,14 @@ public class LoDViolation extends ViolationCost {
     return "cost from breaking the Law of Demeter";
   }
 
+  public String getMethodName() {
+    return methodName;
+  }
+
+  public int getDistance() {
+    return distance;
+  }
+
   @Override
   public void link(Cost directCost, Cost dependentCost, Cost constructorDependentCost) {
     directCost.add(getCost());
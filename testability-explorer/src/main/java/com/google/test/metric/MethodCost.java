@@ -29,6 +29,8 @@ public class MethodCost {
   private final boolean constructor;
   private final boolean aStatic;
   private final boolean staticInit;
+  private boolean truncated;
+  private boolean linked;
 
   private final List<ViolationCost> costSources = new ArrayList<ViolationCost>();
 
@@ -57,6 +59,7 @@ public class MethodCost {
   private final Cost constructorDependentCost = new Cost();
 
   public static final String METHOD_NAME_ATTRIBUTE = "name";
+  public static final String TRUNCATED_ATTRIBUTE = "truncated";
 
   /**
    * @param className
@@ -89,6 +92,7 @@ public class MethodCost {
   }
 
   public void addCostSource(ViolationCost costSource) {
+    checkNotLinked();
     costSource.link(directCost, dependentCost, constructorDependentCost);
     costSources.add(costSource);
   }
@@ -140,10 +144,42 @@ public class MethodCost {
     Map<String, Object> map = getTotalCost().getAttributes();
     map.put("line", lineNumber);
     map.put(METHOD_NAME_ATTRIBUTE, methodName);
+    if (truncated) {
+      map.put(TRUNCATED_ATTRIBUTE, true);
+    }
     return map;
   }
 
+  /**
+   * Restores the costs of a method as they were written by a
+   * {@link ClassCostWriter}, or copied by a {@link MethodCostMemo}. The totals
+   * are restored as they were, rather than added up from the cost sources.
+   */
+  void restore(Cost direct, Cost dependent, Cost constructorDependent,
+      List<ViolationCost> sources) {
+    checkNotLinked();
+    directCost.add(direct);
+    dependentCost.add(dependent);
+    constructorDependentCost.add(constructorDependent);
+    costSources.addAll(sources);
+  }
+
+  /**
+   * Seals this method cost, so that no more costs can be added. Linked method
+   * costs can be shared, see {@link MethodCostInterner}.
+   */
   public void link() {
+    linked = true;
+  }
+
+  public boolean isLinked() {
+    return linked;
+  }
+
+  private void checkNotLinked() {
+    if (linked) {
+      throw new IllegalStateException("Can not add costs to linked method " + methodName);
+    }
   }
 
   public boolean isMainMethod() {
@@ -157,4 +193,16 @@ public class MethodCost {
   public boolean isStaticInit() {
     return staticInit;
   }
+
+  /**
+   * @return true if the analysis ran out of its {@link AnalysisBudget}, so that
+   *         the cost is only a lower bound.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public void setTruncated(boolean truncated) {
+    this.truncated = truncated;
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the {@link MethodCost}s of called methods between the methods which
+ * call them. With a print depth above 0 every analyzed method records the
+ * details of the methods it calls, and most callers of a method record the
+ * very same details. Once a method has been analyzed, each of the called
+ * method costs it refers to is replaced by an equal one recorded before, if
+ * there is one, so that the details form a graph in which each distinct
+ * subtree is kept only once.
+ * <p>
+ * Shared method costs are {@link MethodCost#link() linked}, so that they can
+ * not change any more.
+ */
+public class MethodCostInterner {
+
+  private final ConcurrentMap<Key, MethodCost> costs = new ConcurrentHashMap<Key, MethodCost>();
+  private final AtomicInteger lookups = new AtomicInteger();
+  private final AtomicInteger hits = new AtomicInteger();
+
+  /**
+   * Replaces the costs of the methods called by {@code root}, transitively, by
+   * shared ones. The {@code root} itself is not shared.
+   */
+  public void internCalledMethods(MethodCost root) {
+    internCalledMethods(root, new IdentityHashMap<MethodCost, MethodCost>());
+  }
+
+  private void internCalledMethods(MethodCost cost, Map<MethodCost, MethodCost> done) {
+    List<ViolationCost> violations = cost.getViolationCosts();
+    for (int i = 0; i < violations.size(); i++) {
+      ViolationCost violation = violations.get(i);
+      if (violation instanceof MethodInvocationCost) {
+        MethodInvocationCost invocation = (MethodInvocationCost) violation;
+        MethodCost called = intern(invocation.getMethodCost(), done);
+        if (called != invocation.getMethodCost()) {
+          violations.set(i, invocation.withMethodCost(called));
+        }
+      }
+    }
+  }
+
+  private MethodCost intern(MethodCost cost, Map<MethodCost, MethodCost> done) {
+    MethodCost interned = done.get(cost);
+    if (interned == null) {
+      if (!cost.isLinked()) {
+        internCalledMethods(cost, done);
+        cost.link();
+      }
+      lookups.incrementAndGet();
+      interned = costs.putIfAbsent(new Key(cost), cost);
+      if (interned == null) {
+        interned = cost;
+      } else {
+        hits.incrementAndGet();
+      }
+      done.put(cost, interned);
+    }
+    return interned;
+  }
+
+  public int getSize() {
+    return costs.size();
+  }
+
+  @Override
+  public String toString() {
+    int lookups = this.lookups.get();
+    return String.format("Shared %d of %d called method costs (%.1f%%)", hits.get(), lookups,
+        lookups == 0 ? 0.0 : 100.0 * hits.get() / lookups);
+  }
+
+  /**
+   * Compares method costs by what they contain. Their called method costs
+   * are shared already, so those are compared by identity.
+   */
+  private static class Key {
+    private final MethodCost cost;
+    private final int hashCode;
+
+    Key(MethodCost cost) {
+      this.cost = cost;
+      int hash = cost.getClassName().hashCode();
+      hash = 31 * hash + cost.getMethodName().hashCode();
+      hash = 31 * hash + cost.getMethodLineNumber();
+      for (ViolationCost violation : cost.getViolationCosts()) {
+        hash = 31 * hash + violation.getCost().hashCode();
+        hash = 31 * hash + violation.getLocation().getLineNumber();
+        if (violation instanceof MethodInvocationCost) {
+          hash = 31 * hash
+              + System.identityHashCode(((MethodInvocationCost) violation).getMethodCost());
+        }
+      }
+      this.hashCode = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      MethodCost other = ((Key) obj).cost;
+      if (!cost.getClassName().equals(other.getClassName())
+          || !cost.getMethodName().equals(other.getMethodName())
+          || cost.getMethodLineNumber() != other.getMethodLineNumber()
+          || cost.isConstructor() != other.isConstructor()
+          || cost.isStatic() != other.isStatic()
+          || cost.isStaticInit() != other.isStaticInit()
+          || cost.isTruncated() != other.isTruncated()) {
+        return false;
+      }
+      List<ViolationCost> violations = cost.getViolationCosts();
+      List<ViolationCost> otherViolations = other.getViolationCosts();
+      if (violations.size() != otherViolations.size()) {
+        return false;
+      }
+      for (int i = 0; i < violations.size(); i++) {
+        if (!equal(violations.get(i), otherViolations.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean equal(ViolationCost a, ViolationCost b) {
+      if (a.getClass() != b.getClass()
+          || !a.getCost().equals(b.getCost())
+          || a.getLocation().getLineNumber() != b.getLocation().getLineNumber()
+          || !equal(a.getLocation().getFile(), b.getLocation().getFile())
+          || !equal(a.getReason(), b.getReason())) {
+        return false;
+      }
+      if (a instanceof MethodInvocationCost) {
+        return ((MethodInvocationCost) a).getMethodCost()
+            == ((MethodInvocationCost) b).getMethodCost();
+      }
+      return equal(a.getDescription(), b.getDescription());
+    }
+
+    private boolean equal(Object a, Object b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+
+}
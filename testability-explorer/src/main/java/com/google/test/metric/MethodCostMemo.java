@@ -0,0 +1,503 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.test.metric.method.Constant;
+import com.google.test.metric.method.op.turing.ArrayAssignment;
+import com.google.test.metric.method.op.turing.FieldAssignment;
+import com.google.test.metric.method.op.turing.LocalAssignment;
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
+import com.google.test.metric.method.op.turing.ReturnOperation;
+
+/**
+ * Reuses the cost totals of methods whose bytecode is identical apart from
+ * the name of the class which owns them, such as the accessors of generated
+ * protocol buffers or beans.
+ * <p>
+ * The cost of a method depends on more than its own operations: the
+ * constructor, setters and static initializers of its class are added as
+ * implicit costs, and calls into its own class are simulated as well. The
+ * key of a method therefore covers the normalized operations of the method
+ * and of every method of the same class it reaches, with their lines relative
+ * to the start of their method, the shape of the fields of the class, and the
+ * resolved name of every method it calls in other classes. Names which refer to the owning class are replaced, so that two
+ * classes with the same code share their keys. The part of the key which is
+ * common to all the methods of a class, its fields and implicit methods, is
+ * only built once per class.
+ * <p>
+ * A method whose cost came from the memo gets a copy of the
+ * {@link ViolationCost}s of the earlier method, moved to its own class, file
+ * and lines. Since the key has the lines of each method relative to its start,
+ * the lines move by as much as the method they are in.
+ */
+public class MethodCostMemo {
+
+  private static final String OWNER = "<this>";
+
+  private final ClassRepository classRepository;
+  private final WhiteList whitelist;
+  private final Map<String, MethodCost> costs = new ConcurrentHashMap<String, MethodCost>();
+  private final Map<String, String> classKeys = new ConcurrentHashMap<String, String>();
+  private final AtomicInteger lookups = new AtomicInteger();
+  private final AtomicInteger hits = new AtomicInteger();
+  private FieldStateTable fieldStates;
+
+  public MethodCostMemo(ClassRepository classRepository, WhiteList whitelist) {
+    this.classRepository = classRepository;
+    this.whitelist = whitelist;
+  }
+
+  /**
+   * The field states which the costs are computed with, since they are part of
+   * what a cost depends on. The key of a method includes the state of every
+   * field it refers to, as seen from its class.
+   */
+  public void setFieldStates(FieldStateTable fieldStates) {
+    this.fieldStates = fieldStates;
+  }
+
+  /**
+   * @return a hash of everything the cost of {@code method} depends on.
+   */
+  public String keyOf(MethodInfo method) {
+    ClassInfo owner = method.getClassInfo();
+    String kind = kindOf(method);
+    String classKey = classKeys.get(owner.getName() + kind);
+    if (classKey == null) {
+      classKey = digest(new KeyBuilder(owner, kind).buildClass());
+      classKeys.put(owner.getName() + kind, classKey);
+    }
+    return digest(classKey + new KeyBuilder(owner, kind).build(method));
+  }
+
+  /**
+   * Which implicit costs are added to a method: none for a static
+   * initializer, those of the static initializers for other static methods and
+   * constructors, and those of the constructor and setters as well otherwise.
+   */
+  private String kindOf(MethodInfo method) {
+    if (method.isStaticConstructor()) {
+      return "#clinit";
+    }
+    return MetricComputer.hasImplicitCosts(method) ? "#instance" : "#static";
+  }
+
+  /**
+   * @return a new {@link MethodCost} for {@code method} with the costs of an
+   *         earlier method with the same key, or {@code null} if there is none.
+   */
+  public MethodCost get(String key, MethodInfo method) {
+    lookups.incrementAndGet();
+    MethodCost template = costs.get(key);
+    if (template == null) {
+      return null;
+    }
+    hits.incrementAndGet();
+    ClassInfo from = classRepository.getClass(template.getClassName());
+    return new Relocation(from, method.getClassInfo()).copy(template, method);
+  }
+
+  public void put(String key, MethodCost methodCost) {
+    costs.put(key, methodCost);
+  }
+
+  public int getLookups() {
+    return lookups.get();
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public double getHitRate() {
+    int count = lookups.get();
+    return count == 0 ? 0 : (double) hits.get() / count;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Reused the cost of %d of %d methods (%.1f%%)", getHits(),
+        getLookups(), 100 * getHitRate());
+  }
+
+  /**
+   * @return a pattern of the class name {@code name}, which does not match the
+   *         names it is a part of, such as those of its inner classes.
+   */
+  static Pattern classNamePattern(String name) {
+    return Pattern.compile("(?<![\\w$.])" + Pattern.quote(name) + "(?![\\w$]|\\.[\\w$])");
+  }
+
+  static String replaceClassName(Pattern className, String text, String replacement) {
+    return className.matcher(text).replaceAll(Matcher.quoteReplacement(replacement));
+  }
+
+  private String digest(String key) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      return new BigInteger(1, digest.digest(key.getBytes("UTF-8"))).toString(16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Copies the costs of a method of one class to the same method of another
+   * class with the same code. The costs of the methods of the first class it
+   * calls are copied as well, and the lines of the cost sources are moved by
+   * as much as the lines of the methods they are in. The costs of methods of
+   * other classes stay shared.
+   */
+  private static class Relocation {
+
+    private final ClassInfo from;
+    private final ClassInfo to;
+    private final Pattern fromName;
+    private final Map<MethodCost, MethodCost> copies =
+        new IdentityHashMap<MethodCost, MethodCost>();
+
+    Relocation(ClassInfo from, ClassInfo to) {
+      this.from = from;
+      this.to = to;
+      fromName = classNamePattern(from.getName());
+    }
+
+    MethodCost copy(MethodCost template, MethodInfo method) {
+      return copy(template, method.getName(), method.getStartingLineNumber());
+    }
+
+    private MethodCost copy(MethodCost cost) {
+      if (!cost.getClassName().equals(from.getName())) {
+        return cost;
+      }
+      MethodCost copy = copies.get(cost);
+      if (copy != null) {
+        return copy;
+      }
+      String name = replaceClassName(fromName, cost.getMethodName(), to.getName());
+      int lineNumber = cost.getMethodLineNumber();
+      try {
+        MethodInfo method = to.getMethod(name);
+        if (method.getClassInfo() == to) {
+          lineNumber = method.getStartingLineNumber();
+        }
+      } catch (MethodNotFoundException e) {
+        // Keep the line of the template.
+      }
+      return copy(cost, name, lineNumber);
+    }
+
+    private MethodCost copy(MethodCost cost, String name, int lineNumber) {
+      MethodCost copy = new MethodCost(to.getName(), name, lineNumber, cost.isConstructor(),
+          cost.isStatic(), cost.isStaticInit());
+      copies.put(cost, copy);
+      int shift = lineNumber - cost.getMethodLineNumber();
+      List<ViolationCost> sources = new ArrayList<ViolationCost>();
+      for (ViolationCost source : cost.getViolationCosts()) {
+        sources.add(copy(source, shift));
+      }
+      copy.restore(cost.getDirectCost(), cost.getDependentCost(),
+          cost.getConstructorDependentCost(), sources);
+      copy.setTruncated(cost.isTruncated());
+      if (cost.isLinked()) {
+        copy.link();
+      }
+      return copy;
+    }
+
+    private ViolationCost copy(ViolationCost source, int shift) {
+      SourceLocation location = source.getLocation();
+      if (location.getFile() == null || !location.getFile().equals(from.getFileName())) {
+        return copyOf(source, location);
+      }
+      int lineNumber = location.getLineNumber() + shift;
+      if (source instanceof MethodInvocationCost && source.isImplicit()) {
+        MethodCost called = ((MethodInvocationCost) source).getMethodCost();
+        MethodCost copy = copy(called);
+        if (copy != called) {
+          lineNumber = copy.getMethodLineNumber();
+        }
+      }
+      return copyOf(source, new SourceLocation(to.getFileName(), lineNumber));
+    }
+
+    private ViolationCost copyOf(ViolationCost source, SourceLocation location) {
+      if (source instanceof MethodInvocationCost) {
+        MethodInvocationCost invocation = (MethodInvocationCost) source;
+        MethodCost called = copy(invocation.getMethodCost());
+        if (source instanceof ConstructorInvocationCost) {
+          return new ConstructorInvocationCost(location, called,
+              invocation.getCostSourceType(), source.getCost());
+        }
+        return new MethodInvocationCost(location, called, invocation.getCostSourceType(),
+            source.getCost());
+      } else if (source instanceof GlobalCost) {
+        return new GlobalCost(location, variable(((GlobalCost) source).getVariable()),
+            source.getCost());
+      } else if (source instanceof LoDViolation) {
+        LoDViolation violation = (LoDViolation) source;
+        return new LoDViolation(location, violation.getMethodName(), source.getCost(),
+            violation.getDistance());
+      }
+      return new CyclomaticCost(location, source.getCost());
+    }
+
+    private Variable variable(Variable variable) {
+      if (variable instanceof FieldInfo) {
+        try {
+          if (from.getField(variable.getName()) == variable) {
+            return to.getField(variable.getName());
+          }
+        } catch (FieldNotFoundException e) {
+          // Not a field of the template's class.
+        }
+      }
+      return variable;
+    }
+  }
+
+  /**
+   * Writes the normalized form of a method and of all the methods of its class
+   * which it reaches, numbering those methods in the order they are found.
+   */
+  private class KeyBuilder {
+
+    private final ClassInfo owner;
+    private final String kind;
+    private final StringBuilder out = new StringBuilder();
+    private final Map<FieldInfo, Integer> ownFields = new IdentityHashMap<FieldInfo, Integer>();
+    private final Map<MethodInfo, Integer> ownMethods = new HashMap<MethodInfo, Integer>();
+    private final List<MethodInfo> pending = new ArrayList<MethodInfo>();
+    private final Pattern ownerName;
+    private FieldStateTable states;
+
+    KeyBuilder(ClassInfo owner, String kind) {
+      this.owner = owner;
+      this.kind = kind;
+      ownerName = classNamePattern(owner.getName());
+      if (fieldStates != null) {
+        states = fieldStates.forClass(owner, !kind.equals("#static") && !kind.equals("#clinit"));
+      }
+      for (FieldInfo field : owner.getFields()) {
+        ownFields.put(field, ownFields.size());
+      }
+    }
+
+    /**
+     * The part of the key shared by all the methods of a kind: the fields of
+     * the class and the implicit methods with everything they reach.
+     */
+    String buildClass() {
+      out.append(kind).append(' ')
+          .append(whitelist != null && whitelist.isClassWhiteListed(owner.getName()));
+      out.append("\nfields");
+      for (FieldInfo field : owner.getFields()) {
+        out.append(' ').append(field.isPrivate()).append(field.isFinal())
+            .append(field.isGlobal()).append(type(field)).append(state(field));
+      }
+      out.append("\nimplicit");
+      if (!kind.equals("#clinit")) {
+        for (MethodInfo method : owner.getMethods()) {
+          if (method.isStaticConstructor()) {
+            out.append(' ').append(reference(method));
+          }
+        }
+      }
+      if (kind.equals("#instance")) {
+        out.append(" constructor ")
+            .append(reference(owner.getConstructorWithMostNonPrimitiveParameters()));
+        out.append(" setters");
+        for (MethodInfo setter : owner.getSetters()) {
+          out.append(' ').append(reference(setter));
+        }
+      }
+      appendPending();
+      return out.toString();
+    }
+
+    /**
+     * The part of the key of one method: its body and those of the methods it
+     * reaches. The implicit methods are in the class part, so a setter only
+     * records where it is among them, since it is not its own implicit cost.
+     */
+    String build(MethodInfo root) {
+      out.append("\nroot ").append(reference(root));
+      if (kind.equals("#instance") && root.isSetter()) {
+        int index = 0;
+        for (MethodInfo setter : owner.getSetters()) {
+          if (setter == root) {
+            out.append(" setter ").append(index);
+          }
+          index++;
+        }
+      }
+      appendPending();
+      return out.toString();
+    }
+
+    private void appendPending() {
+      for (int i = 0; i < pending.size(); i++) {
+        out.append("\nmethod ").append(i);
+        appendBody(pending.get(i));
+      }
+    }
+
+    private String reference(MethodInfo method) {
+      if (method == null) {
+        return "null";
+      }
+      if (method.getClassInfo() != owner) {
+        return method.getClassInfo().getName() + "." + method.getName();
+      }
+      Integer index = ownMethods.get(method);
+      if (index == null) {
+        index = ownMethods.size();
+        ownMethods.put(method, index);
+        pending.add(method);
+      }
+      return OWNER + index;
+    }
+
+    private void appendBody(MethodInfo method) {
+      Map<Variable, String> variables = new IdentityHashMap<Variable, String>();
+      if (method.getMethodThis() != null) {
+        variables.put(method.getMethodThis(), "this");
+      }
+      for (ParameterInfo parameter : method.getParameters()) {
+        variables.put(parameter, "p" + variables.size() + type(parameter));
+      }
+      out.append(' ').append(method.isStatic()).append(method.isConstructor())
+          .append(method.isStaticConstructor()).append(method.canOverride())
+          .append(method.isSetter()).append(method.getVisibility());
+      int start = method.getStartingLineNumber();
+      out.append(" lines");
+      for (int line : method.getLinesOfComplexity()) {
+        out.append(' ').append(line - start);
+      }
+      for (ParameterInfo parameter : method.getParameters()) {
+        out.append(' ').append(variables.get(parameter));
+      }
+      for (Operation operation : method.getOperations()) {
+        out.append("\n ").append(operation.getLineNumber() - start).append(' ');
+        if (operation instanceof LocalAssignment) {
+          LocalAssignment assignment = (LocalAssignment) operation;
+          out.append("local ").append(variable(variables, assignment.getVariable()))
+              .append(" <- ").append(variable(variables, assignment.getValue()));
+        } else if (operation instanceof FieldAssignment) {
+          FieldAssignment assignment = (FieldAssignment) operation;
+          out.append("field ").append(variable(variables, assignment.getFieldInstance()))
+              .append('.').append(variable(variables, assignment.getField()))
+              .append(" <- ").append(variable(variables, assignment.getValue()));
+        } else if (operation instanceof ArrayAssignment) {
+          ArrayAssignment assignment = (ArrayAssignment) operation;
+          Variable array = assignment.getArray();
+          out.append("array ").append(variable(variables, array));
+          if (array.getName().startsWith("$")) {
+            out.append(array.getName());
+          }
+          out.append('[').append(variable(variables, assignment.getIndex()))
+              .append("] <- ").append(variable(variables, assignment.getValue()));
+        } else if (operation instanceof ReturnOperation) {
+          out.append("return ")
+              .append(variable(variables, ((ReturnOperation) operation).getValue()));
+        } else if (operation instanceof MethodInvocation) {
+          appendInvocation(variables, (MethodInvocation) operation);
+        } else {
+          // Unknown operations never match another method.
+          out.append(operation.getClass().getName()).append('@')
+              .append(System.identityHashCode(operation));
+        }
+      }
+    }
+
+    private void appendInvocation(Map<Variable, String> variables, MethodInvocation invocation) {
+      out.append("invoke ").append(normalize(invocation.getOwner())).append(' ');
+      try {
+        MethodInfo toMethod = classRepository.getClass(invocation.getOwner())
+            .getMethod(invocation.getName());
+        out.append(reference(toMethod));
+      } catch (ClassNotFoundException e) {
+        out.append('?').append(invocation.getName());
+      } catch (MethodNotFoundException e) {
+        out.append('?').append(invocation.getName());
+      }
+      out.append(' ').append(variable(variables, invocation.getMethodThis())).append('(');
+      for (Variable parameter : invocation.getParameters()) {
+        out.append(variable(variables, parameter)).append(',');
+      }
+      out.append(") -> ").append(variable(variables, invocation.getReturnVariable()));
+    }
+
+    private String variable(Map<Variable, String> variables, Variable variable) {
+      if (variable == null) {
+        return "null";
+      }
+      String name = variables.get(variable);
+      if (name != null) {
+        return name;
+      }
+      if (variable instanceof FieldInfo) {
+        Integer index = ownFields.get(variable);
+        name = index == null ? variable.toString() + state((FieldInfo) variable)
+            : OWNER + ".f" + index;
+      } else if (variable instanceof LocalField) {
+        LocalField field = (LocalField) variable;
+        name = variable(variables, field.getInstance()) + "."
+            + variable(variables, field.getField());
+      } else {
+        String kind = variable instanceof Constant ? "c" : "v";
+        name = kind + variables.size() + (variable.isGlobal() ? "g" : "")
+            + (variable.isFinal() ? "f" : "") + type(variable);
+      }
+      variables.put(variable, name);
+      return name;
+    }
+
+    /** The state of a field in the whole program table, if there is one. */
+    private String state(FieldInfo field) {
+      if (states == null) {
+        return "";
+      }
+      return (states.isGlobal(field) ? "g" : "") + (states.isInjectable(field) ? "i" : "");
+    }
+
+    private String type(Variable variable) {
+      return "{" + normalize(String.valueOf(variable.getType())) + "}";
+    }
+
+    private String normalize(String name) {
+      return replaceClassName(ownerName, name, OWNER);
+    }
+  }
+
+}
@@ -52,6 +52,13 @@ public class MethodInvocationCost extends ViolationCost {
     return methodCost;
   }
 
+  /**
+   * @return the same invocation, of an equal {@code methodCost}.
+   */
+  public MethodInvocationCost withMethodCost(MethodCost methodCost) {
+    return new MethodInvocationCost(getLocation(), methodCost, costSourceType, cost);
+  }
+
   @Override
   public String getDescription() {
     return methodCost.getDescription();
@@ -27,21 +27,130 @@ import com.google.test.metric.TestabilityVisitor.Frame;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MetricComputer {
 
+  /** Classes with at least this many methods have them computed in parallel. */
+  static final int PARALLEL_METHOD_COUNT = 16;
+
   private final ClassRepository classRepository;
   private final PrintStream err;
   private final WhiteList whitelist;
   private final int recordingDepth;
+  private final MethodCostMemo memo;
+  private MethodCostInterner interner;
+  private AnalysisBudget budget;
+  private FieldStateTable fieldStates;
+  private int methodThreads;
+  private ExecutorService methodExecutor;
+
+  public MetricComputer(ClassRepository classRepository, PrintStream err,
+      WhiteList whitelist, int recordingDepth) {
+    this(classRepository, err, whitelist, recordingDepth, false);
+  }
 
+  /**
+   * @param memoize reuse the cost of methods which are identical to an already
+   *          computed method apart from the class name, see {@link MethodCostMemo}.
+   */
   @Inject
   public MetricComputer(ClassRepository classRepository, @Error PrintStream err,
-      WhiteList whitelist, @Named("printDepth") int recordingDepth) {
+      WhiteList whitelist, @Named("printDepth") int recordingDepth,
+      @Named("memoize") boolean memoize) {
     this.classRepository = classRepository;
     this.err = err;
     this.whitelist = whitelist;
     this.recordingDepth = recordingDepth;
+    this.memo = memoize ? new MethodCostMemo(classRepository, whitelist) : null;
+  }
+
+  /**
+   * Limits the analysis of each method, so that a few huge methods don't take
+   * up most of the time. Methods which run out of budget are reported as
+   * truncated.
+   */
+  @Inject(optional = true)
+  public void setBudget(AnalysisBudget budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Share equal costs of called methods between the analyzed methods, see
+   * {@link MethodCostInterner}. The shared costs are kept until the end of the
+   * run, so this only pays off with a print depth above 0, and when the model
+   * keeps the classes anyway.
+   */
+  @Inject(optional = true)
+  public void setShareCalledCosts(@Named("shareCosts") boolean shareCalledCosts) {
+    this.interner = shareCalledCosts && recordingDepth > 0 ? new MethodCostInterner() : null;
+  }
+
+  /**
+   * @return the shared called method costs, or {@code null} if they are not
+   *         shared.
+   */
+  public MethodCostInterner getInterner() {
+    return interner;
+  }
+
+  /**
+   * Computes the methods of large classes with this many threads, the calling
+   * thread being one of them, so that a single huge class doesn't keep the
+   * rest of the threads of a parallel analysis waiting.
+   */
+  @Inject(optional = true)
+  public void setMethodThreads(@Named("methodThreads") int methodThreads) {
+    shutdown();
+    this.methodThreads = methodThreads;
+  }
+
+  private synchronized ExecutorService getMethodExecutor() {
+    if (methodExecutor == null) {
+      methodExecutor = Executors.newFixedThreadPool(methodThreads - 1, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "methods");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return methodExecutor;
+  }
+
+  /**
+   * Stops the threads which compute the methods of large classes. They are
+   * started again if another large class is computed.
+   */
+  public synchronized void shutdown() {
+    if (methodExecutor != null) {
+      methodExecutor.shutdown();
+      methodExecutor = null;
+    }
+  }
+
+  /**
+   * Look up the state of fields in a table computed for the whole program,
+   * rather than only following the assignments made along the calls of each
+   * method.
+   */
+  public void setFieldStates(FieldStateTable fieldStates) {
+    this.fieldStates = fieldStates;
+    if (memo != null) {
+      memo.setFieldStates(fieldStates);
+    }
+  }
+
+  /**
+   * @return the memo of method costs, or {@code null} if memoization is off.
+   */
+  public MethodCostMemo getMemo() {
+    return memo;
   }
 
   public ClassCost compute(String name) {
@@ -57,13 +166,75 @@ public class MetricComputer {
    * @return classCost
    */
   public ClassCost compute(ClassInfo clazz) {
+    List<MethodInfo> methodInfos = new ArrayList<MethodInfo>(clazz.getMethods());
+    if (methodThreads > 1 && methodInfos.size() >= PARALLEL_METHOD_COUNT) {
+      return new ClassCost(clazz.getName(), computeInParallel(methodInfos));
+    }
     List<MethodCost> methods = new ArrayList<MethodCost>();
-    for (MethodInfo method : clazz.getMethods()) {
+    for (MethodInfo method : methodInfos) {
       methods.add(compute(method));
     }
     return new ClassCost(clazz.getName(), methods);
   }
 
+  /**
+   * The calling thread and up to {@code methodThreads - 1} helpers take the
+   * next method which is left until all are done. Helpers which have not
+   * started by then are cancelled, so a busy pool never holds up the caller;
+   * the caller only waits for the methods which helpers are still computing.
+   *
+   * @return the costs in the order of {@code methodInfos}.
+   */
+  private List<MethodCost> computeInParallel(final List<MethodInfo> methodInfos) {
+    final MethodCost[] costs = new MethodCost[methodInfos.size()];
+    final Throwable[] failures = new Throwable[methodInfos.size()];
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch computed = new CountDownLatch(costs.length);
+    Runnable worker = new Runnable() {
+      public void run() {
+        for (int i = next.getAndIncrement(); i < costs.length; i = next.getAndIncrement()) {
+          try {
+            costs[i] = compute(methodInfos.get(i));
+          } catch (Throwable e) {
+            failures[i] = e;
+          } finally {
+            computed.countDown();
+          }
+        }
+      }
+    };
+    List<Future<?>> helpers = new ArrayList<Future<?>>();
+    ExecutorService helperExecutor = getMethodExecutor();
+    for (int i = 1; i < methodThreads && i < costs.length; i++) {
+      helpers.add(helperExecutor.submit(worker));
+    }
+    worker.run();
+    for (Future<?> helper : helpers) {
+      helper.cancel(false);
+    }
+    try {
+      computed.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    // Fail on the same method as computing them one after another would.
+    for (Throwable failure : failures) {
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof java.lang.Error) {
+        throw (java.lang.Error) failure;
+      } else if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+    }
+    List<MethodCost> methods = new ArrayList<MethodCost>(costs.length);
+    for (MethodCost cost : costs) {
+      methods.add(cost);
+    }
+    return methods;
+  }
+
   /**
    * Computing the MethodCost for a MethodInfo involves tallying up:
    * <ul><li>The cost in any static initialization blocks of the class which holds the method.</li>
@@ -80,18 +251,50 @@ public class MetricComputer {
    * MethodCost is guaranteed to have already been linked (sealed for adding additional costs).
    */
   public MethodCost compute(MethodInfo method) {
-    TestabilityVisitor visitor = new TestabilityVisitor(classRepository, new VariableState(), err, whitelist);
+    if (memo == null) {
+      return computeCost(method);
+    }
+    String key = memo.keyOf(method);
+    MethodCost methodCost = memo.get(key, method);
+    if (methodCost == null) {
+      methodCost = computeCost(method);
+      if (!methodCost.isTruncated()) {
+        memo.put(key, methodCost);
+      }
+    }
+    return methodCost;
+  }
+
+  private MethodCost computeCost(MethodInfo method) {
+    TestabilityVisitor visitor = new TestabilityVisitor(classRepository,
+        new VariableState(fieldStatesFor(method)), err, whitelist);
     TestabilityVisitor.CostRecordingFrame frame = visitor.createFrame(method, recordingDepth);
+    if (budget != null) {
+      frame.setBudget(budget);
+    }
     addStaticInitializationCost(method, frame);
-    if (!method.isStatic() && !method.isConstructor()) {
+    if (hasImplicitCosts(method)) {
       addConstructorCost(method, frame);
       addSetterInjection(method, frame);
     }
     addFieldCost(method, frame);
-    return frame.applyMethodOperations();
+    MethodCost methodCost = frame.applyMethodOperations();
+    if (interner != null) {
+      interner.internCalledMethods(methodCost);
+    }
+    return methodCost;
   }
 
+  private FieldStateTable fieldStatesFor(MethodInfo method) {
+    if (fieldStates == null) {
+      return null;
+    }
+    return fieldStates.forClass(method.getClassInfo(), hasImplicitCosts(method));
+  }
 
+  static boolean hasImplicitCosts(MethodInfo method) {
+    return !method.isStatic() && !method.isConstructor();
+  }
 
   /** Goes through all methods and adds an implicit cost for those beginning with "set" (assuming
    * to test the {@code baseMethod}'s class, you need to be able to call the setters for initialization.  */
@@ -18,6 +18,7 @@ package com.google.test.metric;
 import com.google.classpath.ClassPath;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.name.Named;
 import com.google.test.metric.ConfigModule.Output;
 import com.google.test.metric.report.ClassPathTemplateLoader;
 import com.google.test.metric.report.FreemarkerReportGenerator;
@@ -29,15 +30,15 @@ import com.google.test.metric.report.ReportOptions;
 import com.google.test.metric.report.SourceLinker;
 import com.google.test.metric.report.SourceLoader;
 import com.google.test.metric.report.SourceReportGenerator;
+import com.google.test.metric.report.SweepReportGenerator;
 import com.google.test.metric.report.TextReportGenerator;
 import com.google.test.metric.report.XMLReportGenerator;
 import com.google.test.metric.report.about.AboutTestabilityReport;
 import com.google.test.metric.report.html.HtmlReportModel;
 import com.google.test.metric.report.html.SourceLinkerModel;
-import com.google.test.metric.report.issues.ClassIssues;
+import com.google.test.metric.report.issues.DeferredIssuesReporter;
 import com.google.test.metric.report.issues.HypotheticalCostModel;
 import com.google.test.metric.report.issues.IssuesReporter;
-import com.google.test.metric.report.issues.TriageIssuesQueue;
 
 import freemarker.ext.beans.BeansWrapper;
 import freemarker.ext.beans.ResourceBundleModel;
@@ -50,6 +51,7 @@ import org.apache.xml.serialize.XMLSerializer;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.Date;
+import java.util.List;
 import static java.util.ResourceBundle.getBundle;
 
 /**
@@ -65,6 +67,9 @@ public class ReportGeneratorProvider implements Provider<ReportGenerator> {
   private final PrintStream out;
   private final HypotheticalCostModel hypotheticalCostModel;
   private final ReportFormat reportFormat;
+  private boolean allClasses;
+  private List<ReportOptions> sweep;
+  private int renderThreads;
 
   @Inject
   public ReportGeneratorProvider(ClassPath classPath, ReportOptions options,
@@ -78,6 +83,32 @@ public class ReportGeneratorProvider implements Provider<ReportGenerator> {
     this.reportFormat = reportFormat;
   }
 
+  /**
+   * @param allClasses write every class to the XML report as it is added.
+   */
+  @Inject(optional = true)
+  public void setAllClasses(@Named("allClasses") boolean allClasses) {
+    this.allClasses = allClasses;
+  }
+
+  /**
+   * @param renderThreads render the class pages of the source report with this
+   *          many threads.
+   */
+  @Inject(optional = true)
+  public void setRenderThreads(@Named("renderThreads") int renderThreads) {
+    this.renderThreads = renderThreads;
+  }
+
+  /**
+   * @param sweep summarize the classes under each of these options, rather
+   *          than printing the report of the format.
+   */
+  @Inject(optional = true)
+  public void setSweep(@Named("sweep") List<ReportOptions> sweep) {
+    this.sweep = sweep;
+  }
+
   public enum ReportFormat {
     summary,
     detail,
@@ -125,8 +156,11 @@ public class ReportGeneratorProvider implements Provider<ReportGenerator> {
       case source:
         GradeCategories gradeCategories = new GradeCategories(options.getMaxExcellentCost(),
             options.getMaxAcceptableCost());
-        report = new SourceReportGenerator(gradeCategories, sourceLoader,
-            new File("te-report"), costModel, new Date(), options.getWorstOffenderCount(), cfg);
+        SourceReportGenerator sourceReport = new SourceReportGenerator(gradeCategories,
+            sourceLoader, new File("te-report"), costModel, new Date(),
+            options.getWorstOffenderCount(), cfg);
+        sourceReport.setRenderThreads(renderThreads);
+        report = sourceReport;
         break;
       case xml:
         XMLSerializer xmlSerializer = new XMLSerializer();
@@ -134,7 +168,7 @@ public class ReportGeneratorProvider implements Provider<ReportGenerator> {
         OutputFormat format = new OutputFormat();
         format.setIndenting(true);
         xmlSerializer.setOutputFormat(format);
-        report = new XMLReportGenerator(xmlSerializer, costModel, options);
+        report = new XMLReportGenerator(xmlSerializer, costModel, options, allClasses);
         break;
       case about:
         reportModel.setMessageBundle(bundleModel);
@@ -148,14 +182,15 @@ public class ReportGeneratorProvider implements Provider<ReportGenerator> {
   }
 
   public ReportGenerator get() {
+    if (sweep != null) {
+      return new SweepReportGenerator(out, sweep);
+    }
     CostModel costModel = new CostModel(options.getCyclomaticMultiplier(),
         options.getGlobalMultiplier(), options.getConstructorMultiplier());
-    TriageIssuesQueue<ClassIssues> mostImportantIssues =
-        new TriageIssuesQueue<ClassIssues>(options.getMaxExcellentCost(),
-            options.getWorstOffenderCount(), new ClassIssues.TotalCostComparator());
     SourceLoader sourceLoader = new SourceLoader(classPath);
 
-    IssuesReporter issuesReporter = new IssuesReporter(mostImportantIssues, hypotheticalCostModel);
+    IssuesReporter issuesReporter = new DeferredIssuesReporter(options.getMaxExcellentCost(),
+        options.getWorstOffenderCount(), hypotheticalCostModel);
     AnalysisModel analysisModel = new AnalysisModel(issuesReporter);
     ReportModel reportModel;
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+/**
+ * One of {@code count} parts of the classes to analyze, so that a large code
+ * base can be analyzed by several processes. A class belongs to a shard by the
+ * hash of its name alone, so every process agrees on the partition without
+ * talking to the others.
+ */
+public class Shard {
+
+  /** The one shard of an analysis which is not split up. */
+  public static final Shard ALL = new Shard(0, 1);
+
+  private final int index;
+  private final int count;
+
+  public Shard(int index, int count) {
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException("Shard " + index + "/" + count
+          + " is not between 0/" + count + " and " + (count - 1) + "/" + count);
+    }
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * @param shard such as {@code 0/4} for the first of four shards.
+   */
+  public static Shard parse(String shard) {
+    int slash = shard.indexOf('/');
+    if (slash < 0) {
+      throw new IllegalArgumentException("Shard '" + shard + "' is not of the form i/N");
+    }
+    try {
+      return new Shard(Integer.parseInt(shard.substring(0, slash).trim()),
+          Integer.parseInt(shard.substring(slash + 1).trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Shard '" + shard + "' is not of the form i/N");
+    }
+  }
+
+  public boolean contains(String className) {
+    // String.hashCode() is the same on every JVM.
+    return (className.hashCode() & Integer.MAX_VALUE) % count == index;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+
+}
@@ -5,6 +5,7 @@ package com.google.test.metric;
 import com.google.classpath.ClassPath;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.name.Named;
 import com.google.test.metric.report.ReportGenerator;
 
 
@@ -21,7 +22,21 @@ public class TestabilityModule extends AbstractModule {
     bind(ReportGenerator.class).toProvider(ReportGeneratorProvider.class);
   }
 
-  @Provides ClassRepository getClassRepo(ClassPath classPath) {
-    return new JavaClassRepository(classPath);
+  private ClassRepository wholeProgramRepository;
+
+  /**
+   * With -wholeProgram, one repository for the whole run, so that the
+   * {@link FieldStateTable} of the runner has the same {@link FieldInfo}s as
+   * the {@link MetricComputer} analyzes.
+   */
+  @Provides synchronized ClassRepository getClassRepo(ClassPath classPath,
+      @Named("wholeProgram") boolean wholeProgram) {
+    if (!wholeProgram) {
+      return new JavaClassRepository(classPath);
+    }
+    if (wholeProgramRepository == null) {
+      wholeProgramRepository = new JavaClassRepository(classPath);
+    }
+    return wholeProgramRepository;
   }
 }
@@ -20,6 +20,7 @@ import com.google.test.metric.method.Constant;
 import com.google.test.metric.method.op.turing.Operation;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -171,6 +172,9 @@ public class TestabilityVisitor {
       Constant returnVariable = new Constant("rootReturn", JavaType.OBJECT);
       applyMethodOperations(-1, method, method.getMethodThis(), method
           .getParameters(), returnVariable);
+      if (isTruncated()) {
+        methodCost.setTruncated(true);
+      }
       return methodCost;
     }
 
@@ -218,6 +222,7 @@ public class TestabilityVisitor {
     protected final PrintStream err;
     protected final ClassRepository classRepository;
     protected final Set<MethodInfo> alreadyVisited;
+    private final CallStack callStack;
 
     public Frame(PrintStream err, ClassRepository classRepository,
         ParentFrame parentFrame, WhiteList whitelist,
@@ -230,6 +235,8 @@ public class TestabilityVisitor {
       this.whitelist = whitelist;
       this.alreadyVisited = alreadyVisited;
       this.method = method;
+      this.callStack = parentFrame instanceof Frame ? ((Frame) parentFrame).callStack
+          : new CallStack();
       alreadyVisited.add(method);
     }
 
@@ -331,9 +338,27 @@ public class TestabilityVisitor {
       return variableState;
     }
 
+    /**
+     * Limits the work done by this frame and the frames of the calls it makes.
+     */
+    public void setBudget(AnalysisBudget budget) {
+      callStack.setBudget(budget);
+    }
+
+    public boolean isTruncated() {
+      return callStack.isTruncated();
+    }
+
     protected void applyMethodOperations(int lineNumber, MethodInfo toMethod,
         Variable methodThis, List<? extends Variable> parameters,
         Variable returnVariable) {
+      assignParameters(lineNumber, toMethod, parameters);
+      callStack.evaluate(new Call(null, null, lineNumber, this, toMethod, methodThis,
+          returnVariable));
+    }
+
+    private void assignParameters(int lineNumber, MethodInfo toMethod,
+        List<? extends Variable> parameters) {
       if (parameters.size() != toMethod.getParameters().size()) {
         throw new IllegalStateException(
             "Argument count does not match method parameter count.");
@@ -344,15 +369,10 @@ public class TestabilityVisitor {
             parentFrame, var);
       }
       returnValue = null;
-      for (Operation operation : toMethod.getOperations()) {
-        operation.visit(this);
-      }
-      incrementLoD(lineNumber, toMethod, methodThis, returnVariable, parentFrame);
     }
 
-    private void recordMethodCall(int lineNumber, MethodInfo toMethod,
-        Variable methodThis, List<? extends Variable> parameters,
-        Variable returnVariable) {
+    private void enterMethodCall(int lineNumber, MethodInfo toMethod,
+        Variable methodThis, List<? extends Variable> parameters) {
       for (Integer lineNumberWithComplexity : toMethod.getLinesOfComplexity()) {
         addCyclomaticCost(lineNumberWithComplexity);
       }
@@ -360,9 +380,7 @@ public class TestabilityVisitor {
         assignParameter(lineNumber, toMethod.getMethodThis(), parentFrame,
             methodThis);
       }
-      applyMethodOperations(lineNumber, toMethod, methodThis, parameters,
-          returnVariable);
-      assignReturnValue(lineNumber, returnVariable);
+      assignParameters(lineNumber, toMethod, parameters);
     }
 
     public void recordMethodCall(String clazzName, int lineNumber,
@@ -396,14 +414,20 @@ public class TestabilityVisitor {
       }
     }
 
+    /**
+     * Adds the cost of the call to this frame once the operations of
+     * {@code toMethod} have been applied in a child frame. When this is called
+     * while operations are applied, the call is only pushed onto the
+     * {@link CallStack}, and the operation which made it is the last one of
+     * this frame to be applied until it is done.
+     */
     protected void recordNonOveridableMethodCall(Reason reason, int lineNumber,
         MethodInfo toMethod, Variable methodThis,
         List<? extends Variable> parameters, Variable returnVariable) {
       Frame childFrame = createChildFrame(toMethod);
-      childFrame.recordMethodCall(lineNumber, toMethod, methodThis, parameters,
-          returnVariable);
-      addMethodInvocationCost(lineNumber, toMethod, childFrame.getTotalCost()
-          .copyNoLOD(), reason);
+      childFrame.enterMethodCall(lineNumber, toMethod, methodThis, parameters);
+      callStack.evaluate(new Call(this, reason, lineNumber, childFrame, toMethod, methodThis,
+          returnVariable));
     }
 
     protected Frame createChildFrame(MethodInfo toMethod) {
@@ -445,6 +469,119 @@ public class TestabilityVisitor {
 
   }
 
+  /**
+   * A method call whose operations are being applied to a frame.
+   */
+  private static class Call {
+    private final Frame caller;
+    private final Reason reason;
+    private final int lineNumber;
+    private final Frame frame;
+    private final MethodInfo toMethod;
+    private final Variable methodThis;
+    private final Variable returnVariable;
+    private final List<Operation> operations;
+    private int nextOperation;
+
+    /**
+     * @param caller the frame to add the cost of the call to, or {@code null}
+     *          for the root method of the frames.
+     */
+    Call(Frame caller, Reason reason, int lineNumber, Frame frame, MethodInfo toMethod,
+        Variable methodThis, Variable returnVariable) {
+      this.caller = caller;
+      this.reason = reason;
+      this.lineNumber = lineNumber;
+      this.frame = frame;
+      this.toMethod = toMethod;
+      this.methodThis = methodThis;
+      this.returnVariable = returnVariable;
+      this.operations = toMethod.getOperations();
+    }
+
+    boolean hasNextOperation() {
+      return nextOperation < operations.size();
+    }
+
+    void applyNextOperation() {
+      operations.get(nextOperation++).visit(frame);
+    }
+
+    void finish() {
+      frame.incrementLoD(lineNumber, toMethod, methodThis, returnVariable, frame.parentFrame);
+      if (caller != null) {
+        frame.assignReturnValue(lineNumber, returnVariable);
+        caller.addMethodInvocationCost(lineNumber, toMethod, frame.getTotalCost().copyNoLOD(),
+            reason);
+      }
+    }
+  }
+
+  /**
+   * The calls in progress of a tree of frames, innermost last. Operations are
+   * applied from this stack rather than by recursing once per call, so that a
+   * long chain of calls takes up heap rather than thread stack.
+   */
+  static class CallStack {
+    private final List<Call> calls = new ArrayList<Call>();
+    private boolean running;
+    private AnalysisBudget budget;
+    private long startNanos;
+    private int frames;
+    private long operations;
+    private boolean truncated;
+
+    /**
+     * Stops applying operations once the {@code budget} is used up. The calls
+     * in progress are still finished, so that the cost found so far adds up.
+     */
+    void setBudget(AnalysisBudget budget) {
+      this.budget = budget;
+      startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true if the budget was used up before all operations were
+     *         applied.
+     */
+    boolean isTruncated() {
+      return truncated;
+    }
+
+    /**
+     * Applies the operations of the call, and of all the calls it makes. If a
+     * call is evaluated already, this only pushes the new call, which is then
+     * finished before the caller goes on with its next operation.
+     */
+    void evaluate(Call call) {
+      frames++;
+      calls.add(call);
+      if (running) {
+        return;
+      }
+      running = true;
+      try {
+        while (!calls.isEmpty()) {
+          if (!truncated && budget != null
+              && budget.isExceeded(frames, operations, startNanos)) {
+            truncated = true;
+          }
+          Call top = calls.get(calls.size() - 1);
+          if (!truncated && top.hasNextOperation()) {
+            operations++;
+            top.applyNextOperation();
+          } else {
+            calls.remove(calls.size() - 1);
+            top.finish();
+          }
+        }
+      } finally {
+        calls.clear();
+        running = false;
+      }
+    }
+  }
+
   public static class ParentFrame {
     protected final VariableState globalVariableState;
     protected final LocalVariableState variableState;
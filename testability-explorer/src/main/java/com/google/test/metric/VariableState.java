@@ -23,6 +23,20 @@ import java.util.Set;
 public class VariableState {
   private final Set<Variable> injectables = new HashSet<Variable>();
   private final Set<Variable> globals = new HashSet<Variable>();
+  private final FieldStateTable fieldStates;
+
+  public VariableState() {
+    this(null);
+  }
+
+  /**
+   * @param fieldStates the state of fields as computed for the whole program,
+   *          for the class under test, or {@code null}. If given, it decides
+   *          the state of all fields, and the state set on them is ignored.
+   */
+  public VariableState(FieldStateTable fieldStates) {
+    this.fieldStates = fieldStates;
+  }
 
   boolean isGlobal(Variable var) {
     if (var == null) {
@@ -36,9 +50,17 @@ public class VariableState {
     }
     if (var instanceof LocalField) {
       LocalField field = (LocalField) var;
-      return globals.contains(field.getInstance()) || globals.contains(field.getField());
+      return isFieldGlobal(field.getInstance()) || isFieldGlobal(field.getField());
     }
-    return false;
+    return fieldStates != null && var instanceof FieldInfo
+        && fieldStates.isGlobal((FieldInfo) var);
+  }
+
+  private boolean isFieldGlobal(Variable var) {
+    if (fieldStates != null && var instanceof FieldInfo) {
+      return fieldStates.isGlobal((FieldInfo) var);
+    }
+    return globals.contains(var);
   }
 
   boolean isInjectable(Variable var) {
@@ -49,19 +71,26 @@ public class VariableState {
       return true;
     } else {
       if (var instanceof LocalField) {
-        return injectables.contains(((LocalField) var).getField());
+        FieldInfo field = ((LocalField) var).getField();
+        return fieldStates != null ? fieldStates.isInjectable(field)
+            : injectables.contains(field);
       } else {
-        return false;
+        return fieldStates != null && var instanceof FieldInfo
+            && fieldStates.isInjectable((FieldInfo) var);
       }
     }
   }
 
   void setGlobal(Variable var) {
-    globals.add(var);
+    if (fieldStates == null || !(var instanceof FieldInfo)) {
+      globals.add(var);
+    }
   }
 
   void setInjectable(Variable var) {
-    injectables.add(var);
+    if (fieldStates == null || !(var instanceof FieldInfo)) {
+      injectables.add(var);
+    }
   }
 
   @Override
@@ -19,6 +19,7 @@ package com.google.test.metric;
 public class WeightedAverage {
 
   public static final double WEIGHT = 0.3;
+  private static final double ROUNDING_ERROR = 1e-12;
   private final double weight;
   private double overallSum = 0;
   private double overallSqr = 0;
@@ -36,10 +37,36 @@ public class WeightedAverage {
     overallSum += Math.pow(value, weight);
   }
 
+  /**
+   * Adds all values of {@code other}, as if they had been added to this one.
+   */
+  public void add(WeightedAverage other) {
+    if (other.weight != weight) {
+      throw new IllegalArgumentException("Can not add an average of weight " + other.weight
+          + " to one of weight " + weight);
+    }
+    overallSqr += other.overallSqr;
+    overallSum += other.overallSum;
+  }
+
   public double getAverage() {
     return overallSqr / overallSum;
   }
 
+  /**
+   * @return the average if {@code value}, which has been added, had been
+   *         {@code replacement} instead, without adding all values again.
+   */
+  public double getAverageReplacing(long value, long replacement) {
+    double sqr = overallSqr - Math.pow(value, weight + 1) + Math.pow(replacement, weight + 1);
+    double sum = overallSum - Math.pow(value, weight) + Math.pow(replacement, weight);
+    if (sum <= overallSum * ROUNDING_ERROR) {
+      // All values left are zero, which averages to 0 / 0 like in getAverage().
+      return Double.NaN;
+    }
+    return sqr / sum;
+  }
+
   @Override
   public String toString() {
     return String.format("%.2f / %.2f = %.2f", overallSqr, overallSum, getAverage());
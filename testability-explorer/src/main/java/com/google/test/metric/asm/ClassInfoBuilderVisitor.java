@@ -23,16 +23,24 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import com.google.test.metric.ClassInfo;
+import com.google.test.metric.Interner;
 import com.google.test.metric.JavaClassRepository;
 
 public class ClassInfoBuilderVisitor extends NoopClassVisitor {
 
   private final JavaClassRepository repository;
+  private final Interner interner;
+  private final JavaNamer namer;
   private ClassInfo classInfo;
-  private JavaNamer namer = new JavaNamer();
 
   public ClassInfoBuilderVisitor(JavaClassRepository repository) {
+    this(repository, new Interner());
+  }
+
+  public ClassInfoBuilderVisitor(JavaClassRepository repository, Interner interner) {
     this.repository = repository;
+    this.interner = interner;
+    this.namer = new JavaNamer(interner);
   }
 
   @Override
@@ -58,7 +66,7 @@ public class ClassInfoBuilderVisitor extends NoopClassVisitor {
     if (internalClassDelim > -1) {
       className = className.substring(0, internalClassDelim);
     }
-    return className + ".java";
+    return interner.name(className + ".java");
   }
 
   @Override
@@ -66,7 +74,7 @@ public class ClassInfoBuilderVisitor extends NoopClassVisitor {
       String signature, String[] exceptions) {
     boolean isStatic = (access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC;
     boolean isFinal = (access & Opcodes.ACC_FINAL) == Opcodes.ACC_FINAL;
-    return new MethodVisitorBuilder(repository, classInfo, name, desc,
+    return new MethodVisitorBuilder(repository, interner, classInfo, name, desc,
         signature, exceptions, isStatic, isFinal, JavaVisibility
             .valueFromJavaBytecode(access));
   }
@@ -74,7 +82,7 @@ public class ClassInfoBuilderVisitor extends NoopClassVisitor {
   @Override
   public FieldVisitor visitField(int access, String name, String desc,
       String signature, Object value) {
-    return new FieldVisitorBuilder(classInfo, access, name, desc, signature,
+    return new FieldVisitorBuilder(classInfo, interner, access, name, desc, signature,
         value);
   }
 
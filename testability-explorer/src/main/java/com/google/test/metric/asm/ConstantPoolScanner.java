@@ -0,0 +1,185 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.asm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the name of a class and the classes it refers to from the constant
+ * pool of its class file, without parsing fields, methods or byte code. Every
+ * class whose fields or methods are used shows up in the constant pool, which
+ * makes this a cheap way to find the dependencies of a class before it is
+ * analyzed. The number of methods and the length of their byte code are read
+ * as well, as a hint of how long the analysis will take.
+ * <p>
+ * Class names are returned in the form the runner uses, with {@code '/'} and
+ * {@code '$'} replaced by {@code '.'}.
+ */
+public class ConstantPoolScanner {
+
+  private static final int CLASS = 7;
+
+  private final String className;
+  private final Set<String> referencedClasses = new TreeSet<String>();
+  private int methodCount;
+  private int codeLength;
+
+  public ConstantPoolScanner(InputStream classFile) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(classFile));
+    if (in.readInt() != 0xCAFEBABE) {
+      throw new IOException("Not a class file");
+    }
+    in.readUnsignedShort(); // minor version
+    in.readUnsignedShort(); // major version
+    int count = in.readUnsignedShort();
+    String[] utf8 = new String[count];
+    int[] classNameIndex = new int[count];
+    int codeIndex = 0;
+    for (int i = 1; i < count; i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8[i] = in.readUTF();
+          if (utf8[i].equals("Code")) {
+            codeIndex = i;
+          }
+          break;
+        case CLASS:
+          classNameIndex[i] = in.readUnsignedShort();
+          break;
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          in.readUnsignedShort();
+          break;
+        case 15: // MethodHandle
+          in.readUnsignedByte();
+          in.readUnsignedShort();
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          in.readInt();
+          break;
+        case 5: // Long
+        case 6: // Double
+          in.readLong();
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag + " at " + i);
+      }
+    }
+    in.readUnsignedShort(); // access flags
+    className = toClassName(utf8[classNameIndex[in.readUnsignedShort()]]);
+    for (int i = 1; i < count; i++) {
+      if (classNameIndex[i] != 0) {
+        String name = toClassName(utf8[classNameIndex[i]]);
+        if (name != null && !name.equals(className)) {
+          referencedClasses.add(name);
+        }
+      }
+    }
+    in.readUnsignedShort(); // super class
+    skip(in, 2 * in.readUnsignedShort()); // interfaces
+    int fieldCount = in.readUnsignedShort();
+    for (int i = 0; i < fieldCount; i++) {
+      skip(in, 6); // access flags, name and descriptor
+      skipAttributes(in);
+    }
+    methodCount = in.readUnsignedShort();
+    for (int i = 0; i < methodCount; i++) {
+      skip(in, 6); // access flags, name and descriptor
+      int attributeCount = in.readUnsignedShort();
+      for (int j = 0; j < attributeCount; j++) {
+        int nameIndex = in.readUnsignedShort();
+        int attributeLength = in.readInt();
+        if (nameIndex == codeIndex) {
+          skip(in, 4); // max stack and max locals
+          codeLength += in.readInt();
+          skip(in, attributeLength - 8);
+        } else {
+          skip(in, attributeLength);
+        }
+      }
+    }
+  }
+
+  private void skipAttributes(DataInputStream in) throws IOException {
+    int attributeCount = in.readUnsignedShort();
+    for (int i = 0; i < attributeCount; i++) {
+      in.readUnsignedShort(); // name
+      skip(in, in.readInt());
+    }
+  }
+
+  private void skip(DataInputStream in, int bytes) throws IOException {
+    for (int left = bytes; left > 0;) {
+      int skipped = in.skipBytes(left);
+      if (skipped <= 0) {
+        in.readByte(); // throws at the end of the class file
+        skipped = 1;
+      }
+      left -= skipped;
+    }
+  }
+
+  /**
+   * @return the class name, or {@code null} for arrays of primitives.
+   */
+  private String toClassName(String internalName) {
+    String name = internalName;
+    if (name.startsWith("[")) {
+      name = name.substring(name.lastIndexOf('[') + 1);
+      if (!name.startsWith("L")) {
+        return null;
+      }
+      name = name.substring(1, name.length() - 1);
+    }
+    return name.replace('/', '.').replace('$', '.');
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public Set<String> getReferencedClasses() {
+    return referencedClasses;
+  }
+
+  public int getMethodCount() {
+    return methodCount;
+  }
+
+  /**
+   * @return the number of bytes of byte code in all of the methods.
+   */
+  public int getCodeLength() {
+    return codeLength;
+  }
+
+}
@@ -19,19 +19,19 @@ import org.objectweb.asm.Opcodes;
 
 import com.google.test.metric.ClassInfo;
 import com.google.test.metric.FieldInfo;
-import com.google.test.metric.JavaType;
+import com.google.test.metric.Interner;
 import com.google.test.metric.Type;
 import com.google.test.metric.Visibility;
 
 public class FieldVisitorBuilder extends NoopFieldVisitor {
 
-  public FieldVisitorBuilder(ClassInfo classInfo, int access, String name,
-      String desc, String signature, Object value) {
+  public FieldVisitorBuilder(ClassInfo classInfo, Interner interner, int access,
+      String name, String desc, String signature, Object value) {
     boolean isStatic = (access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC;
     boolean isPrivate = JavaVisibility.valueFromJavaBytecode(access) == Visibility.PRIVATE;
     boolean isFinal = (access & Opcodes.ACC_FINAL) == Opcodes.ACC_FINAL;
-    Type type = JavaType.fromDesc(desc);
-    classInfo.addField(new FieldInfo(classInfo, name, type, isFinal,
+    Type type = interner.fromDesc(desc);
+    classInfo.addField(new FieldInfo(classInfo, interner.name(name), type, isFinal,
         isStatic, isPrivate));
   }
 
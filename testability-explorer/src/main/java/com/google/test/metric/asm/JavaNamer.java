@@ -18,10 +18,21 @@ package com.google.test.metric.asm;
 import static com.google.test.metric.JavaType.fromDescParameters;
 import static com.google.test.metric.JavaType.fromDescReturn;
 
+import com.google.test.metric.Interner;
 import com.google.test.metric.Type;
 
 public class JavaNamer {
 
+  private final Interner interner;
+
+  public JavaNamer() {
+    this(new Interner());
+  }
+
+  public JavaNamer(Interner interner) {
+    this.interner = interner;
+  }
+
   public String nameMethod(String className, String methodName,
       String methodDesc) {
     StringBuilder fullName = new StringBuilder();
@@ -44,8 +55,7 @@ public class JavaNamer {
       sep = ", ";
     }
     fullName.append(")");
-    String javaName = fullName.toString();
-    return javaName;
+    return interner.name(fullName.toString());
   }
 
   private String toClass(Type type) {
@@ -53,7 +63,7 @@ public class JavaNamer {
   }
 
   public String nameClass(String name) {
-    return name.replace('/', '.').replace('$', '.');
+    return interner.name(name.replace('/', '.').replace('$', '.'));
   }
 
 }
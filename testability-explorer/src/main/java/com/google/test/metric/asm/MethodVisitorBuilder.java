@@ -32,6 +32,7 @@ import com.google.test.metric.ClassInfo;
 import com.google.test.metric.ClassRepository;
 import com.google.test.metric.FieldInfo;
 import com.google.test.metric.FieldNotFoundException;
+import com.google.test.metric.Interner;
 import com.google.test.metric.JavaType;
 import com.google.test.metric.LocalVariableInfo;
 import com.google.test.metric.MethodInfo;
@@ -80,12 +81,23 @@ public class MethodVisitorBuilder implements MethodVisitor {
   private final List<ParameterInfo> parameters = new ArrayList<ParameterInfo>();
   private final List<LocalVariableInfo> localVariables = new ArrayList<LocalVariableInfo>();
   private final boolean isFinal;
-  private final JavaNamer namer = new JavaNamer();
+  private final Interner interner;
+  private final JavaNamer namer;
 
   public MethodVisitorBuilder(ClassRepository repository, ClassInfo classInfo,
       String name, String desc, String signature, String[] exceptions,
       boolean isStatic, boolean isFinal, Visibility visibility) {
+    this(repository, new Interner(), classInfo, name, desc, signature,
+        exceptions, isStatic, isFinal, visibility);
+  }
+
+  public MethodVisitorBuilder(ClassRepository repository, Interner interner,
+      ClassInfo classInfo, String name, String desc, String signature,
+      String[] exceptions, boolean isStatic, boolean isFinal,
+      Visibility visibility) {
     this.repository = repository;
+    this.interner = interner;
+    this.namer = new JavaNamer(interner);
     this.classInfo = classInfo;
     this.name = name;
     this.desc = desc;
@@ -93,12 +105,12 @@ public class MethodVisitorBuilder implements MethodVisitor {
     this.visibility = visibility;
     int slot = 0;
     if (!isStatic) {
-      Type thisType = JavaType.fromJava(classInfo.getName());
+      Type thisType = interner.fromJava(classInfo.getName());
       methodThis = new LocalVariableInfo("this", thisType);
       slots.put(slot++, methodThis);
       localVariables.add((LocalVariableInfo) methodThis);
     }
-    for (Type type : parse(desc).getParameters()) {
+    for (Type type : parse(desc, interner).getParameters()) {
       ParameterInfo parameterInfo = new ParameterInfo("param_" + slot, type);
       parameters.add(parameterInfo);
       slots.put(slot++, parameterInfo);
@@ -242,7 +254,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
 
   public void visitLocalVariable(String name, String desc, String signature,
       Label start, Label end, int slotNum) {
-    Type type = JavaType.fromDesc(desc);
+    Type type = interner.fromDesc(desc);
     Variable variable = slots.get(slotNum);
     if (variable == null) {
       LocalVariableInfo localVar = new LocalVariableInfo(name, type);
@@ -288,7 +300,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
       throw new IllegalStateException(
           "WARNING! I don't expect primitive types:" + desc);
     }
-    final Type type = desc.contains(";") ? JavaType.fromDesc(desc) : JavaType
+    final Type type = desc.contains(";") ? interner.fromDesc(desc) : interner
         .fromJava(desc);
     recorder.add(new Runnable() {
       public void run() {
@@ -409,8 +421,8 @@ public class MethodVisitorBuilder implements MethodVisitor {
   public void visitLdcInsn(final Object cst) {
     recorder.add(new Runnable() {
       public void run() {
-        block.addOp(new Load(lineNumber, new Constant(cst, JavaType.fromClass(cst
-            .getClass()))));
+        block.addOp(new Load(lineNumber, interner.constant(cst, interner
+            .fromClass(cst.getClass()))));
       }
     });
   }
@@ -420,7 +432,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
       case Opcodes.ACONST_NULL :
         recorder.add(new Runnable() {
           public void run() {
-            block.addOp(new Load(lineNumber, new Constant(null, JavaType.OBJECT)));
+            block.addOp(new Load(lineNumber, interner.constant(null, JavaType.OBJECT)));
           }
         });
         break;
@@ -792,7 +804,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
   private void loadConstant(final int constant, final Type type) {
     recorder.add(new Runnable() {
       public void run() {
-        block.addOp(new Load(lineNumber, new Constant(constant, type)));
+        block.addOp(new Load(lineNumber, interner.constant(constant, type)));
       }
     });
   }
@@ -818,7 +830,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
 
   public void visitMethodInsn(final int opcode, final String clazz,
       final String name, final String desc) {
-    SignatureParser signature = parse(desc);
+    SignatureParser signature = parse(desc, interner);
     final List<Type> params = signature.getParameters();
     final Type returnType = signature.getReturnType();
     recorder.add(new Runnable() {
@@ -911,7 +923,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
   public void visitMultiANewArrayInsn(final String clazz, final int dims) {
     recorder.add(new Runnable() {
       public void run() {
-        block.addOp(new MultiANewArrayIns(lineNumber, JavaType.fromDesc(clazz),
+        block.addOp(new MultiANewArrayIns(lineNumber, interner.fromDesc(clazz),
             dims));
       }
     });
@@ -950,7 +962,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
         field = ownerClass.getField(fieldName);
       } catch (FieldNotFoundException e) {
         field =
-            new FieldInfo(ownerClass, "FAKE:" + fieldName, JavaType
+            new FieldInfo(ownerClass, "FAKE:" + fieldName, interner
                 .fromDesc(fieldDesc), false, isStatic, false);
       }
       block.addOp(new com.google.test.metric.method.op.stack.PutField(
@@ -980,7 +992,7 @@ public class MethodVisitorBuilder implements MethodVisitor {
       try {
         field = ownerClass.getField(fieldName);
       } catch (FieldNotFoundException e) {
-        field = new FieldInfo(ownerClass, "FAKE:" + fieldName, JavaType
+        field = new FieldInfo(ownerClass, "FAKE:" + fieldName, interner
                 .fromDesc(fieldDesc), false, isStatic, false);
       }
       block.addOp(new GetField(lineNumber, field));
@@ -21,7 +21,7 @@ import java.util.List;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
-import com.google.test.metric.JavaType;
+import com.google.test.metric.Interner;
 import com.google.test.metric.Type;
 
 public class SignatureParser extends NoopSignatureVisitor {
@@ -31,15 +31,17 @@ public class SignatureParser extends NoopSignatureVisitor {
   }
 
   public static class TypeVisitor extends NoopSignatureVisitor {
+    private final Interner interner;
     private final Setter setter;
 
-    public TypeVisitor(Setter setter) {
+    public TypeVisitor(Interner interner, Setter setter) {
+      this.interner = interner;
       this.setter = setter;
     }
 
     @Override
     public SignatureVisitor visitArrayType() {
-      return new TypeVisitor(new Setter() {
+      return new TypeVisitor(interner, new Setter() {
         public void set(Type type) {
           setter.set(type.toArray());
         }
@@ -48,22 +50,27 @@ public class SignatureParser extends NoopSignatureVisitor {
 
     @Override
     public void visitBaseType(char descriptor) {
-      setter.set(JavaType.fromDesc("" + descriptor));
+      setter.set(interner.fromDesc(String.valueOf(descriptor)));
     }
 
     @Override
     public void visitClassType(String name) {
-      setter.set(JavaType.fromJava(name));
+      setter.set(interner.fromJava(name));
     }
 
   }
 
+  private final Interner interner;
   private final List<Type> parameters = new ArrayList<Type>();
   private Type returnType;
 
+  public SignatureParser(Interner interner) {
+    this.interner = interner;
+  }
+
   @Override
   public SignatureVisitor visitArrayType() {
-    return new TypeVisitor(new Setter() {
+    return new TypeVisitor(interner, new Setter() {
       public void set(Type type) {
         parameters.add(type.toArray());
       }
@@ -72,12 +79,12 @@ public class SignatureParser extends NoopSignatureVisitor {
 
   @Override
   public void visitBaseType(char descriptor) {
-    parameters.add(JavaType.fromDesc("" + descriptor));
+    parameters.add(interner.fromDesc(String.valueOf(descriptor)));
   }
 
   @Override
   public void visitClassType(String name) {
-    parameters.add(JavaType.fromJava(name));
+    parameters.add(interner.fromJava(name));
   }
 
   @Override
@@ -87,7 +94,7 @@ public class SignatureParser extends NoopSignatureVisitor {
 
   @Override
   public SignatureVisitor visitReturnType() {
-    return new TypeVisitor(new Setter() {
+    return new TypeVisitor(interner, new Setter() {
       public void set(Type type) {
         returnType = type;
       }
@@ -103,7 +110,11 @@ public class SignatureParser extends NoopSignatureVisitor {
   }
 
   public static SignatureParser parse(String signature) {
-    SignatureParser parser = new SignatureParser();
+    return parse(signature, new Interner());
+  }
+
+  public static SignatureParser parse(String signature, Interner interner) {
+    SignatureParser parser = new SignatureParser(interner);
     new SignatureReader(signature).accept(parser);
     return parser;
   }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.collection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the {@code maxSize} greatest elements offered to it, by a comparator.
+ * Threads offer elements to one of several stripes, each of which keeps its
+ * own greatest elements in a heap behind its own lock, so that many threads
+ * can offer without waiting on each other. The greatest elements of all
+ * stripes are among them, so the stripes are only combined when the elements
+ * are asked for.
+ * <p>
+ * Of elements which are equal by the comparator, the one offered last ranks
+ * highest.
+ *
+ * @param <T> the elements to keep.
+ */
+public class TopK<T> {
+
+  /** An element, and when it was offered, which ranks the later of equal elements higher. */
+  private static class Entry<T> {
+    private final T element;
+    private final long sequence;
+
+    Entry(T element, long sequence) {
+      this.element = element;
+      this.sequence = sequence;
+    }
+  }
+
+  private final int maxSize;
+  private final Comparator<Entry<T>> comparator;
+  private final List<PriorityQueue<Entry<T>>> stripes;
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Creates one stripe per processor.
+   */
+  public TopK(int maxSize, Comparator<? super T> comparator) {
+    this(maxSize, comparator, Runtime.getRuntime().availableProcessors());
+  }
+
+  public TopK(int maxSize, final Comparator<? super T> comparator, int stripeCount) {
+    if (maxSize < 0 || stripeCount < 1) {
+      throw new IllegalArgumentException("Can not keep " + maxSize + " elements in "
+          + stripeCount + " stripes");
+    }
+    this.maxSize = maxSize;
+    this.comparator = new Comparator<Entry<T>>() {
+      public int compare(Entry<T> a, Entry<T> b) {
+        int diff = comparator.compare(a.element, b.element);
+        if (diff != 0) {
+          return diff;
+        }
+        return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+      }
+    };
+    stripes = new ArrayList<PriorityQueue<Entry<T>>>(stripeCount);
+    for (int i = 0; i < stripeCount; i++) {
+      // The heap keeps the least element on top, which is the next to go.
+      stripes.add(new PriorityQueue<Entry<T>>(Math.max(1, maxSize), this.comparator));
+    }
+  }
+
+  /**
+   * @return {@code false} if the element is less than all {@code maxSize}
+   *         elements kept by the stripe of this thread, and was dropped.
+   */
+  public boolean offer(T element) {
+    Entry<T> entry = new Entry<T>(element, sequence.getAndIncrement());
+    PriorityQueue<Entry<T>> stripe = stripes.get(
+        (int) (Thread.currentThread().getId() % stripes.size()));
+    synchronized (stripe) {
+      if (stripe.size() == maxSize) {
+        if (maxSize == 0 || comparator.compare(entry, stripe.peek()) < 0) {
+          return false;
+        }
+        stripe.poll();
+      }
+      return stripe.offer(entry);
+    }
+  }
+
+  /**
+   * Offers all elements kept by {@code other}, so that this keeps the greatest
+   * elements offered to either.
+   */
+  public void merge(TopK<? extends T> other) {
+    List<? extends T> elements = other.asList();
+    // Least first, so that equal elements keep their order.
+    for (int i = elements.size() - 1; i >= 0; i--) {
+      offer(elements.get(i));
+    }
+  }
+
+  public boolean remove(Object element) {
+    for (PriorityQueue<Entry<T>> stripe : stripes) {
+      synchronized (stripe) {
+        for (Iterator<Entry<T>> entries = stripe.iterator(); entries.hasNext();) {
+          if (entries.next().element.equals(element)) {
+            entries.remove();
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the least element kept, or {@code null} if there is none. With
+   *         one stripe this is the top of its heap; otherwise the stripes are
+   *         combined, see {@link #asList()}.
+   */
+  public T peekLeast() {
+    return least(false);
+  }
+
+  /**
+   * Removes and returns the least element kept, see {@link #peekLeast()}.
+   */
+  public T pollLeast() {
+    return least(true);
+  }
+
+  private T least(boolean remove) {
+    if (stripes.size() == 1) {
+      PriorityQueue<Entry<T>> stripe = stripes.get(0);
+      synchronized (stripe) {
+        Entry<T> entry = remove ? stripe.poll() : stripe.peek();
+        return entry == null ? null : entry.element;
+      }
+    }
+    List<T> elements = asList();
+    if (elements.isEmpty()) {
+      return null;
+    }
+    T element = elements.get(elements.size() - 1);
+    if (remove) {
+      remove(element);
+    }
+    return element;
+  }
+
+  /**
+   * @return the greatest elements kept, the greatest first.
+   */
+  public List<T> asList() {
+    List<Entry<T>> entries = new ArrayList<Entry<T>>();
+    for (PriorityQueue<Entry<T>> stripe : stripes) {
+      synchronized (stripe) {
+        entries.addAll(stripe);
+      }
+    }
+    Collections.sort(entries, Collections.reverseOrder(comparator));
+    if (entries.size() > maxSize) {
+      // Drop what the other stripes outrank, so that it does not come back
+      // when one of the greatest elements is removed.
+      for (Entry<T> dropped : entries.subList(maxSize, entries.size())) {
+        for (PriorityQueue<Entry<T>> stripe : stripes) {
+          synchronized (stripe) {
+            if (stripe.remove(dropped)) {
+              break;
+            }
+          }
+        }
+      }
+      entries = entries.subList(0, maxSize);
+    }
+    List<T> elements = new ArrayList<T>(entries.size());
+    for (Entry<T> entry : entries) {
+      elements.add(entry.element);
+    }
+    return elements;
+  }
+
+  public int size() {
+    int size = 0;
+    for (PriorityQueue<Entry<T>> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return Math.min(size, maxSize);
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+}
@@ -22,7 +22,6 @@ import java.util.Stack;
 import antlr.collections.AST;
 
 import com.google.test.metric.ClassInfo;
-import com.google.test.metric.JavaType;
 import com.google.test.metric.Type;
 import com.google.test.metric.Visibility;
 
@@ -45,7 +44,8 @@ public class CompilationUnitBuilder {
 
   public void startType(int line, String name, Type superType,
       List<Type> interfaceTypes) {
-    String className = (type == null ? qualifier.getPackage() : type.getName() + "$") + name;
+    String className = repository.getInterner().name(
+        (type == null ? qualifier.getPackage() : type.getName() + "$") + name);
     boolean isInterface = false;
     List<ClassInfo> interfaceClasses = new ArrayList<ClassInfo>();
     for (Type interfaceType : interfaceTypes) {
@@ -71,7 +71,7 @@ public class CompilationUnitBuilder {
   }
 
   public Type toType(AST ast) {
-    return JavaType.fromJava(qualifier.qualify(getContext(), ast));
+    return repository.getInterner().fromJava(qualifier.qualify(getContext(), ast));
   }
 
   public ClassInfo toClassInfo(Type type) {
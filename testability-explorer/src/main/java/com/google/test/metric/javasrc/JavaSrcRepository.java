@@ -15,22 +15,59 @@
  */
 package com.google.test.metric.javasrc;
 
+import static com.google.classpath.RegExpResourceFilter.ANY;
+
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import antlr.RecognitionException;
 import antlr.TokenStreamException;
+import antlr.collections.AST;
 
 import com.google.classpath.ClassPath;
+import com.google.classpath.RegExpResourceFilter;
 import com.google.test.metric.ClassInfo;
 import com.google.test.metric.ClassRepository;
+import com.google.test.metric.Interner;
 
 public class JavaSrcRepository implements ClassRepository {
 
+  public static final String ENDS_WITH_JAVA = ".*\\.java";
+
+  /**
+   * The syntax tree of one {@code .java} file, which has been parsed but not yet
+   * turned into {@link ClassInfo}s.
+   */
+  static class CompilationUnit {
+    private final String src;
+    private final AST ast;
+    private final Qualifier qualifier;
+
+    CompilationUnit(String src, AST ast, Qualifier qualifier) {
+      this.src = src;
+      this.ast = ast;
+      this.qualifier = qualifier;
+    }
+  }
+
   private final ClassPath classPath;
-  private Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+  private Map<String, ClassInfo> classes = new ConcurrentHashMap<String, ClassInfo>();
+  private final Map<String, CompilationUnit> parsedSources =
+      new ConcurrentHashMap<String, CompilationUnit>();
+  private final Set<String> builtSources = Collections.synchronizedSet(new HashSet<String>());
   private final ClassRepository parentRepository;
+  private final Interner interner = new Interner();
 
   public JavaSrcRepository(ClassRepository parentRepository, ClassPath classPath) {
     this.parentRepository = parentRepository;
@@ -42,7 +79,7 @@ public class JavaSrcRepository implements ClassRepository {
     if (info != null) {
       return info;
     }
-    parse(clazzName);
+    build(sourceName(clazzName));
     info = classes.get(clazzName);
     if (info != null) {
       return info;
@@ -50,22 +87,57 @@ public class JavaSrcRepository implements ClassRepository {
     return parentRepository.getClass(clazzName);
   }
 
-  private void parse(String clazzName) {
-    String src = clazzName.replace('.', '/').replaceAll("\\$.*", "") + ".java";
+  private String sourceName(String clazzName) {
+    return clazzName.replace('.', '/').replaceAll("\\$.*", "") + ".java";
+  }
+
+  /**
+   * Builds the {@link ClassInfo}s of a compilation unit. Every source file is
+   * parsed at most once, even if several of its top level or nested classes
+   * are requested.
+   */
+  private synchronized void build(String src) {
+    if (!builtSources.add(src)) {
+      return;
+    }
+    CompilationUnit unit = parsedSources.remove(src);
+    if (unit == null) {
+      unit = parse(src);
+    }
+    if (unit != null) {
+      build(unit);
+    }
+  }
+
+  private void build(CompilationUnit unit) {
+    JavaTreeParser treeParser = new JavaTreeParser();
+    treeParser.builder = new CompilationUnitBuilder(this, unit.qualifier, unit.src);
+    try {
+      treeParser.compilationUnit(unit.ast);
+    } catch (RecognitionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Lexes and parses a source file. This does not touch the repository, so it
+   * can run on any thread; each call uses its own ANTLR lexer and parsers.
+   *
+   * @return the parsed unit or {@code null} if there is no such source file.
+   */
+  CompilationUnit parse(String src) {
     InputStream srcStream = classPath.getResourceAsStream(src);
     if (srcStream == null) {
-      return;
+      return null;
     }
     JavaLexer lexer = new JavaLexer(srcStream);
     JavaRecognizer recognizer = new JavaRecognizer(lexer);
     recognizer.getASTFactory().setASTNodeClass(CommonASTWithLine.class);
-    JavaTreeParser treeParser = new JavaTreeParser();
     Qualifier qualifier = new Qualifier();
-    treeParser.builder = new CompilationUnitBuilder(this, qualifier, src);
     try {
       recognizer.compilationUnit();
       qualifier.compilationUnit(recognizer.getAST());
-      treeParser.compilationUnit(recognizer.getAST());
+      return new CompilationUnit(src, recognizer.getAST(), qualifier);
     } catch (RecognitionException e) {
       throw new RuntimeException(e);
     } catch (TokenStreamException e) {
@@ -73,6 +145,56 @@ public class JavaSrcRepository implements ClassRepository {
     }
   }
 
+  /**
+   * Parses all of the {@code .java} files under a package of the source path
+   * in parallel, and then adds their classes to this repository. Lexing and
+   * parsing happen on the worker threads; the classes are built afterwards on
+   * the calling thread, since building resolves super classes through this
+   * repository.
+   *
+   * @param packageName package to parse, such as {@code com/google}, or
+   *          {@code ""} for the whole source path.
+   * @param threadCount number of parser threads.
+   * @return the number of source files which were parsed.
+   */
+  public int preParse(String packageName, int threadCount) {
+    List<String> sources = new ArrayList<String>();
+    for (String src : classPath.findResources(packageName,
+        new RegExpResourceFilter(ANY, ENDS_WITH_JAVA))) {
+      if (!builtSources.contains(src) && !parsedSources.containsKey(src)) {
+        sources.add(src);
+      }
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<CompilationUnit>> units = new ArrayList<Future<CompilationUnit>>();
+      for (final String src : sources) {
+        units.add(executor.submit(new Callable<CompilationUnit>() {
+          public CompilationUnit call() {
+            return parse(src);
+          }
+        }));
+      }
+      for (Future<CompilationUnit> future : units) {
+        CompilationUnit unit = future.get();
+        if (unit != null) {
+          parsedSources.put(unit.src, unit);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdown();
+    }
+    for (String src : sources) {
+      build(src);
+    }
+    return sources.size();
+  }
+
   @Override
   public String toString() {
     return classes.toString();
@@ -86,4 +208,8 @@ public class JavaSrcRepository implements ClassRepository {
     return classes.get(clazzName);
   }
 
+  public Interner getInterner() {
+    return interner;
+  }
+
 }
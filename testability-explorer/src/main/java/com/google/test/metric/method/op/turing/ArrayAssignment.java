@@ -42,6 +42,18 @@ public class ArrayAssignment extends Operation {
     this.value = value;
   }
 
+  public Variable getArray() {
+    return array;
+  }
+
+  public Variable getIndex() {
+    return index;
+  }
+
+  public Variable getValue() {
+    return value;
+  }
+
   @Override
   public void visit(TestabilityVisitor.Frame visitor) {
     if (!array.getName().startsWith(ENUM_SWITCH_MAP_NAME) &&
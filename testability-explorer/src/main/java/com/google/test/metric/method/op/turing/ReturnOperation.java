@@ -27,6 +27,10 @@ public class ReturnOperation extends Operation {
     this.value = value;
   }
 
+  public Variable getValue() {
+    return value;
+  }
+
   @Override
   public void visit(TestabilityVisitor.Frame visitor) {
     visitor.setReturnValue(value);
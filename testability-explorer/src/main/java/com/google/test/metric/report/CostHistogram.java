@@ -0,0 +1,79 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * How many classes have each cost. Unlike the binned histograms of the
+ * reports, it does not depend on the largest cost, so histograms of parts of
+ * the classes can be merged, and the binned histograms drawn from the result.
+ */
+public class CostHistogram {
+
+  private final SortedMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+  private int count;
+
+  public void add(int cost) {
+    add(cost, 1);
+  }
+
+  private void add(int cost, int times) {
+    Integer current = counts.get(cost);
+    counts.put(cost, current == null ? times : current + times);
+    count += times;
+  }
+
+  public void merge(CostHistogram other) {
+    for (Map.Entry<Integer, Integer> entry : other.counts.entrySet()) {
+      add(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * @return how many costs were added.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @return the number of classes of each cost, by cost.
+   */
+  public SortedMap<Integer, Integer> getCounts() {
+    return Collections.unmodifiableSortedMap(counts);
+  }
+
+  /**
+   * @return every cost which was added, as often as it was added, from the
+   *         lowest to the highest.
+   */
+  public List<Integer> toList() {
+    List<Integer> costs = new ArrayList<Integer>(count);
+    for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+      for (int i = 0; i < entry.getValue(); i++) {
+        costs.add(entry.getKey());
+      }
+    }
+    return costs;
+  }
+
+}
@@ -16,12 +16,30 @@
 package com.google.test.metric.report;
 
 import com.google.test.metric.WeightedAverage;
+import com.google.test.metric.report.SummaryAggregate.PackageRollup;
 
 public class PackageReport extends SummaryGraphReport<SummaryGraphReport.Unit> {
 
+  private final PackageRollup rollup;
+
   public PackageReport(String packageName, GradeCategories grades,
       WeightedAverage average) {
     super(packageName, grades, average);
+    this.rollup = null;
+  }
+
+  /**
+   * A package whose overall cost is the one of its rollup, which may also
+   * count classes summarized elsewhere.
+   */
+  public PackageReport(PackageRollup rollup, GradeCategories grades) {
+    super(rollup.getPackageName(), grades, null);
+    this.rollup = rollup;
+  }
+
+  @Override
+  public int getOverallCost() {
+    return rollup == null ? super.getOverallCost() : rollup.getOverall();
   }
 
   public void addClass(String className, int cost) {
@@ -16,6 +16,7 @@
 package com.google.test.metric.report;
 
 import com.google.test.metric.WeightedAverage;
+import com.google.test.metric.report.SummaryAggregate.PackageRollup;
 
 public class ProjectReport extends SummaryGraphReport<SummaryGraphReport.Unit> {
 
@@ -27,6 +28,10 @@ public class ProjectReport extends SummaryGraphReport<SummaryGraphReport.Unit> {
     addUnit(new Unit(pacakgeName, cost));
   }
 
+  public void addPackage(PackageRollup rollup) {
+    addPackage(rollup.getPackageName(), rollup.getOverall());
+  }
+
   public void addClass(String className, int cost) {
     addUnit(new Unit(className, cost));
   }
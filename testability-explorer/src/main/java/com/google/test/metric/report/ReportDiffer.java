@@ -15,22 +15,29 @@
  */
 package com.google.test.metric.report;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.w3c.dom.Document;
 
+import com.google.test.metric.ClassCostFile;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.report.XMLReportDiffer.ClassSource;
+
 import freemarker.template.Configuration;
 
 public class ReportDiffer {
 
-  @Option(name="-oldFile", usage="name of the old XML report", required=true)
+  @Option(name="-oldFile", usage="name of the old XML report or results file", required=true)
   private String oldFile;
 
-  @Option(name="-newFile", usage="name of the new XML report", required=true)
+  @Option(name="-newFile", usage="name of the new XML report or results file", required=true)
   private String newFile;
 
   @Option(name="-htmlReportFile", usage="name of the HTML result file", required=true)
@@ -46,6 +53,17 @@ public class ReportDiffer {
       "  for example: http://myhost.com/newReport/{path}.html", required=false)
   private String newLinkUrl;
 
+  @Option(name="-cyclomatic", usage="the cyclomatic cost multiplier the results files are "
+      + "scored with, as given to the analysis (optional)", required=false)
+  private double cyclomaticMultiplier = 1;
+
+  @Option(name="-global", usage="the global state cost multiplier the results files are "
+      + "scored with, as given to the analysis (optional)", required=false)
+  private double globalMultiplier = 10;
+
+  @Option(name="-constructor", usage="the constructor cost multiplier the results files are "
+      + "scored with, as given to the analysis (optional)", required=false)
+  private double constructorMultiplier = 1;
 
   public static void main(String[] args) throws Exception {
     ReportDiffer differ = new ReportDiffer();
@@ -54,22 +72,121 @@ public class ReportDiffer {
   }
 
   private void doDiff(DiffReportFactory diffReportFactory) throws Exception {
-    XMLReportLoader reportLoader = new XMLReportLoader();
-    Document oldReport = reportLoader.loadXML(new FileReader(oldFile));
-    Document newReport = reportLoader.loadXML(new FileReader(newFile));
+    Diff diff = diff();
     FileWriter out = new FileWriter(htmlReportFile);
-    Diff diff = new XMLReportDiffer().diff(oldReport, newReport);
-    DiffReport report = diffReportFactory.buildReport(diff);
-    if (oldLinkUrl != null && !oldLinkUrl.equals("")) {
-      report.setOldSourceUrl(oldLinkUrl);
+    try {
+      DiffReport report = diffReportFactory.buildReport(diff);
+      if (oldLinkUrl != null && !oldLinkUrl.equals("")) {
+        report.setOldSourceUrl(oldLinkUrl);
+      }
+      if (newLinkUrl != null && !newLinkUrl.equals("")) {
+        report.setOldSourceUrl(newLinkUrl);
+      }
+      report.writeHtml(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  Diff diff() throws Exception {
+    if (ClassCostFile.isResultsFile(new File(oldFile))
+        || ClassCostFile.isResultsFile(new File(newFile))) {
+      return diffResults();
+    } else if (isStreamingAvailable()) {
+      try {
+        return diffReports();
+      } catch (IllegalArgumentException e) {
+        // Reports written before classes were ordered by name.
+        return diffDocuments();
+      }
+    }
+    return diffDocuments();
+  }
+
+  /**
+   * @return whether the StAX API, which reads reports as they are compared,
+   *         is there. It is part of Java 6; on Java 5 the reports are loaded
+   *         whole instead.
+   */
+  static boolean isStreamingAvailable() {
+    try {
+      Class.forName("javax.xml.stream.XMLInputFactory");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  private Diff diffReports() throws IOException {
+    Reader oldReport = new FileReader(oldFile);
+    try {
+      Reader newReport = new FileReader(newFile);
+      try {
+        return new XMLReportDiffer().diff(oldReport, newReport);
+      } finally {
+        newReport.close();
+      }
+    } finally {
+      oldReport.close();
     }
-    if (newLinkUrl != null && !newLinkUrl.equals("")) {
-      report.setOldSourceUrl(newLinkUrl);
+  }
+
+  private Diff diffDocuments() throws Exception {
+    return new XMLReportDiffer().diff(loadDocument(oldFile), loadDocument(newFile));
+  }
+
+  private Document loadDocument(String fileName) throws Exception {
+    Reader reader = new FileReader(fileName);
+    try {
+      return new XMLReportLoader().loadXML(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Compares results files, written with {@code -results}, or a results file
+   * and an XML report. The results are scored like the analysis scores its
+   * reports, with the multipliers given to it.
+   */
+  private Diff diffResults() throws IOException {
+    ClassSource oldClasses = open(oldFile);
+    try {
+      ClassSource newClasses = open(newFile);
+      try {
+        return new XMLReportDiffer().diff(oldClasses, newClasses);
+      } finally {
+        close(newClasses);
+      }
+    } finally {
+      close(oldClasses);
+    }
+  }
+
+  private ClassSource open(String fileName) throws IOException {
+    File file = new File(fileName);
+    if (ClassCostFile.isResultsFile(file)) {
+      return new ResultsFileReader(file,
+          new CostModel(cyclomaticMultiplier, globalMultiplier, constructorMultiplier));
+    }
+    if (!isStreamingAvailable()) {
+      throw new IOException("Comparing " + fileName + " with a results file needs the "
+          + "javax.xml.stream API of Java 6");
+    }
+    return new XMLReportReader(new FileReader(file));
+  }
+
+  private void close(ClassSource classes) throws IOException {
+    if (classes instanceof ResultsFileReader) {
+      ((ResultsFileReader) classes).close();
+    } else {
+      ((XMLReportReader) classes).close();
     }
-    report.writeHtml(out);
   }
 
-  private void parseArgs(String[] args) throws CmdLineException {
+  void parseArgs(String[] args) throws CmdLineException {
     CmdLineParser parser = new CmdLineParser(this);
     try {
       parser.parseArgument(args);
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.ClassCostFile;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.MethodCost;
+import com.google.test.metric.report.XMLReportDiffer.ReportedClass;
+
+/**
+ * Reads the classes of a results file, as written with {@code -results}, in
+ * the order of their names, with their costs under a {@link CostModel}, so
+ * that results files can be compared like XML reports.
+ */
+public class ResultsFileReader implements XMLReportDiffer.ClassSource {
+
+  private final ClassCostFile file;
+  private final CostModel costModel;
+  private final Iterator<String> classNames;
+
+  public ResultsFileReader(File resultsFile, CostModel costModel) throws IOException {
+    this.file = new ClassCostFile(resultsFile);
+    this.costModel = costModel;
+    this.classNames = file.getClassNames().iterator();
+  }
+
+  public ReportedClass next() throws IOException {
+    if (!classNames.hasNext()) {
+      return null;
+    }
+    ClassCost classCost = file.read(classNames.next());
+    Map<String, Integer> methodCosts = new LinkedHashMap<String, Integer>();
+    for (MethodCost methodCost : classCost.getMethods()) {
+      methodCosts.put(methodCost.getMethodName(),
+          costModel.computeOverall(methodCost.getTotalCost()));
+    }
+    return new ReportedClass(classCost.getClassName(), costModel.computeClass(classCost),
+        methodCosts);
+  }
+
+  public void close() throws IOException {
+    file.close();
+  }
+
+}
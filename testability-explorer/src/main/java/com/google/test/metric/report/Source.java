@@ -16,6 +16,7 @@
 package com.google.test.metric.report;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.test.metric.Cost;
@@ -69,29 +70,71 @@ public class Source {
 
   }
 
-  private final List<Line> lines;
+  private final char[] text;
+  private final int[] lineStarts;
+  private Line[] views;
+  private List<Line> lines;
 
   public Source(List<Line> lines) {
     this.lines = lines;
+    this.text = null;
+    this.lineStarts = null;
+  }
+
+  /**
+   * A source whose lines are made from the text when they are first asked for.
+   *
+   * @param lineStarts where each line starts in the text, followed by the
+   *          length of the text.
+   */
+  Source(char[] text, int[] lineStarts) {
+    this.text = text;
+    this.lineStarts = lineStarts;
+    this.views = new Line[lineStarts.length - 1];
+  }
+
+  private int getLineCount() {
+    return lines != null ? lines.size() : views.length;
   }
 
   public Line getLine(int line) {
     line = Math.max(1, line);
-    line = Math.min(lines.size(), line);
-    if (lines.size() == 0) {
+    line = Math.min(getLineCount(), line);
+    if (getLineCount() == 0) {
       return new Line(0, "");
     }
-    return lines.get(line - 1);
+    return lines != null ? lines.get(line - 1) : view(line - 1);
+  }
+
+  private Line view(int index) {
+    if (views[index] == null) {
+      int start = lineStarts[index];
+      int end = lineStarts[index + 1];
+      if (end > start && text[end - 1] == '\n') {
+        end--;
+      }
+      if (end > start && text[end - 1] == '\r') {
+        end--;
+      }
+      views[index] = new Line(index + 1, new String(text, start, end - start));
+    }
+    return views[index];
   }
 
   public List<Line> getLines() {
+    if (lines == null) {
+      for (int i = 0; i < views.length; i++) {
+        view(i);
+      }
+      lines = Arrays.asList(views);
+    }
     return lines;
   }
 
   @Override
   public String toString() {
     StringBuilder buf = new StringBuilder();
-    for (Line line : lines) {
+    for (Line line : getLines()) {
       buf.append(line);
       buf.append("\n");
     }
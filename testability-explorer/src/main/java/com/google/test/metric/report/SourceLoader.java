@@ -15,55 +15,171 @@
  */
 package com.google.test.metric.report;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.classpath.ClassPath;
 
+/**
+ * Loads the source of classes from the class path. The files which were read
+ * last are kept, each as one array of characters and where its lines start,
+ * so that the reports of a class, and of the classes nested in it, do not read
+ * the file again. Which files each package has is listed once per package.
+ * <p>
+ * Each {@link Source} which is loaded is new, since reports add their costs to
+ * its lines, but the sources of a file share its characters.
+ */
 public class SourceLoader {
 
+  /** Keeps sources of about 8MB. */
+  public static final int DEFAULT_MAX_CACHED_CHARS = 4 * 1024 * 1024;
+
+  /** The text of a source file, and where each of its lines start. */
+  private static class SourceFile {
+    private final char[] text;
+    private final int[] lineStarts;
+
+    SourceFile(char[] text, int[] lineStarts) {
+      this.text = text;
+      this.lineStarts = lineStarts;
+    }
+  }
+
   private final ClassPath classPath;
+  private final int maxCachedChars;
+  private final Map<String, SourceFile> files =
+      new LinkedHashMap<String, SourceFile>(16, 0.75f, true);
+  private final Map<String, Set<String>> packages = new HashMap<String, Set<String>>();
+  private int cachedChars;
 
   public SourceLoader(ClassPath classPath) {
+    this(classPath, DEFAULT_MAX_CACHED_CHARS);
+  }
+
+  /**
+   * @param maxCachedChars how many characters of the files read last to keep.
+   */
+  public SourceLoader(ClassPath classPath, int maxCachedChars) {
     this.classPath = classPath;
+    this.maxCachedChars = maxCachedChars;
   }
 
   public Source load(String name) {
-    InputStream is = getStream(name);
-    if (is == null) {
+    String resource = findResource(name);
+    if (resource == null) {
       return new Source(new ArrayList<Source.Line>());
     }
-    BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-    ArrayList<Source.Line> lines = new ArrayList<Source.Line>();
-    String line;
-    int lineNumber = 1;
-    try {
-      while ((line = reader.readLine()) != null) {
-        lines.add(new Source.Line(lineNumber, line));
-        lineNumber ++;
+    SourceFile file = getCached(resource);
+    if (file == null) {
+      InputStream is = classPath.getResourceAsStream(resource);
+      if (is == null) {
+        return new Source(new ArrayList<Source.Line>());
       }
-      reader.close();
-      return new Source(lines);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+      try {
+        file = read(new InputStreamReader(is));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      cache(resource, file);
     }
-
+    return new Source(file.text, file.lineStarts);
   }
 
-  private InputStream getStream(String name) {
+  /**
+   * @return the file of the class, or of the class it is nested in, or
+   *         {@code null} if there is none.
+   */
+  private String findResource(String name) {
     String resource = name.replace(".", "/");
-    InputStream is = null;
-    while (is == null && !resource.equals("")) {
-      is = classPath.getResourceAsStream(resource + ".java");
-      if (is == null) {
-        int index = resource.lastIndexOf('/');
-        resource = index == -1 ? "" : resource.substring(0, index);
+    while (!resource.equals("")) {
+      int index = resource.lastIndexOf('/');
+      String packageName = index == -1 ? "" : resource.substring(0, index);
+      if (listFiles(packageName).contains(resource.substring(index + 1) + ".java")) {
+        return resource + ".java";
+      }
+      resource = packageName;
+    }
+    return null;
+  }
+
+  private synchronized Set<String> listFiles(String packageName) {
+    Set<String> packageFiles = packages.get(packageName);
+    if (packageFiles == null) {
+      packageFiles = new HashSet<String>(Arrays.asList(classPath.listResources(packageName)));
+      packages.put(packageName, packageFiles);
+    }
+    return packageFiles;
+  }
+
+  private synchronized SourceFile getCached(String resource) {
+    return files.get(resource);
+  }
+
+  private synchronized void cache(String resource, SourceFile file) {
+    SourceFile previous = files.put(resource, file);
+    cachedChars += file.text.length - (previous == null ? 0 : previous.text.length);
+    Iterator<SourceFile> eldest = files.values().iterator();
+    while (cachedChars > maxCachedChars && files.size() > 1) {
+      cachedChars -= eldest.next().text.length;
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Reads the text, and finds where its lines start. Lines end like they do
+   * for {@link java.io.BufferedReader#readLine()}.
+   */
+  private SourceFile read(Reader reader) throws IOException {
+    char[] text = new char[8192];
+    int length = 0;
+    try {
+      int read;
+      while ((read = reader.read(text, length, text.length - length)) > 0) {
+        length += read;
+        if (length == text.length) {
+          char[] larger = new char[text.length * 2];
+          System.arraycopy(text, 0, larger, 0, length);
+          text = larger;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    int[] lineStarts = new int[16];
+    int lineCount = 0;
+    int start = 0;
+    while (start < length) {
+      if (lineCount == lineStarts.length) {
+        int[] larger = new int[lineStarts.length * 2];
+        System.arraycopy(lineStarts, 0, larger, 0, lineCount);
+        lineStarts = larger;
+      }
+      lineStarts[lineCount++] = start;
+      int end = start;
+      while (end < length && text[end] != '\n' && text[end] != '\r') {
+        end++;
+      }
+      if (end < length && text[end] == '\r' && end + 1 < length && text[end + 1] == '\n') {
+        end++;
       }
+      start = end + 1;
     }
-    return is;
+    char[] compactText = new char[length];
+    System.arraycopy(text, 0, compactText, 0, length);
+    int[] compactStarts = new int[lineCount + 1];
+    System.arraycopy(lineStarts, 0, compactStarts, 0, lineCount);
+    compactStarts[lineCount] = length;
+    return new SourceFile(compactText, compactStarts);
   }
 
 }
@@ -15,16 +15,28 @@
  */
 package com.google.test.metric.report;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 
 import com.google.test.metric.ClassCost;
 import com.google.test.metric.Cost;
@@ -33,6 +45,7 @@ import com.google.test.metric.MethodCost;
 import com.google.test.metric.ViolationCost;
 import com.google.test.metric.WeightedAverage;
 import com.google.test.metric.report.Source.Line;
+import com.google.test.metric.report.SummaryAggregate.PackageRollup;
 
 import freemarker.ext.beans.BeanModel;
 import freemarker.template.Configuration;
@@ -44,8 +57,29 @@ import freemarker.template.TemplateMethodModelEx;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 
+/**
+ * Writes an HTML page for each class, with its source annotated with its
+ * costs, and for each package and the whole project. The class pages may be
+ * rendered by several threads while classes are still being added; the
+ * package and project pages are written once all class pages are done, with
+ * the package costs of a {@link SummaryAggregate}.
+ */
 public class SourceReportGenerator implements ReportGenerator {
 
+  /** How many classes may wait for each render thread. */
+  private static final int PENDING_PER_THREAD = 4;
+
+  /** The class page of a class which is being rendered. */
+  private static class RenderedClass {
+    private final String className;
+    private final Future<Integer> overallCost;
+
+    RenderedClass(String className, Future<Integer> overallCost) {
+      this.className = className;
+      this.overallCost = overallCost;
+    }
+  }
+
   private class PrintCostMethod implements TemplateMethodModelEx {
     @SuppressWarnings("unchecked")
     public Object exec(List arguments) throws TemplateModelException {
@@ -88,7 +122,13 @@ public class SourceReportGenerator implements ReportGenerator {
   private final Map<String, PackageReport> packageReports = new HashMap<String, PackageReport>();
   private final ProjectReport projectByClassReport;
   private final ProjectReport projectByPackageReport;
+  private final SummaryAggregate summary;
   private final CostModel costModel;
+  private final ConcurrentMap<String, Template> templates =
+      new ConcurrentHashMap<String, Template>();
+  private final List<RenderedClass> renderedClasses = new ArrayList<RenderedClass>();
+  private ExecutorService renderers;
+  private Semaphore pending;
 
   public SourceReportGenerator(GradeCategories grades, SourceLoader sourceLoader,
       File outputDirectory, CostModel costModel, Date currentTime,
@@ -114,6 +154,30 @@ public class SourceReportGenerator implements ReportGenerator {
     projectByClassReport.setMaxUnitCosts(worstCount);
     projectByPackageReport = new ProjectReport("index", grades,
         new WeightedAverage());
+    summary = new SummaryAggregate(costModel, grades.getMaxExcellentCost(),
+        grades.getMaxAcceptableCost(), worstCount);
+  }
+
+  /**
+   * Render the class pages with this many threads, while classes are still
+   * being added. With 0 (the default) each page is rendered as its class is
+   * added.
+   */
+  public void setRenderThreads(int threads) {
+    if (threads > 0) {
+      renderers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "render");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      // Keeps the classes waiting to be rendered, and their sources, from piling up.
+      pending = new Semaphore(threads * PENDING_PER_THREAD);
+    } else {
+      renderers = null;
+      pending = null;
+    }
   }
 
   public void printHeader() {
@@ -138,23 +202,67 @@ public class SourceReportGenerator implements ReportGenerator {
   }
 
   public void printFooter() {
-    for (PackageReport packageReport : packageReports.values()) {
-      projectByPackageReport.addPackage(packageReport.getName(), packageReport
-          .getOverallCost());
-      write("Package.html", packageReport, "package_");
+    if (renderers != null) {
+      awaitClassPages();
+    }
+    for (PackageRollup rollup : summary.getPackages().values()) {
+      projectByPackageReport.addPackage(rollup);
+      write("Package.html", packageReports.get(rollup.getPackageName()), "package_");
     }
     write("Project.html", new ProjectSummaryReport(projectByClassReport,
         projectByPackageReport), new File(directory, "index.html"));
   }
 
-  public void addClassCost(ClassCost classCost) {
-    ClassReport classReport = createClassReport(classCost);
-    write("Class.html", classReport, "class_");
+  /**
+   * Adds the classes to the project in the order they were added, as if their
+   * pages had been rendered one after another.
+   */
+  private void awaitClassPages() {
+    try {
+      for (RenderedClass renderedClass : renderedClasses) {
+        projectByClassReport.addClass(renderedClass.className,
+            renderedClass.overallCost.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      renderedClasses.clear();
+      renderers.shutdownNow();
+    }
+  }
+
+  public void addClassCost(final ClassCost classCost) {
+    if (renderers == null) {
+      ClassReport classReport = createClassReport(classCost);
+      write("Class.html", classReport, "class_");
+    } else {
+      pending.acquireUninterruptibly();
+      Future<Integer> overallCost = renderers.submit(new Callable<Integer>() {
+        public Integer call() {
+          try {
+            ClassReport classReport = buildClassReport(classCost);
+            write("Class.html", classReport, "class_");
+            return classReport.getOverallCost();
+          } finally {
+            pending.release();
+          }
+        }
+      });
+      renderedClasses.add(new RenderedClass(classCost.getClassName(), overallCost));
+    }
+    summary.addClassCost(classCost);
     String packageName = classCost.getPackageName();
     PackageReport packageReport = packageReports.get(packageName);
     if (packageReport == null) {
-      packageReport = new PackageReport(packageName, grades,
-          new WeightedAverage());
+      packageReport = new PackageReport(summary.getPackages().get(packageName), grades);
       packageReports.put(packageName, packageReport);
     }
     packageReport.addClass(classCost.getClassName(), costModel
@@ -169,11 +277,13 @@ public class SourceReportGenerator implements ReportGenerator {
 
   public void write(String templateName, Object report, File file) {
     try {
-      Template template = cfg.getTemplate(templateName);
-      FileOutputStream os = new FileOutputStream(file);
-      OutputStreamWriter out = new OutputStreamWriter(os);
-      template.process(report, out);
-      out.close();
+      Template template = getTemplate(templateName);
+      Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+      try {
+        template.process(report, out);
+      } finally {
+        out.close();
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
     } catch (TemplateException e) {
@@ -181,7 +291,27 @@ public class SourceReportGenerator implements ReportGenerator {
     }
   }
 
+  /**
+   * Parses each template once, rather than asking the configuration whether
+   * it has changed for every page. Templates can be shared by all threads.
+   */
+  private Template getTemplate(String templateName) throws IOException {
+    Template template = templates.get(templateName);
+    if (template == null) {
+      template = cfg.getTemplate(templateName);
+      templates.putIfAbsent(templateName, template);
+    }
+    return template;
+  }
+
   ClassReport createClassReport(ClassCost classCost) {
+    ClassReport classReport = buildClassReport(classCost);
+    projectByClassReport.addClass(classCost.getClassName(), classReport
+        .getOverallCost());
+    return classReport;
+  }
+
+  private ClassReport buildClassReport(ClassCost classCost) {
     Source source = sourceLoader.load(classCost.getClassName());
     ClassReport classReport = new ClassReport(classCost.getClassName(), source,
         grades, new WeightedAverage(
@@ -198,8 +328,6 @@ public class SourceReportGenerator implements ReportGenerator {
         line.addCost(violation.getCost());
       }
     }
-    projectByClassReport.addClass(classCost.getClassName(), classReport
-        .getOverallCost());
     return classReport;
   }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.WeightedAverage;
+import com.google.test.metric.collection.TopK;
+
+/**
+ * The summary of a set of classes: how many of them are excellent, good or
+ * need work, their weighted average cost, the histogram of their costs, the
+ * worst offenders and the same rolled up per package. Each thread or shard of
+ * an analysis can summarize its own classes, and the summaries can be merged
+ * in time proportional to their size, rather than to the number of classes.
+ */
+public class SummaryAggregate {
+
+  /** The summary of the classes of one package. */
+  public static class PackageRollup {
+    private final String packageName;
+    private final WeightedAverage weightedAverage = new WeightedAverage();
+    private int classCount;
+    private int excellentCount;
+    private int goodCount;
+    private int needsWorkCount;
+
+    PackageRollup(String packageName) {
+      this.packageName = packageName;
+    }
+
+    void merge(PackageRollup other) {
+      weightedAverage.add(other.weightedAverage);
+      classCount += other.classCount;
+      excellentCount += other.excellentCount;
+      goodCount += other.goodCount;
+      needsWorkCount += other.needsWorkCount;
+    }
+
+    public String getPackageName() {
+      return packageName;
+    }
+
+    public int getClassCount() {
+      return classCount;
+    }
+
+    public int getExcellentCount() {
+      return excellentCount;
+    }
+
+    public int getGoodCount() {
+      return goodCount;
+    }
+
+    public int getNeedsWorkCount() {
+      return needsWorkCount;
+    }
+
+    public int getOverall() {
+      return (int) weightedAverage.getAverage();
+    }
+  }
+
+  /**
+   * A class with its overall cost, which is computed once when the class is
+   * added, rather than on every comparison of the worst offenders.
+   */
+  private static class ScoredClass {
+    private final ClassCost classCost;
+    private final int overallCost;
+
+    ScoredClass(ClassCost classCost, int overallCost) {
+      this.classCost = classCost;
+      this.overallCost = overallCost;
+    }
+  }
+
+  /** The most expensive class is the greatest; of equal ones, the first by name. */
+  private static final Comparator<ScoredClass> BY_COST = new Comparator<ScoredClass>() {
+    public int compare(ScoredClass a, ScoredClass b) {
+      int diff = a.overallCost - b.overallCost;
+      return diff == 0 ? b.classCost.getClassName().compareTo(a.classCost.getClassName()) : diff;
+    }
+  };
+
+  private final CostModel costModel;
+  private final int maxExcellentCost;
+  private final int maxAcceptableCost;
+  private final int worstOffenderCount;
+  private final WeightedAverage weightedAverage = new WeightedAverage();
+  private final CostHistogram histogram = new CostHistogram();
+  private final TopK<ScoredClass> worstOffenders;
+  private final SortedMap<String, PackageRollup> packages = new TreeMap<String, PackageRollup>();
+  private int excellentCount;
+  private int goodCount;
+  private int needsWorkCount;
+  private int truncatedCount;
+  private int worstCost = 1;
+
+  public SummaryAggregate(CostModel costModel, int maxExcellentCost, int maxAcceptableCost,
+      int worstOffenderCount) {
+    this.costModel = costModel;
+    this.maxExcellentCost = maxExcellentCost;
+    this.maxAcceptableCost = maxAcceptableCost;
+    this.worstOffenderCount = worstOffenderCount;
+    this.worstOffenders = new TopK<ScoredClass>(worstOffenderCount, BY_COST);
+  }
+
+  public void addClassCost(ClassCost classCost) {
+    int cost = costModel.computeClass(classCost);
+    PackageRollup rollup = getRollup(classCost.getPackageName());
+    rollup.classCount++;
+    rollup.weightedAverage.addValue(cost);
+    if (cost < maxExcellentCost) {
+      excellentCount++;
+      rollup.excellentCount++;
+    } else if (cost < maxAcceptableCost) {
+      goodCount++;
+      rollup.goodCount++;
+    } else {
+      needsWorkCount++;
+      rollup.needsWorkCount++;
+    }
+    if (classCost.isTruncated()) {
+      truncatedCount++;
+    }
+    histogram.add(cost);
+    worstOffenders.offer(new ScoredClass(classCost, cost));
+    worstCost = Math.max(worstCost, cost);
+    weightedAverage.addValue(cost);
+  }
+
+  /**
+   * Adds the classes summarized by {@code other}, which must grade them the
+   * same way.
+   */
+  public void merge(SummaryAggregate other) {
+    if (other.maxExcellentCost != maxExcellentCost
+        || other.maxAcceptableCost != maxAcceptableCost) {
+      throw new IllegalArgumentException("Can not merge summaries with different grades");
+    }
+    excellentCount += other.excellentCount;
+    goodCount += other.goodCount;
+    needsWorkCount += other.needsWorkCount;
+    truncatedCount += other.truncatedCount;
+    worstCost = Math.max(worstCost, other.worstCost);
+    weightedAverage.add(other.weightedAverage);
+    histogram.merge(other.histogram);
+    worstOffenders.merge(other.worstOffenders);
+    for (PackageRollup otherRollup : other.packages.values()) {
+      getRollup(otherRollup.packageName).merge(otherRollup);
+    }
+  }
+
+  private PackageRollup getRollup(String packageName) {
+    PackageRollup rollup = packages.get(packageName);
+    if (rollup == null) {
+      rollup = new PackageRollup(packageName);
+      packages.put(packageName, rollup);
+    }
+    return rollup;
+  }
+
+  public int getClassCount() {
+    return histogram.getCount();
+  }
+
+  public int getExcellentCount() {
+    return excellentCount;
+  }
+
+  public int getGoodCount() {
+    return goodCount;
+  }
+
+  public int getNeedsWorkCount() {
+    return needsWorkCount;
+  }
+
+  public int getTruncatedCount() {
+    return truncatedCount;
+  }
+
+  public int getWorstCost() {
+    return worstCost;
+  }
+
+  public int getOverall() {
+    return (int) weightedAverage.getAverage();
+  }
+
+  public CostHistogram getHistogram() {
+    return histogram;
+  }
+
+  /**
+   * @return the most expensive classes, the most expensive first.
+   */
+  public List<ClassCost> getWorstOffenders() {
+    List<ClassCost> classCosts = new ArrayList<ClassCost>();
+    for (ScoredClass scored : worstOffenders.asList()) {
+      classCosts.add(scored.classCost);
+    }
+    return classCosts;
+  }
+
+  /**
+   * @return the summary of each package, by package name.
+   */
+  public SortedMap<String, PackageRollup> getPackages() {
+    return Collections.unmodifiableSortedMap(packages);
+  }
+
+  public int getMaxExcellentCost() {
+    return maxExcellentCost;
+  }
+
+  public int getMaxAcceptableCost() {
+    return maxAcceptableCost;
+  }
+
+  public int getWorstOffenderCount() {
+    return worstOffenderCount;
+  }
+
+}
@@ -54,7 +54,12 @@ public abstract class SummaryGraphReport<T extends SummaryGraphReport.Unit> {
   private int maxUnitCosts = Integer.MAX_VALUE;
   private final WeightedAverage average;
   private final String name;
+  private boolean sorted = true;
 
+  /**
+   * @param average of the costs of the units, or {@code null} if the subclass
+   *          has its overall cost from elsewhere.
+   */
   public SummaryGraphReport(String name, GradeCategories grades,
       WeightedAverage average) {
     this.name = name;
@@ -83,11 +88,20 @@ public abstract class SummaryGraphReport<T extends SummaryGraphReport.Unit> {
     int cost = unit.getCost();
     unitCosts.add(unit);
     costs.add(cost);
-    average.addValue(cost);
-    sort(unitCosts);
+    if (average != null) {
+      average.addValue(cost);
+    }
+    // Sorted when asked for rather than on every add, which was quadratic in
+    // the number of classes of a project. The sort is stable, so the order is
+    // the same.
+    sorted = false;
   }
 
   public List<Unit> getUnitCosts() {
+    if (!sorted) {
+      sort(unitCosts);
+      sorted = true;
+    }
     return unitCosts.subList(0, Math.min(maxUnitCosts, unitCosts.size()));
   }
 
@@ -15,74 +15,81 @@
  */
 package com.google.test.metric.report;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import com.google.test.metric.ClassCost;
 import com.google.test.metric.CostModel;
-import com.google.test.metric.WeightedAverage;
 
+/**
+ * A report which summarizes all classes, see {@link SummaryAggregate}.
+ */
 public abstract class SummaryReportModel extends ReportModel {
 
-  protected final WeightedAverage weightedAverage = new WeightedAverage();
-  protected SortedSet<ClassCost> worstOffenders;
-  protected final List<Integer> costs = new ArrayList<Integer>();
-
-  public int getExcellentCount() {
-    return excellentCount;
-  }
-
-  public int getGoodCount() {
-    return goodCount;
-  }
-
-  public int getNeedsWorkCount() {
-    return needsWorkCount;
-  }
-
   protected final int maxExcellentCost;
   protected final int maxAcceptableCost;
   protected final int worstOffenderCount;
-  protected int excellentCount = 0;
-  protected int goodCount = 0;
-  protected int needsWorkCount = 0;
-  protected int worstCost = 1;
-  private final CostModel costModel;
+  protected final SummaryAggregate aggregate;
 
   public SummaryReportModel(CostModel costModel, int maxExcellentCost, int maxAcceptableCost, int worstOffenderCount) {
-    this.costModel = costModel;
-    this.worstOffenders = new TreeSet<ClassCost>(new ClassCost.CostComparator(costModel));
     this.maxExcellentCost = maxExcellentCost;
     this.maxAcceptableCost = maxAcceptableCost;
     this.worstOffenderCount = worstOffenderCount;
+    this.aggregate = new SummaryAggregate(costModel, maxExcellentCost, maxAcceptableCost,
+        worstOffenderCount);
   }
 
   @Override
   public void addClassCost(ClassCost classCost) {
-    int cost = costModel.computeClass(classCost);
-    if (cost < maxExcellentCost) {
-      excellentCount++;
-    } else if (cost < maxAcceptableCost) {
-      goodCount++;
-    } else {
-      needsWorkCount++;
-    }
-    costs.add(cost);
-    worstOffenders.add(classCost);
-    if (worstOffenders.size() > worstOffenderCount) {
-      worstOffenders.remove(worstOffenders.last());
-    }
-    worstCost = Math.max(worstCost, cost);
-    weightedAverage.addValue(cost);
+    aggregate.addClassCost(classCost);
+  }
+
+  /**
+   * Adds the classes summarized elsewhere, such as by another thread or
+   * another shard of the analysis, to this report.
+   */
+  public void merge(SummaryAggregate other) {
+    aggregate.merge(other);
+  }
+
+  public SummaryAggregate getAggregate() {
+    return aggregate;
+  }
+
+  public int getExcellentCount() {
+    return aggregate.getExcellentCount();
+  }
+
+  public int getGoodCount() {
+    return aggregate.getGoodCount();
+  }
+
+  public int getNeedsWorkCount() {
+    return aggregate.getNeedsWorkCount();
+  }
+
+  /**
+   * @return how many classes have methods whose analysis ran out of budget.
+   */
+  public int getTruncatedCount() {
+    return aggregate.getTruncatedCount();
   }
 
   public int getClassCount() {
-    return costs.size();
+    return aggregate.getClassCount();
   }
 
   public int getOverall() {
-    return (int) weightedAverage.getAverage();
+    return aggregate.getOverall();
+  }
+
+  protected List<ClassCost> getWorstOffenderClasses() {
+    return aggregate.getWorstOffenders();
+  }
+
+  /**
+   * @return the cost of every class, from the lowest to the highest.
+   */
+  protected List<Integer> getCosts() {
+    return aggregate.getHistogram().toList();
   }
-}
\ No newline at end of file
+}
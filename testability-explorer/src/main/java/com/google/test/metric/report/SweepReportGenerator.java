@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.CostModel;
+
+/**
+ * Summarizes the same classes under several sets of multipliers and grades at
+ * once, such as the classes of a saved results file, to see how the scores
+ * would change without analyzing the classes again for each set.
+ */
+public class SweepReportGenerator implements ReportGenerator {
+
+  private final PrintStream out;
+  private final List<ReportOptions> parameterSets;
+  private final List<SummaryAggregate> summaries = new ArrayList<SummaryAggregate>();
+
+  public SweepReportGenerator(PrintStream out, List<ReportOptions> parameterSets) {
+    this.out = out;
+    this.parameterSets = parameterSets;
+    for (ReportOptions options : parameterSets) {
+      CostModel costModel = new CostModel(options.getCyclomaticMultiplier(),
+          options.getGlobalMultiplier(), options.getConstructorMultiplier());
+      summaries.add(new SummaryAggregate(costModel, options.getMaxExcellentCost(),
+          options.getMaxAcceptableCost(), options.getWorstOffenderCount()));
+    }
+  }
+
+  /**
+   * Parses sets of parameters such as {@code "1,10,1 2,10,1,50,100"}: the
+   * cyclomatic, global and constructor multipliers, and optionally the highest
+   * excellent and acceptable costs, of each set. Sets are separated by spaces.
+   *
+   * @param defaults the options which the sets do not give.
+   * @throws IllegalArgumentException if a set is malformed.
+   */
+  public static List<ReportOptions> parseParameterSets(String parameterSets,
+      ReportOptions defaults) {
+    List<ReportOptions> result = new ArrayList<ReportOptions>();
+    for (String parameterSet : parameterSets.trim().split("\\s+")) {
+      String[] values = parameterSet.split(",");
+      if (values.length != 3 && values.length != 5) {
+        throw new IllegalArgumentException("Expected cyclomatic,global,constructor"
+            + "[,maxExcellentCost,maxAcceptableCost] but got " + parameterSet);
+      }
+      try {
+        result.add(new ReportOptions(Double.parseDouble(values[0]),
+            Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+            values.length == 5 ? Integer.parseInt(values[3]) : defaults.getMaxExcellentCost(),
+            values.length == 5 ? Integer.parseInt(values[4]) : defaults.getMaxAcceptableCost(),
+            defaults.getWorstOffenderCount(), defaults.getMaxMethodCount(),
+            defaults.getMaxLineCount(), defaults.getPrintDepth(), defaults.getMinCost(),
+            defaults.getSrcFileLineUrl(), defaults.getSrcFileUrl()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Not a number in " + parameterSet);
+      }
+    }
+    return result;
+  }
+
+  public void printHeader() {
+  }
+
+  public void addClassCost(ClassCost classCost) {
+    for (SummaryAggregate summary : summaries) {
+      summary.addClassCost(classCost);
+    }
+  }
+
+  public List<SummaryAggregate> getSummaries() {
+    return summaries;
+  }
+
+  public void printFooter() {
+    out.printf("%10s %7s %11s %10s %11s %8s %10s %6s %10s %s%n", "cyclomatic", "global",
+        "constructor", "excellent<", "acceptable<", "overall", "excellent", "good",
+        "needs work", "worst offender");
+    for (int i = 0; i < summaries.size(); i++) {
+      ReportOptions options = parameterSets.get(i);
+      SummaryAggregate summary = summaries.get(i);
+      List<ClassCost> worstOffenders = summary.getWorstOffenders();
+      out.printf("%10.2f %7.2f %11.2f %10d %11d %8d %10d %6d %10d %s%n",
+          options.getCyclomaticMultiplier(), options.getGlobalMultiplier(),
+          options.getConstructorMultiplier(), options.getMaxExcellentCost(),
+          options.getMaxAcceptableCost(), summary.getOverall(), summary.getExcellentCount(),
+          summary.getGoodCount(), summary.getNeedsWorkCount(),
+          worstOffenders.isEmpty() ? "" : worstOffenders.get(0).getClassName());
+    }
+  }
+
+}
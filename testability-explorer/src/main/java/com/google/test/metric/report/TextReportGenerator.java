@@ -17,6 +17,7 @@
 package com.google.test.metric.report;
 
 import java.io.PrintStream;
+import java.util.List;
 
 import com.google.test.metric.ClassCost;
 import com.google.test.metric.CostModel;
@@ -37,11 +38,18 @@ public class TextReportGenerator extends SummaryReportModel implements ReportGen
   }
 
   public void printSummary() {
-    int total = costs.size();
+    int total = getClassCount();
+    int excellentCount = getExcellentCount();
+    int goodCount = getGoodCount();
+    int needsWorkCount = getNeedsWorkCount();
+    int truncatedCount = getTruncatedCount();
     out.printf("      Analyzed classes: %5d%n", total);
     out.printf(" Excellent classes (.): %5d %5.1f%%%n", excellentCount, 100f * excellentCount / total);
     out.printf("      Good classes (=): %5d %5.1f%%%n", goodCount, 100f * goodCount / total);
     out.printf("Needs work classes (@): %5d %5.1f%%%n", needsWorkCount, 100f * needsWorkCount / total);
+    if (truncatedCount > 0) {
+      out.printf(" Truncated classes (!): %5d %5.1f%%%n", truncatedCount, 100f * truncatedCount / total);
+    }
     PieGraph graph = new PieGraph(50, new CharMarker('.', '=', '@'));
     String chart = graph.render(excellentCount, goodCount, needsWorkCount);
     out.printf("             Breakdown: [%s]%n", chart);
@@ -59,6 +67,7 @@ public class TextReportGenerator extends SummaryReportModel implements ReportGen
         }
       }
     });
+    List<Integer> costs = getCosts();
     float[] values = new float[costs.size()];
     int i = 0;
     for (int cost : costs) {
@@ -73,8 +82,8 @@ public class TextReportGenerator extends SummaryReportModel implements ReportGen
     out.println();
     out.println("Highest Cost");
     out.println("============");
-    for (ClassCost cost : worstOffenders) {
-      out.println(cost);
+    for (ClassCost cost : getWorstOffenderClasses()) {
+      out.println(cost.isTruncated() ? cost + " (!)" : cost);
     }
   }
 
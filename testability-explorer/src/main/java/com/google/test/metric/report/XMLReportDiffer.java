@@ -6,6 +6,8 @@ import static com.google.test.metric.report.XMLReportGenerator.CLASS_NODE;
 import static com.google.test.metric.report.XMLReportGenerator.METHOD_NAME_ATTRIBUTE;
 import static com.google.test.metric.report.XMLReportGenerator.METHOD_OVERALL_COST_ATTRIBUTE;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,12 +25,140 @@ import org.w3c.dom.NodeList;
 /**
  * Calculate the differences between classes and methods in two XML
  * testability reports.
+ * <p>
+ * Reports which list their classes in the order of their names, as the
+ * {@link XMLReportGenerator} writes them, can be compared as they are read,
+ * in memory which does not grow with the size of the reports.
  *
  * @author alexeagle@google.com (Alex Eagle)
  */
 public class XMLReportDiffer {
   Logger logger = Logger.getLogger(XMLReportDiffer.class.getCanonicalName());
 
+  /** A class of a report, with the cost of the class and of each of its methods. */
+  public static class ReportedClass {
+    private final String className;
+    private final Integer cost;
+    private final Map<String, Integer> methodCosts;
+
+    public ReportedClass(String className, Integer cost, Map<String, Integer> methodCosts) {
+      this.className = className;
+      this.cost = cost;
+      this.methodCosts = methodCosts;
+    }
+
+    public String getClassName() {
+      return className;
+    }
+
+    public Integer getCost() {
+      return cost;
+    }
+
+    public Map<String, Integer> getMethodCosts() {
+      return methodCosts;
+    }
+  }
+
+  /** The classes of a report, one at a time, in the order of their names. */
+  public interface ClassSource {
+    /**
+     * @return the next class, or {@code null} after the last one.
+     */
+    ReportedClass next() throws IOException;
+  }
+
+  /**
+   * Compares two XML reports as they are read.
+   *
+   * @throws IllegalArgumentException if either report does not list its
+   *         classes in the order of their names.
+   */
+  public Diff diff(Reader oldReport, Reader newReport) throws IOException {
+    XMLReportReader oldClasses = new XMLReportReader(oldReport);
+    try {
+      XMLReportReader newClasses = new XMLReportReader(newReport);
+      try {
+        return diff(oldClasses, newClasses);
+      } finally {
+        newClasses.close();
+      }
+    } finally {
+      oldClasses.close();
+    }
+  }
+
+  /**
+   * Merges the classes of both reports by their names, and keeps only the
+   * differences.
+   *
+   * @throws IllegalArgumentException if either report does not list its
+   *         classes in the order of their names.
+   */
+  public Diff diff(ClassSource oldClasses, ClassSource newClasses) throws IOException {
+    List<Diff.ClassDiff> result = new LinkedList<Diff.ClassDiff>();
+    ReportedClass oldClass = next(oldClasses, null);
+    ReportedClass newClass = next(newClasses, null);
+    while (oldClass != null || newClass != null) {
+      int order;
+      if (oldClass == null) {
+        order = 1;
+      } else if (newClass == null) {
+        order = -1;
+      } else {
+        order = oldClass.getClassName().compareTo(newClass.getClassName());
+      }
+      ReportedClass removed = order <= 0 ? oldClass : null;
+      ReportedClass added = order >= 0 ? newClass : null;
+      String className = (removed != null ? removed : added).getClassName();
+      Integer oldCost = removed == null ? null : removed.getCost();
+      Integer newCost = added == null ? null : added.getCost();
+      List<Diff.MethodDiff> methodDiffs = diffMethods(removed, added);
+      if (!methodDiffs.isEmpty() || different(oldCost, newCost)) {
+        result.add(new Diff.ClassDiff(className, oldCost, newCost, methodDiffs));
+      }
+      if (removed != null) {
+        oldClass = next(oldClasses, removed);
+      }
+      if (added != null) {
+        newClass = next(newClasses, added);
+      }
+    }
+    return new Diff(result);
+  }
+
+  private ReportedClass next(ClassSource classes, ReportedClass previous) throws IOException {
+    ReportedClass next = classes.next();
+    if (next != null && previous != null
+        && next.getClassName().compareTo(previous.getClassName()) <= 0) {
+      throw new IllegalArgumentException("Class " + next.getClassName() + " follows "
+          + previous.getClassName() + ", but the classes of a report must be ordered by name");
+    }
+    return next;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Diff.MethodDiff> diffMethods(ReportedClass oldClass, ReportedClass newClass) {
+    List<Diff.MethodDiff> result = new LinkedList<Diff.MethodDiff>();
+    Map<String, Integer> oldMethodCosts =
+        oldClass == null ? Collections.EMPTY_MAP : oldClass.getMethodCosts();
+    Map<String, Integer> newMethodCosts =
+        newClass == null ? Collections.EMPTY_MAP : newClass.getMethodCosts();
+    for (Map.Entry<String, Integer> oldMethod : oldMethodCosts.entrySet()) {
+      Integer newCost = newMethodCosts.get(oldMethod.getKey());
+      if (different(oldMethod.getValue(), newCost)) {
+        result.add(new Diff.MethodDiff(oldMethod.getKey(), oldMethod.getValue(), newCost));
+      }
+    }
+    for (Map.Entry<String, Integer> newMethod : newMethodCosts.entrySet()) {
+      if (!oldMethodCosts.containsKey(newMethod.getKey())
+          && different(null, newMethod.getValue())) {
+        result.add(new Diff.MethodDiff(newMethod.getKey(), null, newMethod.getValue()));
+      }
+    }
+    return result;
+  }
+
   public Diff diff(Document oldDoc, Document newDoc) {
     List<Diff.ClassDiff> result = new LinkedList<Diff.ClassDiff>();
 
@@ -17,6 +17,7 @@ package com.google.test.metric.report;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.xml.sax.ContentHandler;
@@ -28,42 +29,104 @@ import com.google.test.metric.CostModel;
 import com.google.test.metric.MethodCost;
 import com.google.test.metric.ViolationCost;
 
+/**
+ * Writes the worst offending classes and the summary of all classes as XML,
+ * once all classes have been added. In the mode which writes all classes,
+ * each class is written as soon as it is added instead, and the summary
+ * follows the classes in a {@code summary} element, so that the report of
+ * any number of classes is written in constant memory.
+ */
 public class XMLReportGenerator extends SummaryReportModel implements ReportGenerator {
 
   private final ContentHandler out;
   private final CostModel costModel;
+  private final boolean allClasses;
   public static final String CLASS_NODE = "class";
   public static final String CLASS_NAME_ATTRIBUTE = ClassCost.CLASS_NAME;
   public static final String CLASS_COST_ATTRIBUTE = "cost";
   public static final String METHOD_NODE = "method";
   public static final String METHOD_NAME_ATTRIBUTE = MethodCost.METHOD_NAME_ATTRIBUTE;
   public static final String METHOD_OVERALL_COST_ATTRIBUTE = "overall";
+  public static final String SUMMARY_NODE = "summary";
 
   public XMLReportGenerator(ContentHandler out, CostModel costModel, int maxExcellentCost,
       int maxAcceptableCost, int worstOffenderCount) {
+    this(out, costModel, maxExcellentCost, maxAcceptableCost, worstOffenderCount, false);
+  }
+
+  /**
+   * @param allClasses write every class as it is added, which must be in the
+   *          order of their names, rather than the worst offenders at the end.
+   */
+  public XMLReportGenerator(ContentHandler out, CostModel costModel, int maxExcellentCost,
+      int maxAcceptableCost, int worstOffenderCount, boolean allClasses) {
     super(costModel, maxExcellentCost, maxAcceptableCost, worstOffenderCount);
     this.out = out;
     this.costModel = costModel;
+    this.allClasses = allClasses;
   }
 
   public XMLReportGenerator(ContentHandler out, CostModel costModel, ReportOptions options) {
+    this(out, costModel, options, false);
+  }
+
+  public XMLReportGenerator(ContentHandler out, CostModel costModel, ReportOptions options,
+      boolean allClasses) {
     this(out, costModel, options.getMaxExcellentCost(),
-        options.getMaxAcceptableCost(), options.getWorstOffenderCount());
+        options.getMaxAcceptableCost(), options.getWorstOffenderCount(), allClasses);
   }
 
   public void printHeader() {
+    if (allClasses) {
+      try {
+        out.startDocument();
+        startElement("testability", new HashMap<String, Object>());
+      } catch (SAXException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Override
+  public void addClassCost(ClassCost classCost) {
+    super.addClassCost(classCost);
+    if (allClasses) {
+      try {
+        writeCost(classCost);
+      } catch (SAXException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private Map<String, Object> getSummary() {
+    Map<String, Object> values = new HashMap<String, Object>();
+    values.put("overall", getOverall());
+    values.put("excellent", getExcellentCount());
+    values.put("good", getGoodCount());
+    values.put("needsWork", getNeedsWorkCount());
+    if (getTruncatedCount() > 0) {
+      values.put(MethodCost.TRUNCATED_ATTRIBUTE, getTruncatedCount());
+    }
+    return values;
   }
 
   public void printFooter() {
     try {
+      if (allClasses) {
+        writeElement(SUMMARY_NODE, getSummary());
+        endElement("testability");
+        out.endDocument();
+        return;
+      }
       out.startDocument();
-      Map<String, Object> values = new HashMap<String, Object>();
-      values.put("overall", getOverall());
-      values.put("excellent", excellentCount);
-      values.put("good", goodCount);
-      values.put("needsWork", needsWorkCount);
-      startElement("testability", values);
-      for (ClassCost classCost : worstOffenders) {
+      startElement("testability", getSummary());
+      // By name, so that reports can be compared as they are read; see XMLReportDiffer.
+      Map<String, ClassCost> byName = new TreeMap<String, ClassCost>();
+      for (ClassCost classCost : getWorstOffenderClasses()) {
+        byName.put(classCost.getClassName(), classCost);
+      }
+      for (ClassCost classCost : byName.values()) {
         writeCost(classCost);
       }
       endElement("testability");
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import static com.google.test.metric.report.XMLReportGenerator.CLASS_COST_ATTRIBUTE;
+import static com.google.test.metric.report.XMLReportGenerator.CLASS_NAME_ATTRIBUTE;
+import static com.google.test.metric.report.XMLReportGenerator.CLASS_NODE;
+import static com.google.test.metric.report.XMLReportGenerator.METHOD_NAME_ATTRIBUTE;
+import static com.google.test.metric.report.XMLReportGenerator.METHOD_NODE;
+import static com.google.test.metric.report.XMLReportGenerator.METHOD_OVERALL_COST_ATTRIBUTE;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.test.metric.report.XMLReportDiffer.ReportedClass;
+
+/**
+ * Reads the classes of an XML report one at a time, with a pull parser, so
+ * that only the class being read is held in memory.
+ */
+public class XMLReportReader implements XMLReportDiffer.ClassSource {
+
+  private static final Logger logger = Logger.getLogger(XMLReportReader.class.getCanonicalName());
+
+  private final Reader reader;
+  private final XMLStreamReader in;
+
+  /**
+   * @param reader is closed along with this reader.
+   */
+  public XMLReportReader(Reader reader) throws IOException {
+    this.reader = reader;
+    try {
+      in = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+    } catch (XMLStreamException e) {
+      reader.close();
+      throw wrap(e);
+    }
+  }
+
+  public ReportedClass next() throws IOException {
+    try {
+      while (in.hasNext()) {
+        if (in.next() == XMLStreamConstants.START_ELEMENT
+            && in.getLocalName().equals(CLASS_NODE)) {
+          return readClass();
+        }
+      }
+      return null;
+    } catch (XMLStreamException e) {
+      throw wrap(e);
+    }
+  }
+
+  private ReportedClass readClass() throws XMLStreamException {
+    String className = in.getAttributeValue(null, CLASS_NAME_ATTRIBUTE);
+    Integer cost = parse(in.getAttributeValue(null, CLASS_COST_ATTRIBUTE), className);
+    Map<String, Integer> methodCosts = new LinkedHashMap<String, Integer>();
+    int depth = 1;
+    while (depth > 0) {
+      int event = in.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (depth == 1 && in.getLocalName().equals(METHOD_NODE)) {
+          String methodName = in.getAttributeValue(null, METHOD_NAME_ATTRIBUTE);
+          methodCosts.put(methodName,
+              parse(in.getAttributeValue(null, METHOD_OVERALL_COST_ATTRIBUTE), methodName));
+        }
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    return new ReportedClass(className, cost, methodCosts);
+  }
+
+  private Integer parse(String value, String name) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(value);
+    } catch (NumberFormatException e) {
+      logger.log(Level.WARNING, String.format("Invalid cost attribute for %s", name), e);
+      return null;
+    }
+  }
+
+  /**
+   * Closes the underlying reader as well, which {@link XMLStreamReader#close()}
+   * does not.
+   */
+  public void close() throws IOException {
+    try {
+      in.close();
+    } catch (XMLStreamException e) {
+      throw wrap(e);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private IOException wrap(XMLStreamException e) {
+    IOException exception = new IOException(e.getMessage());
+    exception.initCause(e);
+    return exception;
+  }
+
+}
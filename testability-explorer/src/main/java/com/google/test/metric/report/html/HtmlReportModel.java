@@ -51,7 +51,7 @@ public class HtmlReportModel extends SummaryReportModel {
   }
 
   public int getTotal() {
-    return costs.size();
+    return getClassCount();
   }
 
   @Override
@@ -63,7 +63,8 @@ public class HtmlReportModel extends SummaryReportModel {
   public String getHistogram() {
     GradeCategories gradeCategories = new GradeCategories(maxExcellentCost, maxAcceptableCost);
     HistogramChartUrl histogramChartUrl =
-        gradeCategories.createHistogram(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT, costs, new Logarithmic());
+        gradeCategories.createHistogram(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT, getCosts(),
+            new Logarithmic());
     return histogramChartUrl.getHtml();
   }
 
@@ -80,7 +81,7 @@ public class HtmlReportModel extends SummaryReportModel {
     chart.setSize(400, 100);
     chart.setItemLabel("Excellent", "Good", "Needs Work");
     chart.setColors(GREEN, YELLOW, RED);
-    chart.setValues(excellentCount, goodCount, needsWorkCount);
+    chart.setValues(getExcellentCount(), getGoodCount(), getNeedsWorkCount());
     return chart.getHtml();
   }
   
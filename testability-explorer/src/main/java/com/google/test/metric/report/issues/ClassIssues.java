@@ -45,8 +45,9 @@ public class ClassIssues implements IssueHolder {
   public ClassIssues(String className, Integer totalCost) {
     this(className, totalCost,
         //TODO: we would like to inject the Queue, but the className and totalCost are per-instance
+        // The issues of a class are found by one thread, so they need only one stripe.
         new TriageIssuesQueue<Issue>(MIN_PERCENT_TO_DISPLAY, MAX_ISSUES_TO_DISPLAY_PER_CLASS,
-            new Issue.TotalCostComparator()));
+            new Issue.TotalCostComparator(), 1));
   }
 
   public ClassIssues(String className, Integer totalCost, Queue<Issue> issues) {
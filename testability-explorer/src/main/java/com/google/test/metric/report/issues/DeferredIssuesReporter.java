@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report.issues;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.google.test.metric.ClassCost;
+
+/**
+ * An {@link IssuesReporter} which only triages the classes while they are
+ * inspected, by their cost, and works out the issues of those which are the
+ * most important in the end. The issues of a class which a worse class pushes
+ * out of the queue are never worked out.
+ */
+public class DeferredIssuesReporter extends IssuesReporter {
+
+  /** A class which may be among the most important ones. */
+  static class Candidate implements IssueHolder {
+    private final ClassCost classCost;
+    private final int totalCost;
+
+    Candidate(ClassCost classCost, int totalCost) {
+      this.classCost = classCost;
+      this.totalCost = totalCost;
+    }
+
+    public boolean isEmpty() {
+      return false;
+    }
+
+    public float getTotalCost() {
+      return totalCost;
+    }
+
+    public String getClassName() {
+      return classCost.getClassName();
+    }
+  }
+
+  static class TotalCostComparator implements Comparator<Candidate> {
+    public int compare(Candidate candidate1, Candidate candidate2) {
+      return Float.compare(candidate1.getTotalCost(), candidate2.getTotalCost());
+    }
+  }
+
+  private final TriageIssuesQueue<Candidate> candidates;
+  private List<ClassIssues> mostImportantIssues;
+
+  /**
+   * @param minCost the cost a class must exceed to be reported.
+   * @param maxSize how many of the most important classes to report.
+   */
+  public DeferredIssuesReporter(float minCost, int maxSize, HypotheticalCostModel costModel) {
+    super(new LinkedList<ClassIssues>(), costModel);
+    candidates = new TriageIssuesQueue<Candidate>(minCost, maxSize, new TotalCostComparator());
+  }
+
+  @Override
+  public void inspectClass(ClassCost classCost) {
+    candidates.offer(new Candidate(classCost, costModel.computeClass(classCost)));
+    mostImportantIssues = null;
+  }
+
+  @Override
+  public List<ClassIssues> getMostImportantIssues() {
+    if (mostImportantIssues == null) {
+      mostImportantIssues = new ArrayList<ClassIssues>(candidates.size());
+      for (Candidate candidate : candidates.asList()) {
+        mostImportantIssues.add(determineIssues(candidate.classCost));
+      }
+    }
+    return mostImportantIssues;
+  }
+
+}
@@ -22,33 +22,55 @@ import com.google.test.metric.WeightedAverage;
  */
 public class HypotheticalCostModel {
 
+  /**
+   * The weighted average of the total costs of the methods of the class which
+   * was asked about last. Each hypothetical change replaces one of them, so
+   * asking about every issue of a class is linear in its size.
+   */
+  private static class ClassAverage {
+    private final ClassCost classCost;
+    private final WeightedAverage average;
+
+    ClassAverage(ClassCost classCost, WeightedAverage average) {
+      this.classCost = classCost;
+      this.average = average;
+    }
+  }
+
   private final CostModel costModel;
+  private volatile ClassAverage last;
 
   @Inject
   public HypotheticalCostModel(CostModel costModel) {
     this.costModel = costModel;
   }
 
+  private WeightedAverage getAverage(ClassCost classCost) {
+    ClassAverage classAverage = last;
+    if (classAverage == null || classAverage.classCost != classCost) {
+      WeightedAverage average = costModel.createWeighedAverage();
+      for (MethodCost methodCost : classCost.getMethods()) {
+        average.addValue(costModel.computeOverall(methodCost.getTotalCost()));
+      }
+      classAverage = new ClassAverage(classCost, average);
+      last = classAverage;
+    }
+    return classAverage.average;
+  }
+
   private int computeClassWithoutMethod(ClassCost classCost, MethodCost adjustedMethod,
                                         Cost replacementCost) {
-
-    WeightedAverage average = costModel.createWeighedAverage();
-    for (MethodCost methodCost : classCost.getMethods()) {
-      Cost cost = (adjustedMethod == methodCost ? replacementCost : methodCost.getTotalCost());
-      average.addValue(costModel.computeOverall(cost));
-    }
-    return (int) average.getAverage();
+    double average = getAverage(classCost).getAverageReplacing(
+        costModel.computeOverall(adjustedMethod.getTotalCost()),
+        costModel.computeOverall(replacementCost));
+    return (int) average;
   }
 
   public float computeContributionFromIssue(ClassCost classCost, MethodCost violationMethodCost,
                                             ViolationCost violationCost) {
     Cost adjustedCost = violationMethodCost.getTotalCost().add(violationCost.getCost().negate());
-    WeightedAverage average = costModel.createWeighedAverage();
-    for (MethodCost methodCost : classCost.getMethods()) {
-      Cost cost = (violationMethodCost == methodCost ? adjustedCost : methodCost.getTotalCost());
-      average.addValue(costModel.computeOverall(cost));
-    }
-    return 1 - (int) average.getAverage() / (float) computeClass(classCost);
+    return 1 - computeClassWithoutMethod(classCost, violationMethodCost, adjustedCost)
+        / (float) computeClass(classCost);
   }
 
   public float computeContributionFromMethod(ClassCost classCost, MethodCost violationMethodCost) {
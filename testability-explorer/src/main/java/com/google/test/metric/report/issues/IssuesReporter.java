@@ -48,7 +48,7 @@ public class IssuesReporter {
 
   private static final Logger logger = Logger.getLogger(IssuesReporter.class.getCanonicalName());
   private final Queue<ClassIssues> mostImportantIssues;
-  private final HypotheticalCostModel costModel;
+  protected final HypotheticalCostModel costModel;
 
   public IssuesReporter(Queue<ClassIssues> mostImportantIssues, HypotheticalCostModel costModel) {
     this.mostImportantIssues = mostImportantIssues;
@@ -15,42 +15,43 @@
  */
 package com.google.test.metric.report.issues;
 
-import com.google.common.collect.ForwardingQueue;
-import com.google.common.collect.Lists;
-
+import java.util.AbstractQueue;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+
+import com.google.test.metric.collection.TopK;
 
 /**
  * A queue of IssueHolders that only keeps issues that are important enough to show, and sorts
- * them in order of importance.
+ * them in order of importance. Several threads may offer issues at once; see {@link TopK}.
  *
  * <b>Important:</b> the semantics of this class are only preserved if elements are enqueued
  * using the {@code offer()} method.
  *
  * @author alexeagle@google.com (Alex Eagle)
  */
-public class TriageIssuesQueue<I extends IssueHolder> extends ForwardingQueue<I> {
+public class TriageIssuesQueue<I extends IssueHolder> extends AbstractQueue<I> {
   /**
-   * The delegated queue, in which issues are stored with the lowest priority first.
+   * The most important issues, ordered by the comparator, with the lowest priority first.
    */
-  private final Queue<I> delegate;
+  private final TopK<I> topK;
   private final float minCost;
-  private final int maxSize;
-  private final Comparator<I> comparator;
 
   public TriageIssuesQueue(float minCost, int maxSize, Comparator<I> comparator) {
     this.minCost = minCost;
-    this.maxSize = maxSize;
-    this.comparator = comparator;
-    delegate = new PriorityQueue<I>(maxSize, comparator);
+    topK = new TopK<I>(maxSize, comparator);
   }
 
-  @Override
-  protected Queue<I> delegate() {
-    return delegate;
+  /**
+   * @param stripeCount how many threads may offer at once without waiting for
+   *          each other, see {@link TopK}; 1 for a queue used by one thread.
+   */
+  public TriageIssuesQueue(float minCost, int maxSize, Comparator<I> comparator,
+      int stripeCount) {
+    this.minCost = minCost;
+    topK = new TopK<I>(maxSize, comparator, stripeCount);
   }
 
   @Override
@@ -58,13 +59,45 @@ public class TriageIssuesQueue<I extends IssueHolder> extends ForwardingQueue<I>
     if (issue.getTotalCost() <= minCost) {
       return false;
     }
-    if (size() == maxSize) {
-      if (comparator.compare(issue, peek()) < 0) {
-        return false;
-      }
-      poll();
-    }
-    return super.offer(issue);
+    return topK.offer(issue);
+  }
+
+  @Override
+  public boolean add(I issue) {
+    return offer(issue);
+  }
+
+  /**
+   * Offers all issues kept by {@code other}, such as those of another thread or shard.
+   */
+  public void merge(TriageIssuesQueue<? extends I> other) {
+    topK.merge(other.topK);
+  }
+
+  /**
+   * @return the issue with the lowest priority.
+   */
+  public I peek() {
+    return topK.peekLeast();
+  }
+
+  public I poll() {
+    return topK.pollLeast();
+  }
+
+  @Override
+  public boolean remove(Object issue) {
+    return topK.remove(issue);
+  }
+
+  @Override
+  public Iterator<I> iterator() {
+    return Collections.unmodifiableList(asList()).iterator();
+  }
+
+  @Override
+  public int size() {
+    return topK.size();
   }
 
   /**
@@ -73,13 +106,6 @@ public class TriageIssuesQueue<I extends IssueHolder> extends ForwardingQueue<I>
    * @return The list of elements in this queue
    */
   public List<I> asList() {
-    // Stupid PriorityQueue doesn't provide an ordered iterator, and it only guarantees that the
-    // topmost element is in the right order
-    PriorityQueue<I> copy = new PriorityQueue<I>(delegate);
-    List<I> asList = Lists.newLinkedList();
-    while (!copy.isEmpty()) {
-      asList.add(0, copy.poll());
-    }
-    return asList;
+    return topK.asList();
   }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static com.google.classpath.RegExpResourceFilter.ANY;
+import static com.google.classpath.RegExpResourceFilter.ENDS_WITH_CLASS;
+import static java.util.Arrays.asList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPath;
+import com.google.classpath.ClassPathFactory;
+import com.google.classpath.RegExpResourceFilter;
+import com.google.test.metric.report.ReportGenerator;
+
+public class AnalysisPipelineTest extends TestCase {
+
+  private static final String CLASSES = "target/classes";
+
+  /** Classes so many that they do not fit in the window of a queue of one. */
+  private static final int CLASS_COUNT = 6 * AnalysisPipeline.EARLY_PER_QUEUE_SLOT;
+
+  private final ClassPath classPath = new ClassPathFactory().createFromPath(CLASSES);
+  private final ClassRepository repo =
+      new JavaClassRepository(new ClassPathFactory().createFromJVM());
+  private final PrintStream err = new PrintStream(new ByteArrayOutputStream());
+  private final RegExpWhiteList whiteList = new RegExpWhiteList("java.");
+  private final MetricComputer computer = new MetricComputer(repo, err, whiteList, 1);
+  private final AnalysisPipeline pipeline = new AnalysisPipeline(classPath, repo, computer, 2, 1);
+  private final List<String> names = new ArrayList<String>();
+  private final List<String> resources = new ArrayList<String>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    SortedSet<String> classNames = new TreeSet<String>(JavaTestabilityRunner.BY_CLASS_NAME);
+    classNames.addAll(asList(classPath.findResources("com/google/test/metric",
+        new RegExpResourceFilter(ANY, ENDS_WITH_CLASS))));
+    for (String resource : classNames) {
+      if (resources.size() == CLASS_COUNT) {
+        break;
+      }
+      resources.add(resource);
+      names.add(resource.replace(".class", "").replace("/", ".").replace('$', '.'));
+    }
+    assertEquals(CLASS_COUNT, names.size());
+  }
+
+  public void testScheduleAppliesWithinWindows() throws Exception {
+    List<Integer> schedule = new ArrayList<Integer>();
+    for (int i = 24; i >= 0; i--) {
+      if (i != 3) {
+        schedule.add(i);
+      }
+    }
+    pipeline.setSchedule(schedule);
+    assertEquals(10, pipeline.getWindow());
+    assertEquals(asList(9, 8, 7, 6, 5, 4, 2, 1, 0, 3, 19, 18, 17, 16, 15, 14, 13, 12, 11, 10,
+        24, 23, 22, 21, 20), pipeline.readOrder(25));
+  }
+
+  public void testReportsInOrderWhenScheduledBeyondTheWindow() throws Exception {
+    List<Integer> schedule = new ArrayList<Integer>();
+    for (int i = 0; i < names.size(); i++) {
+      schedule.add(i);
+    }
+    Collections.reverse(schedule);
+    pipeline.setSchedule(schedule);
+    List<String> expected = unwindowedReport();
+    assertTrue(expected.size() > pipeline.getWindow());
+    assertEquals(expected, report(pipeline));
+  }
+
+  public void testReportsInOrderWhenStreamedBeyondTheWindow() throws Exception {
+    pipeline.setStreamer(new ClassPathStreamer(CLASSES));
+    List<String> expected = unwindowedReport();
+    assertTrue(expected.size() > pipeline.getWindow());
+    assertEquals(expected, report(pipeline));
+  }
+
+  /** The classes in report order, all of which fit in the window. */
+  private List<String> unwindowedReport() {
+    return report(new AnalysisPipeline(classPath, repo, computer, 1, CLASS_COUNT));
+  }
+
+  private List<String> report(AnalysisPipeline pipeline) {
+    final List<String> reported = new ArrayList<String>();
+    pipeline.run(names, resources, null, new ReportGenerator() {
+      public void printHeader() {
+      }
+
+      public void addClassCost(ClassCost classCost) {
+        reported.add(classCost.getClassName());
+      }
+
+      public void printFooter() {
+      }
+    }, err);
+    return reported;
+  }
+
+}
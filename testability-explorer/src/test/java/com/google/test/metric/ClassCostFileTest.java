@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+public class ClassCostFileTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("results", ".bin");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    super.tearDown();
+  }
+
+  private ClassCost classCost(String className, String fileName, int cyclomatic) {
+    MethodCost methodCost = new MethodCost(className, "void a()", 1, false, false, false);
+    methodCost.addCostSource(new CyclomaticCost(new SourceLocation(fileName, 2),
+        Cost.cyclomatic(cyclomatic)));
+    methodCost.link();
+    return new ClassCost(className, asList(methodCost));
+  }
+
+  private void write(ClassCost... classCosts) throws IOException {
+    ClassCostWriter writer = new ClassCostWriter(new FileOutputStream(file), new Shard(1, 3));
+    for (int i = 0; i < classCosts.length; i++) {
+      writer.write(i * 3 + 1, classCosts[i]);
+    }
+    writer.close();
+  }
+
+  public void testReadsAnyClassByName() throws Exception {
+    write(classCost("b", "Shared.java", 2), classCost("a", "Shared.java", 3),
+        classCost("c", "C.java", 4));
+    ClassCostFile results = new ClassCostFile(file);
+    try {
+      assertEquals(new Shard(1, 3).toString(), results.getShard().toString());
+      assertTrue(results.hasDetails());
+      assertEquals(asList("a", "b", "c"), new ArrayList<String>(results.getClassNames()));
+      assertEquals(4, results.getSequence("a"));
+      ClassCost c = results.read("c");
+      assertEquals(Cost.cyclomatic(4), c.getMethods().get(0).getTotalCost());
+      // The name of the file was first written with the class b.
+      ClassCost a = results.read("a");
+      assertEquals("Shared.java",
+          a.getMethods().get(0).getViolationCosts().get(0).getLocation().getFile());
+      assertNull(results.read("d"));
+    } finally {
+      results.close();
+    }
+  }
+
+  public void testIncompleteFileIsRejected() throws Exception {
+    write(classCost("a", "A.java", 2));
+    RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+    truncated.setLength(truncated.length() - 1);
+    truncated.close();
+    assertTrue(ClassCostFile.isResultsFile(file));
+    try {
+      new ClassCostFile(file);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}
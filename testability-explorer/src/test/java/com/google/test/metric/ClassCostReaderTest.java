@@ -0,0 +1,218 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class ClassCostReaderTest extends TestCase {
+
+  static class Global {
+    static Global instance = new Global();
+    Global next;
+    int count;
+  }
+
+  static class Costly {
+    private final Helper helper = new Helper();
+
+    int work(int i) {
+      Global.instance.count++;
+      return i > 0 ? helper.twice(i) : Global.instance.next.next.count;
+    }
+
+    int more(int i) {
+      return helper.twice(i + 1);
+    }
+  }
+
+  static class Helper {
+    final int twice(int i) {
+      return i > 2 ? i * 2 : i;
+    }
+  }
+
+  private final ClassRepository repository =
+      new JavaClassRepository(new ClassPathFactory().createFromJVM());
+  private final MetricComputer computer =
+      new MetricComputer(repository, null, new RegExpWhiteList("java."), 2);
+
+  private ClassCost roundTrip(ClassCost classCost) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ClassCostWriter writer = new ClassCostWriter(bytes, Shard.ALL);
+    writer.write(7, classCost);
+    writer.close();
+    ClassCostReader reader = new ClassCostReader(new ByteArrayInputStream(bytes.toByteArray()));
+    ClassCost read = reader.read();
+    assertEquals(7, reader.getSequence());
+    assertNull(reader.read());
+    return read;
+  }
+
+  public void testAnalyzedClassReadsBackTheSame() throws Exception {
+    ClassCost classCost = computer.compute(Costly.class.getCanonicalName());
+    ClassCost read = roundTrip(classCost);
+    assertEquals(classCost.getClassName(), read.getClassName());
+    assertEquals(describe(classCost), describe(read));
+    assertTrue(describe(read), describe(read).contains("GlobalCost Line 42: int count"));
+  }
+
+  public void testSharedCalledMethodsStayShared() throws Exception {
+    computer.setShareCalledCosts(true);
+    ClassCost read = roundTrip(computer.compute(Costly.class.getCanonicalName()));
+    assertSame(calledBy(read.getMethodCost("int work(int)")),
+        calledBy(read.getMethodCost("int more(int)")));
+  }
+
+  public void testEveryKindOfCostReadsBackTheSame() throws Exception {
+    MethodCost called = new MethodCost("B", "B()", 2, true, false, false);
+    called.addCostSource(new LoDViolation(new SourceLocation("B.java", 3), "int x()",
+        Cost.lod(2), 2));
+    MethodCost caller = new MethodCost("A", "void a()", 5, false, true, false);
+    caller.addCostSource(new ConstructorInvocationCost(new SourceLocation(null, 6), called,
+        Reason.IMPLICIT_CONSTRUCTOR, Cost.cyclomatic(1)));
+    ClassCost classCost = new ClassCost("A", asList(caller));
+    assertEquals(describe(classCost), describe(roundTrip(classCost)));
+    assertTrue(describe(classCost), describe(classCost).contains("int x()[distance=2]"));
+  }
+
+  public void testTotalsWithoutCostSourcesReadBackTheSame() throws Exception {
+    MethodCost memoized = new MethodCost("A", "void a()", 3, false, false, false);
+    MethodCost original = new MethodCost("B", "void a()", 3, false, false, false);
+    original.addCostSource(new CyclomaticCost(new SourceLocation("B.java", 4),
+        Cost.cyclomatic(2)));
+    memoized.restore(original.getDirectCost(), original.getDependentCost(),
+        original.getConstructorDependentCost(), new ArrayList<ViolationCost>());
+    memoized.setTruncated(true);
+    ClassCost read = roundTrip(new ClassCost("A", asList(memoized)));
+    MethodCost readCost = read.getMethods().get(0);
+    assertEquals(Cost.cyclomatic(2), readCost.getTotalCost());
+    assertTrue(readCost.getViolationCosts().isEmpty());
+    assertTrue(readCost.isTruncated());
+    assertTrue(readCost.isLinked());
+  }
+
+  public void testTotalsOnlyLeaveOutTheCostSources() throws Exception {
+    ClassCost classCost = computer.compute(Costly.class.getCanonicalName());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ClassCostWriter writer = new ClassCostWriter(bytes, Shard.ALL, false);
+    writer.write(0, classCost);
+    writer.close();
+    ClassCostReader reader = new ClassCostReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertFalse(reader.hasDetails());
+    ClassCost read = reader.read();
+    for (MethodCost methodCost : classCost.getMethods()) {
+      MethodCost readCost = read.getMethodCost(methodCost.getMethodName());
+      assertEquals(methodCost.getTotalCost(), readCost.getTotalCost());
+      assertTrue(readCost.getViolationCosts().isEmpty());
+    }
+  }
+
+  public void testMergeRestoresTheOrderOfTheWholeAnalysis() throws Exception {
+    List<ClassCostReader> shards = asList(
+        shard(new Shard(1, 2), 1, "b", 2, "c"),
+        shard(new Shard(0, 2), 0, "a", 3, "d"));
+    AnalysisModel model = new AnalysisModel(null);
+    ClassCostReader.merge(shards, model);
+    List<String> names = new ArrayList<String>();
+    for (ClassCost classCost : model.getClassCosts()) {
+      names.add(classCost.getClassName());
+    }
+    assertEquals(asList("a", "b", "c", "d"), names);
+  }
+
+  public void testMergeNeedsEveryShardOnce() throws Exception {
+    try {
+      ClassCostReader.merge(asList(shard(new Shard(0, 2), 0, "a")), new AnalysisModel(null));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      ClassCostReader.merge(asList(shard(new Shard(0, 2), 0, "a"), shard(new Shard(0, 2), 1,
+          "b")), new AnalysisModel(null));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testNotAResultFile() throws Exception {
+    try {
+      new ClassCostReader(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * @param classes pairs of the sequence and the name of each class.
+   */
+  private ClassCostReader shard(Shard shard, Object... classes) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ClassCostWriter writer = new ClassCostWriter(bytes, shard);
+    for (int i = 0; i < classes.length; i += 2) {
+      writer.write((Integer) classes[i],
+          new ClassCost((String) classes[i + 1], new ArrayList<MethodCost>()));
+    }
+    writer.close();
+    return new ClassCostReader(new ByteArrayInputStream(bytes.toByteArray()));
+  }
+
+  private MethodCost calledBy(MethodCost methodCost) {
+    for (ViolationCost violation : methodCost.getViolationCosts()) {
+      if (violation instanceof MethodInvocationCost) {
+        return ((MethodInvocationCost) violation).getMethodCost();
+      }
+    }
+    throw new AssertionError(methodCost + " calls no method");
+  }
+
+  private String describe(ClassCost classCost) {
+    StringBuilder description = new StringBuilder();
+    for (MethodCost methodCost : classCost.getMethods()) {
+      describe(methodCost, "", description);
+    }
+    return description.toString();
+  }
+
+  private void describe(MethodCost methodCost, String indent, StringBuilder description) {
+    description.append(indent).append(methodCost.getClassName()).append(" ")
+        .append(methodCost.getAttributes()).append(" ").append(methodCost.getDirectCost())
+        .append(" / ").append(methodCost.getDependentCost()).append(" / ")
+        .append(methodCost.getConstructorDependentCost()).append("\n");
+    for (ViolationCost violation : methodCost.getViolationCosts()) {
+      description.append(indent).append("  ").append(violation.getClass().getSimpleName())
+          .append(" ").append(violation).append(" ").append(violation.getAttributes())
+          .append("\n");
+      if (violation instanceof MethodInvocationCost) {
+        describe(((MethodInvocationCost) violation).getMethodCost(), indent + "    ",
+            description);
+      }
+    }
+  }
+
+}
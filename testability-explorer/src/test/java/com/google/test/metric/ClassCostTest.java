@@ -17,6 +17,8 @@ package com.google.test.metric;
 
 import junit.framework.TestCase;
 
+import com.google.test.metric.report.SummaryAggregate;
+
 import java.util.ArrayList;
 import static java.util.Arrays.asList;
 import java.util.Collections;
@@ -81,4 +83,67 @@ public class ClassCostTest extends TestCase {
     assertEquals("", classCost0.getPackageName());
   }
 
+  public void testOverallCostIsComputedOncePerCostModel() throws Exception {
+    final int[] computed = new int[1];
+    CostModel counting = new CostModel() {
+      @Override
+      int computeClassCost(ClassCost classCost) {
+        computed[0]++;
+        return super.computeClassCost(classCost);
+      }
+    };
+    List<ClassCost> classCosts = new ArrayList<ClassCost>(asList(classCost1, classCost0,
+        classCost2));
+    Collections.sort(classCosts, new ClassCost.CostComparator(counting));
+    assertEquals(2, counting.computeClass(classCost2));
+    assertEquals(3, computed[0]);
+
+    assertEquals(4, new CostModel(2, 1, 1).computeClass(classCost2));
+    assertEquals(2, counting.computeClass(classCost2));
+    assertEquals(3, computed[0]);
+  }
+
+  public void testRemembersTheOverallCostOfTheLastFewCostModels() throws Exception {
+    final int[] computed = new int[1];
+    CostModel counting = new CostModel() {
+      @Override
+      int computeClassCost(ClassCost classCost) {
+        computed[0]++;
+        return super.computeClassCost(classCost);
+      }
+    };
+    counting.computeClass(classCost2);
+    for (int i = 1; i < ClassCost.MAX_SCORES; i++) {
+      new CostModel().computeClass(classCost2);
+    }
+    counting.computeClass(classCost2);
+    assertEquals(1, computed[0]);
+    new CostModel().computeClass(classCost2);
+    counting.computeClass(classCost2);
+    assertEquals(2, computed[0]);
+  }
+
+  public void testSummaryScoresEachClassOnceForManyCostModels() throws Exception {
+    final int[] computed = new int[1];
+    CostModel counting = new CostModel() {
+      @Override
+      int computeClassCost(ClassCost classCost) {
+        computed[0]++;
+        return super.computeClassCost(classCost);
+      }
+    };
+    SummaryAggregate summary = new SummaryAggregate(counting, 50, 100, 2);
+    for (ClassCost classCost : asList(classCost1, classCost0, classCost2)) {
+      summary.addClassCost(classCost);
+      // As a sweep with more sets than a class remembers scores for.
+      for (int i = 0; i < ClassCost.MAX_SCORES; i++) {
+        new CostModel().computeClass(classCost0);
+        new CostModel().computeClass(classCost1);
+        new CostModel().computeClass(classCost2);
+      }
+    }
+    assertEquals(asList(classCost2, classCost1), summary.getWorstOffenders());
+    assertEquals(3, computed[0]);
+  }
+
 }
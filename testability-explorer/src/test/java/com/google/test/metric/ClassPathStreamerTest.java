@@ -0,0 +1,86 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+public class ClassPathStreamerTest extends TestCase {
+
+  private final List<String> resources = new ArrayList<String>();
+  private final List<Integer> sizes = new ArrayList<Integer>();
+  private final ClassPathStreamer.Handler handler = new ClassPathStreamer.Handler() {
+    public void handle(String resource, byte[] classBytes) {
+      resources.add(resource);
+      sizes.add(classBytes.length);
+    }
+  };
+  private File jar;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    jar = File.createTempFile("streamer", ".jar");
+    ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+    addEntry(zip, "b/Second.class", 2);
+    addEntry(zip, "b/", 0);
+    addEntry(zip, "a/First.class", 1);
+    addEntry(zip, "a/readme.txt", 3);
+    zip.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    jar.delete();
+    super.tearDown();
+  }
+
+  private void addEntry(ZipOutputStream zip, String name, int size) throws Exception {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(new byte[size]);
+    zip.closeEntry();
+  }
+
+  public void testJarIsReadInArchiveOrder() throws Exception {
+    new ClassPathStreamer(jar.getPath()).stream(handler);
+    assertEquals(asList("b/Second.class", "a/First.class"), resources);
+    assertEquals(asList(2, 1), sizes);
+  }
+
+  public void testFirstOccurrenceWins() throws Exception {
+    new ClassPathStreamer(jar.getPath() + File.pathSeparator + jar.getPath()).stream(handler);
+    assertEquals(asList("b/Second.class", "a/First.class"), resources);
+  }
+
+  public void testDirectoryIsReadInNameOrder() throws Exception {
+    new ClassPathStreamer(TestabilityRunnerTest.CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES)
+        .stream(handler);
+    assertFalse(resources.isEmpty());
+    List<String> sorted = new ArrayList<String>(resources);
+    Collections.sort(sorted);
+    assertEquals(sorted, resources);
+  }
+
+}
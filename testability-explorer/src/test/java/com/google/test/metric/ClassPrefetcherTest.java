@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class ClassPrefetcherTest extends TestCase {
+
+  static class Far {
+    static void go() {
+    }
+  }
+
+  static class Leaf {
+    static void go() {
+      Far.go();
+    }
+  }
+
+  static class Callee {
+    static void go() {
+      Leaf.go();
+    }
+  }
+
+  static class Caller {
+    void call() {
+      Callee.go();
+      Callee.go();
+    }
+  }
+
+  static class Fan {
+    void call() {
+      Far.go();
+      Leaf.go();
+      Callee.go();
+    }
+  }
+
+  private final JavaClassRepository repository =
+      new JavaClassRepository(new ClassPathFactory().createFromJVM());
+  private final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+  private final ClassRepository recordingRepository = new ClassRepository() {
+    public ClassInfo getClass(String clazzName) {
+      loaded.add(clazzName);
+      return repository.getClass(clazzName);
+    }
+  };
+
+  public void testLoadsCalledClassesUpToDepth() throws Exception {
+    ClassPrefetcher prefetcher = new ClassPrefetcher(recordingRepository,
+        new RegExpWhiteList("java."), 2, 2);
+    prefetcher.prefetch(repository.getClass(Caller.class.getCanonicalName()));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (prefetcher.getLoaded() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    prefetcher.shutdown();
+    assertEquals(asList(Callee.class.getCanonicalName(), Leaf.class.getCanonicalName()), loaded);
+    assertEquals(2, prefetcher.getRequested());
+  }
+
+  public void testDropsLoadsWhenTheQueueIsFull() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    ClassRepository blockingRepository = new ClassRepository() {
+      public ClassInfo getClass(String clazzName) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return repository.getClass(clazzName);
+      }
+    };
+    ClassPrefetcher prefetcher = new ClassPrefetcher(blockingRepository,
+        new RegExpWhiteList("java."), 1, 1, 1);
+    prefetcher.prefetch(repository.getClass(Fan.class.getCanonicalName()));
+    assertEquals(1, prefetcher.getDropped());
+    assertEquals(2, prefetcher.getRequested());
+    release.countDown();
+    prefetcher.shutdown();
+  }
+
+}
@@ -87,6 +87,37 @@ public class CommandLineConfigTest extends AutoFieldClearTestCase {
       assertTrue(expected.getMessage().startsWith("Don't understand"));
     }
   }
+
+  public void testMalformedSweepThrowsException() throws Exception {
+    commandLineConfig.cp = "a";
+    commandLineConfig.sweep = "1,10";
+    try {
+      commandLineConfig.validate();
+      fail("CmdLineException exception expected but did not get thrown");
+    } catch (CmdLineException expected) {
+      assertTrue(expected.getMessage().startsWith("Expected cyclomatic"));
+    }
+  }
+
+  public void testScheduleWithStreamThrowsException() throws Exception {
+    commandLineConfig.cp = "a";
+    commandLineConfig.schedule = true;
+    commandLineConfig.stream = true;
+    try {
+      commandLineConfig.validate();
+      fail("CmdLineException exception expected but did not get thrown");
+    } catch (CmdLineException expected) {
+      assertEquals("-schedule can not be used with -stream", expected.getMessage());
+    }
+  }
+
+  public void testSweepIsParsed() throws Exception {
+    commandLineConfig.cp = "a";
+    commandLineConfig.sweep = "1,10,1 2,5,1,25,50";
+    commandLineConfig.validate();
+    assertEquals(2, commandLineConfig.sweepOptions.size());
+    assertEquals(25, commandLineConfig.sweepOptions.get(1).getMaxExcellentCost());
+  }
   
   public void testBuildTestabilityConfig() throws Exception {
     PrintStream errStream = new PrintStream(new ByteArrayOutputStream());
@@ -38,6 +38,20 @@ public class ConfigModuleTest extends AutoFieldClearTestCase {
     assertTrue(err.toString().indexOf("Exiting...") > -1);
   }
 
+  public void testClassRepositoryIsSharedOnlyForWholeProgram() throws Exception {
+    Injector injector = Guice.createInjector(new ConfigModule(new String[]{
+        "-cp", "not/default/path", "com.google.TestClass"}, outStream, errStream),
+        new TestabilityModule());
+    assertNotSame(injector.getInstance(ClassRepository.class),
+        injector.getInstance(ClassRepository.class));
+
+    injector = Guice.createInjector(new ConfigModule(new String[]{
+        "-cp", "not/default/path", "-wholeProgram", "com.google.TestClass"}, outStream,
+        errStream), new TestabilityModule());
+    assertSame(injector.getInstance(ClassRepository.class),
+        injector.getInstance(ClassRepository.class));
+  }
+
   public void testParseClasspathAndSingleClass() throws Exception {
     Injector injector = Guice.createInjector(new ConfigModule(new String[]{
         "-cp", "not/default/path", "com.google.TestClass"}, outStream, errStream));
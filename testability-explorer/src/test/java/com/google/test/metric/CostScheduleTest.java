@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class CostScheduleTest extends TestCase {
+
+  static class Small {
+  }
+
+  static class Large {
+    int a(int i) {
+      return i > 0 ? i * 2 : i + 3;
+    }
+
+    int b(int i) {
+      return a(i) + a(i + 1) + a(i + 2);
+    }
+  }
+
+  private final CostSchedule schedule = new CostSchedule();
+
+  public void testLargestCodeGoesFirst() throws Exception {
+    schedule.addClass("a", 1, 10);
+    schedule.addClass("b", 10, 1000);
+    schedule.addClass("c", 2, 100);
+    assertEquals(asList(1, 2, 0), schedule.schedule(asList("a", "b", "c")));
+  }
+
+  public void testEqualEstimatesKeepTheirOrder() throws Exception {
+    schedule.addClass("a", 1, 10);
+    schedule.addClass("b", 1, 10);
+    assertEquals(asList(0, 1, 2), schedule.schedule(asList("a", "b", "unknown")));
+  }
+
+  public void testTimingsOfThePreviousRunWin() throws Exception {
+    schedule.addClass("a", 1, 10);
+    schedule.addClass("b", 10, 1000);
+    schedule.addClass("c", 1, 10);
+    schedule.addTiming("a", 5000);
+    schedule.addTiming("b", 100);
+    // c is as large as a, so it is expected to take as long as the timings
+    // of the classes with both suggest.
+    assertEquals(asList(0, 2, 1), schedule.schedule(asList("a", "b", "c")));
+    assertEquals(5100.0 / (42 + 1320) * 42, schedule.estimate("c"), 0.001);
+  }
+
+  public void testTimingsRoundTrip() throws Exception {
+    Map<String, Long> micros = new TreeMap<String, Long>();
+    micros.put("com.example.A", 12L);
+    micros.put("com.example.B", 3400L);
+    StringWriter timings = new StringWriter();
+    CostSchedule.writeTimings(timings, micros);
+    schedule.readTimings(new StringReader(timings + "not a timing\n"));
+    assertEquals(12.0, schedule.estimate("com.example.A"));
+    assertEquals(3400.0, schedule.estimate("com.example.B"));
+  }
+
+  public void testScanReadsTheClassFiles() throws Exception {
+    CostSchedule scanned = CostSchedule.scan(new ClassPathFactory().createFromJVM(),
+        asList(resourceOf(Small.class), resourceOf(Large.class), "com/example/Missing.class"));
+    String small = Small.class.getCanonicalName();
+    String large = Large.class.getCanonicalName();
+    assertTrue(scanned.estimate(large) > scanned.estimate(small));
+    assertEquals(asList(1, 0, 2), scanned.schedule(asList(small, large, "com.example.Missing")));
+  }
+
+  private String resourceOf(Class<?> clazz) {
+    return clazz.getName().replace('.', '/') + ".class";
+  }
+
+}
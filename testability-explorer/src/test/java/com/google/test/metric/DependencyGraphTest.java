@@ -0,0 +1,80 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class DependencyGraphTest extends TestCase {
+
+  private final DependencyGraph graph = new DependencyGraph();
+
+  public void testDependenciesAreScheduledFirst() throws Exception {
+    graph.addClass("a", asList("b", "java.lang.Object"));
+    graph.addClass("b", asList("c"));
+    graph.addClass("c", Collections.<String>emptyList());
+    assertEquals(asList("c", "b", "a"), graph.schedule());
+    assertEquals(Collections.singleton("c"), graph.getDependencies("b"));
+  }
+
+  public void testLargestReadyComponentGoesFirst() throws Exception {
+    graph.addClass("a", Collections.<String>emptyList());
+    graph.addClass("x", asList("y"));
+    graph.addClass("y", asList("z"));
+    graph.addClass("z", asList("x"));
+    graph.addClass("w", asList("a", "x"));
+    assertEquals(asList("x", "y", "z", "a", "w"), graph.schedule());
+    assertEquals(3, graph.getComponents().size());
+  }
+
+  public void testDependentsOfAChange() throws Exception {
+    graph.addClass("a", asList("b"));
+    graph.addClass("b", asList("c"));
+    graph.addClass("c", Collections.<String>emptyList());
+    graph.addClass("d", asList("c"));
+    graph.addClass("e", Collections.<String>emptyList());
+    assertEquals(asList("a", "b", "c", "d"), new ArrayList<String>(graph.getDependents(asList("c"))));
+    assertEquals(asList("a", "b"), new ArrayList<String>(graph.getDependents(asList("b"))));
+  }
+
+  public void testDeepGraphDoesNotOverflowTheStack() throws Exception {
+    int depth = 20000;
+    for (int i = 0; i < depth; i++) {
+      graph.addClass("c" + i, asList("c" + (i + 1)));
+    }
+    List<String> order = graph.schedule();
+    assertEquals(depth, order.size());
+    assertEquals("c" + (depth - 1), order.get(0));
+    assertEquals("c0", order.get(depth - 1));
+  }
+
+  public void testScanClassPath() throws Exception {
+    DependencyGraph scanned = DependencyGraph.scan(
+        new ClassPathFactory().createFromPath(TestabilityRunnerTest.CLASS_NO_EXTERNAL_DEPS),
+        asList("com/google/classpath/ColonDelimitedStringParser.class",
+            "com/google/DoesNotExist.class"));
+    assertEquals(asList("com.google.DoesNotExist", "com.google.classpath.ColonDelimitedStringParser"),
+        scanned.schedule());
+  }
+
+}
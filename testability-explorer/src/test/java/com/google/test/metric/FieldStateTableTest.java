@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static java.util.Arrays.asList;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class FieldStateTableTest extends TestCase {
+
+  static class Holder {
+    static Holder instance = new Holder();
+    Object state;
+    private Object copy;
+
+    void copy(Holder other) {
+      copy = other.state;
+    }
+  }
+
+  static class Writer {
+    void write(Object value) {
+      Holder.instance.state = value;
+    }
+  }
+
+  static class Injected {
+    private final Object dependency;
+    private Object created = new Object();
+
+    Injected(Object dependency) {
+      this.dependency = dependency;
+    }
+
+    Object get() {
+      return created == null ? dependency : created;
+    }
+  }
+
+  private final WhiteList whitelist = new RegExpWhiteList("java.");
+  private final JavaClassRepository repository =
+      new JavaClassRepository(new ClassPathFactory().createFromJVM());
+  private final ClassInfo holder = repository.getClass(Holder.class.getCanonicalName());
+  private final ClassInfo writer = repository.getClass(Writer.class.getCanonicalName());
+  private final ClassInfo injected = repository.getClass(Injected.class.getCanonicalName());
+
+  public void testFieldWrittenThroughGlobalInstanceIsGlobal() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist,
+        asList(holder, writer));
+    assertTrue(table.isGlobal(holder.getField("instance")));
+    assertTrue(table.isGlobal(holder.getField("state")));
+    assertTrue(table.isGlobal(holder.getField("copy")));
+  }
+
+  public void testGlobalStateComesFromTheWholeProgram() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist, asList(holder));
+    assertFalse(table.isGlobal(holder.getField("state")));
+    assertFalse(table.isGlobal(holder.getField("copy")));
+  }
+
+  public void testConstructorParametersAndNonPrivateFieldsAreInjectable() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist,
+        asList(holder, injected));
+    FieldStateTable forInjected = table.forClass(injected, true);
+    assertTrue(forInjected.isInjectable(injected.getField("dependency")));
+    assertFalse(forInjected.isInjectable(injected.getField("created")));
+    assertTrue(table.forClass(holder, true).isInjectable(holder.getField("state")));
+    assertFalse(forInjected.isGlobal(injected.getField("dependency")));
+  }
+
+  public void testInjectabilityDependsOnTheClassUnderTest() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist,
+        asList(holder, injected));
+    assertFalse(table.forClass(injected, true).isInjectable(holder.getField("state")));
+    assertFalse(table.forClass(injected, false).isInjectable(injected.getField("dependency")));
+    assertSame(table.forClass(injected, true), table.forClass(injected, true));
+  }
+
+  public void testVariableStateLooksUpFields() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist,
+        asList(holder, writer, injected));
+    VariableState state = new VariableState(table.forClass(injected, true));
+    assertTrue(state.isGlobal(holder.getField("state")));
+    assertTrue(state.isInjectable(injected.getField("dependency")));
+    assertFalse(new VariableState().isGlobal(holder.getField("state")));
+  }
+
+  public void testVariableStateIgnoresStateSetOnFields() throws Exception {
+    FieldStateTable table = FieldStateTable.compute(repository, whitelist, asList(injected));
+    VariableState state = new VariableState(table.forClass(injected, true));
+    FieldInfo created = injected.getField("created");
+    state.setGlobal(created);
+    state.setInjectable(created);
+    assertFalse(state.isGlobal(created));
+    assertFalse(state.isInjectable(created));
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import junit.framework.TestCase;
+
+public class InternerTest extends TestCase {
+
+  private final Interner interner = new Interner();
+
+  public void testSameNameIsSameInstance() throws Exception {
+    String name = interner.name(new String("java.lang.String"));
+    assertSame(name, interner.name(new String("java.lang.String")));
+    assertNull(interner.name(null));
+  }
+
+  public void testDescriptorTypesAreShared() throws Exception {
+    Type type = interner.fromDesc("Ljava/lang/String;");
+    assertSame(type, interner.fromDesc(new String("Ljava/lang/String;")));
+    assertEquals("java.lang.String", type.toString());
+    assertSame(JavaType.INT, interner.fromDesc("I"));
+  }
+
+  public void testJavaAndDescriptorTypesKeepTheirOwnNames() throws Exception {
+    Type fromJava = interner.fromJava("a/B$C");
+    Type fromDesc = interner.fromDesc("La/B$C;");
+    assertEquals("a.B$C", fromJava.toString());
+    assertEquals("a.B.C", fromDesc.toString());
+    assertEquals(fromJava, fromDesc);
+  }
+
+  public void testClassTypes() throws Exception {
+    assertSame(JavaType.INT, interner.fromClass(Integer.class));
+    assertSame(interner.fromJava("java.lang.String"), interner.fromClass(String.class));
+  }
+
+  public void testLiteralConstantsAreShared() throws Exception {
+    Variable zero = interner.constant(0, JavaType.INT);
+    assertSame(zero, interner.constant(0, JavaType.INT));
+    assertNotSame(zero, interner.constant(0, JavaType.LONG));
+    assertNotSame(zero, interner.constant(1, JavaType.INT));
+    assertSame(interner.constant(null, JavaType.OBJECT),
+        interner.constant(null, JavaType.OBJECT));
+  }
+
+  public void testRepositorySharesTypesBetweenClasses() throws Exception {
+    JavaClassRepository repo = new JavaClassRepository();
+    ClassInfo first = repo.getClass(TwoStrings.class.getCanonicalName());
+    Type a = first.getField("a").getType();
+    Type b = first.getField("b").getType();
+    assertSame(a, b);
+    assertSame(a, repo.getInterner().fromDesc("Ljava/lang/String;"));
+  }
+
+  static class TwoStrings {
+    String a;
+    String b;
+  }
+
+}
@@ -65,4 +65,35 @@ public class JavaClassRepositoryTest extends TestCase {
     assertEquals(name, repository.getClass(name).getName());
   }
 
+  public void testConcurrentLoadsShareOneClassInfo() throws Exception {
+    final String name = "com.google.test.metric.JavaClassRepositoryTest.MyClass.MyInnerClass";
+    final ClassInfo[] loaded = new ClassInfo[4];
+    Thread[] threads = new Thread[loaded.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          loaded[index] = repository.getClass(name);
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (ClassInfo classInfo : loaded) {
+      assertSame(loaded[0], classInfo);
+    }
+  }
+
+  public void testClassFromGivenBytes() throws Exception {
+    String name = MyClass.class.getCanonicalName();
+    JavaClassRepository javaRepository = new JavaClassRepository();
+    ClassInfo classInfo = javaRepository.getClass(name, getClass().getClassLoader()
+        .getResourceAsStream(MyClass.class.getName().replace('.', '/') + ".class"));
+    assertEquals(name, classInfo.getName());
+    assertSame(classInfo, javaRepository.getClass(name));
+  }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import static com.google.test.metric.Reason.IMPLICIT_CONSTRUCTOR;
+import static com.google.test.metric.Reason.NON_OVERRIDABLE_METHOD_CALL;
+
+import junit.framework.TestCase;
+
+import com.google.classpath.ClassPathFactory;
+
+public class MethodCostInternerTest extends TestCase {
+
+  static class Helper {
+    static int work(int i) {
+      return i > 0 ? 1 : 2;
+    }
+  }
+
+  static class Callers {
+    int a() {
+      return Helper.work(1);
+    }
+
+    int b() {
+      return Helper.work(2);
+    }
+  }
+
+  private final MethodCostInterner interner = new MethodCostInterner();
+
+  private MethodCost callee(int cyclomatic) {
+    MethodCost callee = new MethodCost("Callee", "void work()", 3, false, true, false);
+    for (int i = 0; i < cyclomatic; i++) {
+      callee.addCostSource(new CyclomaticCost(new SourceLocation("Callee.java", 4),
+          Cost.cyclomatic(1)));
+    }
+    return callee;
+  }
+
+  private MethodCost caller(String name, MethodCost callee, Reason reason) {
+    MethodCost caller = new MethodCost("Caller", name, 1, false, false, false);
+    caller.addCostSource(new MethodInvocationCost(new SourceLocation("Caller.java", 2), callee,
+        reason, callee.getTotalCost()));
+    return caller;
+  }
+
+  private MethodCost calledBy(MethodCost caller) {
+    return ((MethodInvocationCost) caller.getViolationCosts().get(0)).getMethodCost();
+  }
+
+  public void testEqualCalleesAreShared() throws Exception {
+    MethodCost first = caller("void a()", callee(2), NON_OVERRIDABLE_METHOD_CALL);
+    MethodCost second = caller("void b()", callee(2), NON_OVERRIDABLE_METHOD_CALL);
+    interner.internCalledMethods(first);
+    interner.internCalledMethods(second);
+    assertSame(calledBy(first), calledBy(second));
+    assertTrue(calledBy(first).isLinked());
+    assertFalse(first.isLinked());
+    assertEquals(1, interner.getSize());
+    assertEquals(2, second.getTotalCost().getCyclomaticComplexityCost());
+  }
+
+  public void testDifferentCalleesAreNotShared() throws Exception {
+    MethodCost first = caller("void a()", callee(2), NON_OVERRIDABLE_METHOD_CALL);
+    MethodCost second = caller("void b()", callee(3), NON_OVERRIDABLE_METHOD_CALL);
+    interner.internCalledMethods(first);
+    interner.internCalledMethods(second);
+    assertNotSame(calledBy(first), calledBy(second));
+    assertEquals(2, interner.getSize());
+  }
+
+  public void testSharingKeepsTheKindOfInvocation() throws Exception {
+    MethodCost first = caller("void a()", callee(1), NON_OVERRIDABLE_METHOD_CALL);
+    MethodCost second = caller("void b()", callee(1), IMPLICIT_CONSTRUCTOR);
+    second.getViolationCosts().set(0, new ConstructorInvocationCost(
+        new SourceLocation("Caller.java", 2), calledBy(second), IMPLICIT_CONSTRUCTOR,
+        Cost.cyclomatic(1)));
+    interner.internCalledMethods(first);
+    interner.internCalledMethods(second);
+    assertSame(calledBy(first), calledBy(second));
+    assertTrue(second.getViolationCosts().get(0) instanceof ConstructorInvocationCost);
+  }
+
+  public void testLinkedCostsCanNotChange() throws Exception {
+    MethodCost callee = callee(1);
+    callee.link();
+    try {
+      callee.addCostSource(new CyclomaticCost(new SourceLocation("Callee.java", 5),
+          Cost.cyclomatic(1)));
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  public void testComputerSharesCalleesBetweenMethods() throws Exception {
+    ClassRepository repository = new JavaClassRepository(new ClassPathFactory().createFromJVM());
+    MetricComputer computer = new MetricComputer(repository, null, new RegExpWhiteList("java."),
+        1);
+    computer.setShareCalledCosts(true);
+    ClassCost classCost = computer.compute(Callers.class.getCanonicalName());
+    MethodCost a = classCost.getMethodCost("int a()");
+    MethodCost b = classCost.getMethodCost("int b()");
+    assertSame(calledBy(a), calledBy(b));
+    assertEquals(a.getTotalCost(), b.getTotalCost());
+  }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class MethodCostMemoTest extends TestCase {
+
+  private final ClassRepository repo = new JavaClassRepository();
+  private final RegExpWhiteList whitelist = new RegExpWhiteList("java.");
+  private final MetricComputer computer = new MetricComputer(repo, null, whitelist, 1, true);
+
+  static Object global;
+
+  public static class First {
+    private int value;
+
+    public int getValue() {
+      if (value > 0) {
+        return helper();
+      }
+      return value;
+    }
+
+    private int helper() {
+      return value > 1 ? 1 : 2;
+    }
+  }
+
+  public static class Second {
+    private int value;
+
+    public int getValue() {
+      if (value > 0) {
+        return helper();
+      }
+      return value;
+    }
+
+    private int helper() {
+      return value > 1 ? 1 : 2;
+    }
+  }
+
+  public static class DifferentHelper {
+    private int value;
+
+    public int getValue() {
+      if (value > 0) {
+        return helper();
+      }
+      return value;
+    }
+
+    private int helper() {
+      global = this;
+      return value > 1 ? 1 : 2;
+    }
+  }
+
+  public static class SpreadOut {
+    private int value;
+
+    public int getValue() {
+      if (value > 0) {
+
+        return helper();
+      }
+      return value;
+    }
+
+    private int helper() {
+      return value > 1 ? 1 : 2;
+    }
+  }
+
+  private MethodInfo method(Class<?> clazz) {
+    return repo.getClass(clazz.getCanonicalName()).getMethod("int getValue()");
+  }
+
+  public void testSameCodeInDifferentClassesHasSameKey() throws Exception {
+    MethodCostMemo memo = computer.getMemo();
+    assertEquals(memo.keyOf(method(First.class)), memo.keyOf(method(Second.class)));
+  }
+
+  public void testDifferentCalleeHasDifferentKey() throws Exception {
+    MethodCostMemo memo = computer.getMemo();
+    assertFalse(memo.keyOf(method(First.class)).equals(
+        memo.keyOf(method(DifferentHelper.class))));
+  }
+
+  public void testDifferentLinesHaveDifferentKeys() throws Exception {
+    MethodCostMemo memo = computer.getMemo();
+    assertFalse(memo.keyOf(method(First.class)).equals(memo.keyOf(method(SpreadOut.class))));
+  }
+
+  public void testReusesTotals() throws Exception {
+    MethodCost first = computer.compute(method(First.class));
+    MethodCost second = computer.compute(method(Second.class));
+    MethodCost different = computer.compute(method(DifferentHelper.class));
+
+    assertEquals(3, computer.getMemo().getLookups());
+    assertEquals(1, computer.getMemo().getHits());
+    assertEquals(Second.class.getCanonicalName(), second.getClassName());
+    assertEquals("int getValue()", second.getMethodName());
+    assertEquals(first.getTotalCost().toString(), second.getTotalCost().toString());
+    assertEquals(first.getViolationCosts().size(), second.getViolationCosts().size());
+    assertFalse(first.getTotalCost().toString().equals(different.getTotalCost().toString()));
+  }
+
+  public void testMemoizedCostsMatchComputedCosts() throws Exception {
+    MetricComputer plain = new MetricComputer(repo, null, whitelist, 1);
+    assertNull(plain.getMemo());
+    computer.compute(method(First.class));
+    assertEquals(plain.compute(method(Second.class)).getTotalCost().toString(),
+        computer.compute(method(Second.class)).getTotalCost().toString());
+  }
+
+  public void testMemoizedCostSourcesAreMovedToTheirClass() throws Exception {
+    MetricComputer plain = new MetricComputer(repo, null, whitelist, 1);
+    computer.compute(method(First.class));
+    assertSameSources(plain.compute(method(Second.class)).getViolationCosts(),
+        computer.compute(method(Second.class)).getViolationCosts());
+  }
+
+  private void assertSameSources(List<ViolationCost> expected, List<ViolationCost> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).toString(), actual.get(i).toString());
+      assertEquals(expected.get(i).getLocation().toString(),
+          actual.get(i).getLocation().toString());
+      if (expected.get(i) instanceof MethodInvocationCost) {
+        MethodCost expectedCost = ((MethodInvocationCost) expected.get(i)).getMethodCost();
+        MethodCost actualCost = ((MethodInvocationCost) actual.get(i)).getMethodCost();
+        assertEquals(expectedCost.getClassName(), actualCost.getClassName());
+        assertEquals(expectedCost.getMethodLineNumber(), actualCost.getMethodLineNumber());
+        assertSameSources(expectedCost.getViolationCosts(), actualCost.getViolationCosts());
+      }
+    }
+  }
+
+  public void testOnlyTheWholeClassNameIsReplaced() throws Exception {
+    Pattern name = MethodCostMemo.classNamePattern("a.Foo");
+    assertEquals("void set(<this>, a.FooBar, b.a.Foo, a.Foo.Inner, <this>[])",
+        MethodCostMemo.replaceClassName(name,
+            "void set(a.Foo, a.FooBar, b.a.Foo, a.Foo.Inner, a.Foo[])", "<this>"));
+  }
+
+  public static class Setters {
+    private Object a;
+    private Object b;
+
+    public void setA(Object a) {
+      this.a = a;
+    }
+
+    public void setB(Object b) {
+      this.b = b;
+    }
+  }
+
+  public void testSettersAreNotTheirOwnImplicitCost() throws Exception {
+    MethodCostMemo memo = computer.getMemo();
+    ClassInfo setters = repo.getClass(Setters.class.getCanonicalName());
+    assertFalse(memo.keyOf(setters.getMethod("void setA(java.lang.Object)")).equals(
+        memo.keyOf(setters.getMethod("void setB(java.lang.Object)"))));
+  }
+
+}
@@ -588,4 +588,53 @@ public class MetricComputerTest extends AutoFieldClearTestCase {
     assertEquals(0, cost.getTotalComplexityCost());
     assertEquals(0, cost.getTotalGlobalCost());
   }
-}
\ No newline at end of file
+
+  static class ManyMethods {
+    static int global;
+    int a0(int i) { return i > 0 ? 1 : 2; }
+    int a1(int i) { return global; }
+    int a2(int i) { return a0(i) + a1(i); }
+    int a3(int i) { return i > 1 ? a2(i) : 3; }
+    int a4(int i) { return global++; }
+    int a5(int i) { return a4(i) > 0 ? a3(i) : a0(i); }
+    int a6(int i) { return i; }
+    int a7(int i) { return a6(i) + a5(i); }
+    int a8(int i) { return i > 2 ? global : 4; }
+    int a9(int i) { return a8(i) + a7(i); }
+    int b0(int i) { return i > 3 ? a9(i) : a1(i); }
+    int b1(int i) { return b0(i) + a0(i); }
+    int b2(int i) { return i > 4 ? 5 : 6; }
+    int b3(int i) { return b2(i) + b1(i); }
+    int b4(int i) { return global = i; }
+    int b5(int i) { return b4(i) > 0 ? b3(i) : 7; }
+  }
+
+  public void testParallelMethodsCostTheSameInTheSameOrder() throws Exception {
+    ClassCost sequential = computer.compute(ManyMethods.class);
+    MetricComputer parallelComputer = new MetricComputerBuilder().withClassRepository(repo)
+        .withWhitelist(new RegExpWhiteList("java.")).build();
+    parallelComputer.setMethodThreads(4);
+    ClassCost parallel = parallelComputer.compute(ManyMethods.class.getCanonicalName());
+    assertTrue(parallel.getMethods().size() >= MetricComputer.PARALLEL_METHOD_COUNT);
+    assertEquals(sequential.getMethods().size(), parallel.getMethods().size());
+    for (int i = 0; i < sequential.getMethods().size(); i++) {
+      MethodCost expected = sequential.getMethods().get(i);
+      MethodCost actual = parallel.getMethods().get(i);
+      assertEquals(expected.getMethodName(), actual.getMethodName());
+      assertEquals(expected.getTotalCost(), actual.getTotalCost());
+    }
+    parallelComputer.shutdown();
+    ClassCost afterShutdown = parallelComputer.compute(ManyMethods.class.getCanonicalName());
+    assertEquals(sequential.getMethods().size(), afterShutdown.getMethods().size());
+    parallelComputer.shutdown();
+  }
+
+  public void testCalledCostsAreSharedOnlyWhenAskedFor() throws Exception {
+    MetricComputer sharing = new MetricComputerBuilder().withClassRepository(repo)
+        .withWhitelist(new RegExpWhiteList("java.")).build();
+    assertNull(sharing.getInterner());
+    sharing.setShareCalledCosts(true);
+    sharing.compute(MethodCostInternerTest.Callers.class.getCanonicalName());
+    assertTrue(sharing.getInterner().toString(), sharing.getInterner().getSize() > 0);
+  }
+}
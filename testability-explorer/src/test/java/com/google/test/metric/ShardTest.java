@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric;
+
+import junit.framework.TestCase;
+
+public class ShardTest extends TestCase {
+
+  public void testParse() throws Exception {
+    Shard shard = Shard.parse("2/5");
+    assertEquals(2, shard.getIndex());
+    assertEquals(5, shard.getCount());
+    assertEquals("2/5", shard.toString());
+  }
+
+  public void testParseRejectsBadShards() throws Exception {
+    for (String bad : new String[] {"2", "a/b", "5/5", "-1/2", "0/0"}) {
+      try {
+        Shard.parse(bad);
+        fail(bad);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testEachClassIsInExactlyOneShard() throws Exception {
+    int[] sizes = new int[3];
+    for (int i = 0; i < 300; i++) {
+      String className = "com.example.Class" + i;
+      int shards = 0;
+      for (int index = 0; index < sizes.length; index++) {
+        if (new Shard(index, sizes.length).contains(className)) {
+          shards++;
+          sizes[index]++;
+        }
+      }
+      assertEquals(className, 1, shards);
+      assertTrue(Shard.ALL.contains(className));
+    }
+    for (int size : sizes) {
+      assertTrue(size > 50);
+    }
+  }
+
+}
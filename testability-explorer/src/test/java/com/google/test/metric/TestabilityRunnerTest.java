@@ -6,8 +6,11 @@ import com.google.test.metric.report.ReportGenerator;
 import com.google.test.metric.report.TextReportGenerator;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class TestabilityRunnerTest extends AutoFieldClearTestCase {
@@ -43,6 +46,14 @@ public class TestabilityRunnerTest extends AutoFieldClearTestCase {
   private RegExpWhiteList whiteList = new RegExpWhiteList("java.");
   private PrintStream errStream = new PrintStream(err);
 
+  public void testClassFilesAreOrderedByClassName() throws Exception {
+    List<String> resources = new ArrayList<String>(Arrays.asList("a/B$1.class", "a/C.class",
+        "a/B.class", "a/b/A.class"));
+    Collections.sort(resources, JavaTestabilityRunner.BY_CLASS_NAME);
+    assertEquals(Arrays.asList("a/B.class", "a/B$1.class", "a/C.class", "a/b/A.class"),
+        resources);
+  }
+
   public void testClassesNotInClasspath() throws Exception {
     JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
     runner.run();
@@ -97,6 +108,163 @@ public class TestabilityRunnerTest extends AutoFieldClearTestCase {
     assertTrue(err.toString().startsWith("WARNING: can not analyze class "));
   }
 
+  public void testScheduledRunReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES).run();
+    String unscheduled = out.toString();
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES);
+    runner.setScheduleByDependencies(true);
+    runner.run();
+    assertEquals(unscheduled, out.toString());
+
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    runner = runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES);
+    runner.setScheduleByDependencies(true);
+    runner.setThreads(2);
+    runner.run();
+    assertEquals(unscheduled, out.toString());
+  }
+
+  public void testPipelinedRunReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String sequential = out.toString();
+    String sequentialWarnings = err.toString();
+    out.reset();
+    err.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setThreads(2);
+    runner.run();
+    assertEquals(sequential, out.toString());
+    // Warnings of the analysis threads may come in any order.
+    List<String> warnings = Arrays.asList(err.toString().split("\n"));
+    assertTrue(err.toString(),
+        warnings.containsAll(Arrays.asList(sequentialWarnings.split("\n"))));
+    assertTrue(err.toString(), err.toString().contains("analyze: "));
+  }
+
+  public void testStreamedRunReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String unstreamed = out.toString();
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setStreamClassPath(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.run();
+    assertEquals(unstreamed, out.toString());
+
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setStreamClassPath(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setThreads(2);
+    runner.run();
+    assertEquals(unstreamed, out.toString());
+  }
+
+  public void testPrefetchedRunReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String unprefetched = out.toString();
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setPrefetchThreads(2);
+    runner.run();
+    assertEquals(unprefetched, out.toString());
+  }
+
+  public void testLongestFirstRunReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String unscheduled = out.toString();
+    File timings = File.createTempFile("timings", ".txt");
+    timings.deleteOnExit();
+    for (int run = 0; run < 2; run++) {
+      out.reset();
+      report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+      JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+      runner.setThreads(2);
+      runner.setLongestFirst(true);
+      runner.setTimingsFile(timings.getPath());
+      runner.run();
+      assertEquals(unscheduled, out.toString());
+      assertTrue(timings.length() > 0);
+    }
+  }
+
+  public void testShardedRunMergesToTheSameReport() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String unsharded = out.toString();
+    StringBuilder results = new StringBuilder();
+    for (int i = 0; i < 3; i++) {
+      File result = File.createTempFile("shard", ".results");
+      result.deleteOnExit();
+      JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+      runner.setShard(i + "/3");
+      runner.setResultsFile(result.getPath());
+      if (i == 1) {
+        runner.setThreads(2);
+      }
+      runner.run();
+      results.append(result.getPath()).append(File.pathSeparator);
+    }
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner merger = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    merger.setMergeFiles(results.toString());
+    merger.run();
+    assertEquals(unsharded, out.toString());
+  }
+
+  public void testRunWithoutModelReportsTheSame() throws Exception {
+    runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES).run();
+    String withModel = out.toString();
+    out.reset();
+    report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 0);
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES);
+    runner.setAllClasses(true);
+    runner.run();
+    assertEquals(withModel, out.toString());
+  }
+
+  public void testWholeProgramRunReportsTheSame() throws Exception {
+    for (String path : Arrays.asList(CLASS_NO_EXTERNAL_DEPS,
+        CLASSES_EXTERNAL_DEPS_AND_SUPERCLASSES, CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES)) {
+      out.reset();
+      report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 1000);
+      runnerFor(path).run();
+      String perMethod = out.toString();
+      out.reset();
+      err.reset();
+      report = new TextReportGenerator(new PrintStream(out), new CostModel(), 0, 0, 1000);
+      JavaTestabilityRunner runner = runnerFor(path);
+      runner.setWholeProgram(true);
+      runner.run();
+      assertTrue(err.toString(), err.toString().contains("Whole program field state"));
+      assertEquals(path, perMethod, out.toString());
+    }
+  }
+
+  public void testShardsShareTheWholeProgramFieldStates() throws Exception {
+    JavaTestabilityRunner runner = runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES);
+    runner.setWholeProgram(true);
+    runner.run();
+    String fieldStates = err.toString().substring(
+        err.toString().indexOf("Whole program field state"));
+    fieldStates = fieldStates.substring(0, fieldStates.indexOf('\n'));
+    for (int i = 0; i < 3; i++) {
+      err.reset();
+      File result = File.createTempFile("shard", ".results");
+      result.deleteOnExit();
+      runner = runnerFor(CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES);
+      runner.setWholeProgram(true);
+      runner.setShard(i + "/3");
+      runner.setResultsFile(result.getPath());
+      runner.run();
+      assertTrue(err.toString(), err.toString().contains(fieldStates));
+    }
+  }
 
   private JavaTestabilityRunner runnerFor(String path) {
     ClassPath classPath = new ClassPathFactory().createFromPaths(path, "core/" + path);
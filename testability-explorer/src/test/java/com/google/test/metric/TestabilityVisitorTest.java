@@ -26,6 +26,9 @@ import junit.framework.TestCase;
 
 import com.google.test.metric.TestabilityVisitor.CostRecordingFrame;
 import com.google.test.metric.TestabilityVisitor.ParentFrame;
+import com.google.test.metric.method.Constant;
+import com.google.test.metric.method.op.turing.MethodInvocation;
+import com.google.test.metric.method.op.turing.Operation;
 
 public class TestabilityVisitorTest extends TestCase {
 
@@ -234,5 +237,50 @@ public class TestabilityVisitorTest extends TestCase {
     assertEquals(1, frame.getLoDCount(clazz.getField("plus1")));
   }
 
-}
+  @SuppressWarnings("unchecked")
+  private ClassInfo createCallChain(int depth) {
+    ClassInfo chain = new ClassInfo("c.g.t.Chain", false, null, EMPTY_LIST, null);
+    for (int i = 0; i < depth; i++) {
+      List<Operation> operations = new ArrayList<Operation>();
+      if (i + 1 < depth) {
+        operations.add(new MethodInvocation(i, chain.getName(), "void m" + (i + 1) + "()",
+            null, EMPTY_LIST, new Constant("?", JavaType.VOID)));
+      }
+      chain.addMethod(new MethodInfo(chain, "void m" + i + "()", i, null, EMPTY_LIST,
+          EMPTY_LIST, Visibility.PUBLIC, operations, false, false, Arrays.asList(i)));
+    }
+    repo.addClass(chain);
+    return chain;
+  }
 
+  public void testDeepCallChainDoesNotOverflowTheStack() throws Exception {
+    final int depth = 5000;
+    ClassInfo chain = createCallChain(depth);
+    final CostRecordingFrame frame = visitor.createFrame(chain.getMethod("void m0()"), 1);
+    final Throwable[] failure = new Throwable[1];
+    Thread thread = new Thread(null, new Runnable() {
+      public void run() {
+        try {
+          frame.applyMethodOperations();
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      }
+    }, "small stack", 128 * 1024);
+    thread.start();
+    thread.join();
+    assertNull(failure[0]);
+    assertEquals(depth, frame.getMethodCost().getTotalCost().getCyclomaticComplexityCost());
+    assertFalse(frame.getMethodCost().isTruncated());
+  }
+
+  public void testBudgetTruncatesTheAnalysis() throws Exception {
+    ClassInfo chain = createCallChain(100);
+    CostRecordingFrame frame = visitor.createFrame(chain.getMethod("void m0()"), 1);
+    frame.setBudget(new AnalysisBudget(10, 0, 0));
+    MethodCost methodCost = frame.applyMethodOperations();
+    assertTrue(methodCost.isTruncated());
+    assertEquals(11, methodCost.getTotalCost().getCyclomaticComplexityCost());
+  }
+
+}
@@ -35,4 +35,33 @@ public class WeightedAverageTest extends TestCase {
     double expected = (pow(1, weight + 1) + pow(3, weight + 1)) / (pow(1, weight) + pow(3, weight));
     assertEquals(expected, avg.getAverage());
   }
+
+  public void testAddedAveragesAreTheAverageOfAllValues() throws Exception {
+    WeightedAverage all = new WeightedAverage();
+    WeightedAverage first = new WeightedAverage();
+    WeightedAverage second = new WeightedAverage();
+    for (int value = 1; value < 10; value++) {
+      all.addValue(value);
+      (value % 2 == 0 ? first : second).addValue(value);
+    }
+    first.add(second);
+    assertEquals(all.getAverage(), first.getAverage(), 1e-9);
+  }
+
+  public void testAverageReplacingAValueIsTheAverageWithTheOtherValue() throws Exception {
+    WeightedAverage average = new WeightedAverage(1.5);
+    WeightedAverage replaced = new WeightedAverage(1.5);
+    for (int value = 1; value < 10; value++) {
+      average.addValue(value);
+      replaced.addValue(value == 4 ? 40 : value);
+    }
+    assertEquals(replaced.getAverage(), average.getAverageReplacing(4, 40), 1e-9);
+  }
+
+  public void testReplacingTheOnlyNonZeroValueWithZero() throws Exception {
+    WeightedAverage average = new WeightedAverage(1.5);
+    average.addValue(0);
+    average.addValue(7);
+    assertEquals(0, (int) average.getAverageReplacing(7, 0));
+  }
 }
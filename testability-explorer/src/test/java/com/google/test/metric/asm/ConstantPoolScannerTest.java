@@ -0,0 +1,88 @@
+/*
+ * Copyright 2007 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.asm;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class ConstantPoolScannerTest extends TestCase {
+
+  static class Sample {
+    long big = 12345678901L;
+    double ratio = 1.5;
+    List<String> names = new ArrayList<String>();
+    String[][] table = new String[2][2];
+    int[] numbers = new int[3];
+
+    void inner() {
+      new Inner().hashCode();
+    }
+
+    class Inner {
+    }
+  }
+
+  private ConstantPoolScanner scan(Class<?> clazz) throws IOException {
+    InputStream classFile = clazz.getClassLoader().getResourceAsStream(
+        clazz.getName().replace('.', '/') + ".class");
+    try {
+      return new ConstantPoolScanner(classFile);
+    } finally {
+      classFile.close();
+    }
+  }
+
+  public void testClassName() throws Exception {
+    assertEquals("com.google.test.metric.asm.ConstantPoolScannerTest.Sample",
+        scan(Sample.class).getClassName());
+  }
+
+  public void testReferencedClasses() throws Exception {
+    Set<String> classes = scan(Sample.class).getReferencedClasses();
+    assertTrue(classes.toString(), classes.contains("java.util.ArrayList"));
+    assertTrue(classes.toString(), classes.contains("java.lang.String"));
+    assertTrue(classes.toString(), classes.contains(
+        "com.google.test.metric.asm.ConstantPoolScannerTest.Sample.Inner"));
+    assertFalse(classes.toString(), classes.contains(
+        "com.google.test.metric.asm.ConstantPoolScannerTest.Sample"));
+  }
+
+  public void testMethodsAndCodeLength() throws Exception {
+    ConstantPoolScanner sample = scan(Sample.class);
+    ConstantPoolScanner inner = scan(Sample.Inner.class);
+    // Sample() and inner()
+    assertEquals(2, sample.getMethodCount());
+    assertEquals(1, inner.getMethodCount());
+    assertTrue(sample.getCodeLength() > inner.getCodeLength());
+    assertTrue(inner.getCodeLength() > 0);
+  }
+
+  public void testNotAClassFile() throws Exception {
+    try {
+      new ConstantPoolScanner(new ByteArrayInputStream(new byte[] {1, 2, 3, 4}));
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}
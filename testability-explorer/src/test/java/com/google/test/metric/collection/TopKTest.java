@@ -0,0 +1,121 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.collection;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TopKTest extends TestCase {
+
+  private final Comparator<Integer> natural = new Comparator<Integer>() {
+    public int compare(Integer a, Integer b) {
+      return a.compareTo(b);
+    }
+  };
+
+  public void testKeepsTheGreatestElementsGreatestFirst() throws Exception {
+    TopK<Integer> topK = new TopK<Integer>(3, natural);
+    for (int value : new int[] {5, 1, 9, 7, 3, 8}) {
+      topK.offer(value);
+    }
+    assertEquals(asList(9, 8, 7), topK.asList());
+    assertEquals(3, topK.size());
+    assertFalse(topK.offer(2));
+  }
+
+  public void testKeepsNothing() throws Exception {
+    TopK<Integer> topK = new TopK<Integer>(0, natural);
+    assertFalse(topK.offer(1));
+    assertTrue(topK.isEmpty());
+  }
+
+  public void testThreadsFeedingStripesKeepTheSameElements() throws Exception {
+    final TopK<Integer> topK = new TopK<Integer>(10, natural, 4);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      final int offset = i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int value = offset; value < 8000; value += 8) {
+            topK.offer(value);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int value = 7999; value >= 7990; value--) {
+      expected.add(value);
+    }
+    assertEquals(expected, topK.asList());
+  }
+
+  public void testMergeKeepsTheGreatestOfBoth() throws Exception {
+    TopK<Integer> first = new TopK<Integer>(3, natural);
+    TopK<Integer> second = new TopK<Integer>(3, natural);
+    for (int value : new int[] {1, 6, 4, 2}) {
+      first.offer(value);
+    }
+    for (int value : new int[] {5, 3, 7}) {
+      second.offer(value);
+    }
+    first.merge(second);
+    assertEquals(asList(7, 6, 5), first.asList());
+  }
+
+  public void testRemovedElementsAreNotReplacedByDroppedOnes() throws Exception {
+    final TopK<Integer> topK = new TopK<Integer>(2, natural, 2);
+    topK.offer(10);
+    topK.offer(9);
+    Thread other = new Thread() {
+      @Override
+      public void run() {
+        topK.offer(8);
+        topK.offer(7);
+      }
+    };
+    other.start();
+    other.join();
+    assertEquals(asList(10, 9), topK.asList());
+    assertTrue(topK.remove(9));
+    assertEquals(asList(10), topK.asList());
+  }
+
+  public void testLeastElementWithOneOrMoreStripes() throws Exception {
+    for (int stripeCount = 1; stripeCount <= 2; stripeCount++) {
+      TopK<Integer> topK = new TopK<Integer>(3, natural, stripeCount);
+      assertNull(topK.peekLeast());
+      for (int value : new int[] {5, 1, 9, 7}) {
+        topK.offer(value);
+      }
+      assertEquals(Integer.valueOf(5), topK.peekLeast());
+      assertEquals(Integer.valueOf(5), topK.pollLeast());
+      assertEquals(asList(9, 7), topK.asList());
+    }
+  }
+
+}
@@ -141,4 +141,20 @@ public class JavaSrcRepositoryTest extends TestCase {
     assertEquals(expected, myField0.getType().toString());
 
   }
+
+  public void testPreParseBuildsAllClassesOfPackage() throws Exception {
+    int parsed = repo.preParse("com/google/test/metric/javasrc", 2);
+    assertTrue(parsed > 0);
+    assertNotNull(repo.getCachedClass(getClass().getName()));
+    assertNotNull(repo.getCachedClass(My.class.getName()));
+    assertEquals(0, repo.preParse("com/google/test/metric/javasrc", 2));
+  }
+
+  public void testSourceFileIsBuiltOnlyOnce() throws Exception {
+    ClassInfo info = repo.getClass(getClass().getName());
+    ClassInfo nested = repo.getCachedClass(My.class.getName());
+    assertNotNull(nested);
+    assertSame(info, repo.getClass(getClass().getName()));
+    assertSame(nested, repo.getClass(My.class.getName()));
+  }
 }
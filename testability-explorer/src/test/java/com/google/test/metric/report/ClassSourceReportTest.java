@@ -15,7 +15,12 @@
  */
 package com.google.test.metric.report;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Date;
 
 import junit.framework.TestCase;
@@ -37,12 +42,12 @@ public class ClassSourceReportTest extends TestCase {
 
   private final ClassPath classPath = new DirectoryClassPath(new File("src-test"));
   GradeCategories grades = new GradeCategories(50, 100);
-  File out = new File("test-out");
+  File out = new File("target/test-out");
   SourceReportGenerator report = new SourceReportGenerator(grades, new SourceLoader(classPath),
       out, new CostModel(), new Date(), 10, new Configuration());
   ClassRepository repo = new JavaClassRepository();
-  MetricComputer computer = new MetricComputer(repo, null, new RegExpWhiteList(
-      "!com.google"), 1);
+  MetricComputer computer = new MetricComputer(repo,
+      new PrintStream(new ByteArrayOutputStream()), new RegExpWhiteList("!com.google"), 1);
   ClassCost classCost = computer.compute(repo.getClass(ClassSourceReportTestExample.class
       .getName()));
 
@@ -83,4 +88,52 @@ public class ClassSourceReportTest extends TestCase {
         new File(out, "Project.html"));
   }
 
-}
\ No newline at end of file
+  public void testThreadedReportIsTheSameAsTheSequentialOne() throws Exception {
+    ClassCost[] classCosts = {classCost,
+        computer.compute(repo.getClass(ClassSourceReportTest.class.getName()))};
+    Date now = new Date();
+    File sequential = render(classCosts, now, 0);
+    File threaded = render(classCosts, now, 2);
+    String[] files = sequential.list();
+    Arrays.sort(files);
+    String[] threadedFiles = threaded.list();
+    Arrays.sort(threadedFiles);
+    assertEquals(Arrays.asList(files), Arrays.asList(threadedFiles));
+    assertTrue(Arrays.asList(files).contains("index.html"));
+    for (String file : files) {
+      assertEquals(file, read(new File(sequential, file)), read(new File(threaded, file)));
+    }
+    sequential.delete();
+    threaded.delete();
+  }
+
+  private File render(ClassCost[] classCosts, Date now, int threads) throws IOException {
+    File directory = File.createTempFile("source", "");
+    directory.delete();
+    SourceReportGenerator generator = new SourceReportGenerator(grades,
+        new SourceLoader(classPath), directory, new CostModel(), now, 10, new Configuration());
+    generator.setRenderThreads(threads);
+    generator.printHeader();
+    for (ClassCost cost : classCosts) {
+      generator.addClassCost(cost);
+    }
+    generator.printFooter();
+    return directory;
+  }
+
+  private String read(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int read = 0;
+      while (read < bytes.length) {
+        read += in.read(bytes, read, bytes.length - read);
+      }
+      return new String(bytes);
+    } finally {
+      in.close();
+      file.delete();
+    }
+  }
+
+}
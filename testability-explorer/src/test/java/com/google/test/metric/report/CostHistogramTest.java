@@ -0,0 +1,38 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import static java.util.Arrays.asList;
+
+import junit.framework.TestCase;
+
+public class CostHistogramTest extends TestCase {
+
+  public void testMergedHistogramsCountEveryCost() throws Exception {
+    CostHistogram first = new CostHistogram();
+    first.add(7);
+    first.add(1);
+    first.add(7);
+    CostHistogram second = new CostHistogram();
+    second.add(3);
+    second.add(7);
+    first.merge(second);
+    assertEquals(5, first.getCount());
+    assertEquals(Integer.valueOf(3), first.getCounts().get(7));
+    assertEquals(asList(1, 3, 7, 7, 7), first.toList());
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.xml.serialize.OutputFormat;
+import org.apache.xml.serialize.XMLSerializer;
+
+import com.google.classpath.ClassPath;
+import com.google.classpath.ClassPathFactory;
+import com.google.test.metric.ClassRepository;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.JavaClassRepository;
+import com.google.test.metric.JavaTestabilityRunner;
+import com.google.test.metric.MetricComputer;
+import com.google.test.metric.RegExpWhiteList;
+import com.google.test.metric.TestabilityRunnerTest;
+
+public class ReportDifferTest extends TestCase {
+
+  private final String path = TestabilityRunnerTest.CLASSES_EXTERNAL_DEPS_NO_SUPERCLASSES;
+  private final PrintStream err = new PrintStream(new ByteArrayOutputStream());
+
+  private File tempFile(String suffix) throws Exception {
+    File file = File.createTempFile("differ", suffix);
+    file.deleteOnExit();
+    return file;
+  }
+
+  private JavaTestabilityRunner runnerFor(ReportGenerator report) {
+    ClassPath classPath = new ClassPathFactory().createFromPaths(path, "core/" + path);
+    ClassRepository classRepository = new JavaClassRepository(classPath);
+    RegExpWhiteList whiteList = new RegExpWhiteList("java.");
+    MetricComputer computer = new MetricComputer(classRepository, err, whiteList, 0);
+    return new JavaTestabilityRunner(report, classPath, classRepository, computer,
+        Arrays.asList(""), whiteList, err);
+  }
+
+  public void testResultsFileHasNoDifferencesFromTheReportOfTheSameRun() throws Exception {
+    File results = tempFile(".bin");
+    JavaTestabilityRunner runner = runnerFor(null);
+    runner.setResultsFile(results.getPath());
+    runner.run();
+
+    // As the command line writes an XML report with the default multipliers.
+    File report = tempFile(".xml");
+    OutputStream out = new FileOutputStream(report);
+    XMLSerializer serializer = new XMLSerializer();
+    serializer.setOutputByteStream(out);
+    serializer.setOutputFormat(new OutputFormat());
+    runner = runnerFor(new XMLReportGenerator(serializer, new CostModel(1, 10, 1), 50, 100, 20,
+        true));
+    runner.setAllClasses(true);
+    runner.run();
+    out.close();
+
+    ReportDiffer differ = new ReportDiffer();
+    differ.parseArgs(new String[] {"-oldFile", results.getPath(), "-newFile", report.getPath(),
+        "-htmlReportFile", tempFile(".html").getPath()});
+    assertEquals(0, differ.diff().getClassDiffs().size());
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.ClassCostWriter;
+import com.google.test.metric.Cost;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.CyclomaticCost;
+import com.google.test.metric.MethodCost;
+import com.google.test.metric.Shard;
+import com.google.test.metric.SourceLocation;
+
+public class ResultsFileReaderTest extends TestCase {
+
+  private final CostModel costModel = new CostModel();
+
+  private ClassCost classCost(String className, int cyclomatic) {
+    MethodCost methodCost = new MethodCost(className, "void a()", 1, false, false, false);
+    methodCost.addCostSource(new CyclomaticCost(new SourceLocation(null, 2),
+        Cost.cyclomatic(cyclomatic)));
+    methodCost.link();
+    return new ClassCost(className, asList(methodCost));
+  }
+
+  private File write(ClassCost... classCosts) throws IOException {
+    File file = File.createTempFile("results", ".bin");
+    file.deleteOnExit();
+    ClassCostWriter writer = new ClassCostWriter(new FileOutputStream(file), Shard.ALL, false);
+    // Not in the order of their names, as a -shard or -schedule analysis may write them.
+    for (int i = classCosts.length - 1; i >= 0; i--) {
+      writer.write(i, classCosts[i]);
+    }
+    writer.close();
+    return file;
+  }
+
+  public void testResultsFilesAreDiffedLikeReports() throws Exception {
+    ResultsFileReader oldClasses = new ResultsFileReader(write(classCost("A", 3),
+        classCost("B", 5)), costModel);
+    ResultsFileReader newClasses = new ResultsFileReader(write(classCost("A", 3),
+        classCost("B", 8), classCost("C", 2)), costModel);
+    Diff diff = new XMLReportDiffer().diff(oldClasses, newClasses);
+    oldClasses.close();
+    newClasses.close();
+    assertEquals(2, diff.getClassDiffs().size());
+    Diff.ClassDiff b = diff.getClassDiffs().get(0);
+    assertEquals("B", b.getClassName());
+    assertEquals(5, b.getOldMetric().intValue());
+    assertEquals(8, b.getNewMetric().intValue());
+    assertEquals(8, b.getMethodDiffs().get(0).getNewMetric().intValue());
+    Diff.ClassDiff c = diff.getClassDiffs().get(1);
+    assertEquals("C", c.getClassName());
+    assertNull(c.getOldMetric());
+  }
+
+}
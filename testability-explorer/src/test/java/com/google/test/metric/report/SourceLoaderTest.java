@@ -15,10 +15,21 @@
  */
 package com.google.test.metric.report;
 
+import static java.util.Arrays.asList;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import com.google.classpath.ClassPath;
 import com.google.classpath.ClassPathFactory;
+import com.google.classpath.ResourceFilter;
+import com.google.test.metric.Cost;
 
 public class SourceLoaderTest extends TestCase {
 
@@ -44,4 +55,83 @@ public class SourceLoaderTest extends TestCase {
     Source source = loader.load("X-I don't exist-X");
     assertNotNull(source);
   }
+
+  /** Has the given files, and counts how often each is read. */
+  private static class FakeClassPath implements ClassPath {
+    private final Map<String, String> files = new HashMap<String, String>();
+    private final List<String> reads = new ArrayList<String>();
+
+    FakeClassPath(String... namesAndTexts) {
+      for (int i = 0; i < namesAndTexts.length; i += 2) {
+        files.put(namesAndTexts[i], namesAndTexts[i + 1]);
+      }
+    }
+
+    public InputStream getResourceAsStream(String resource) {
+      reads.add(resource);
+      String text = files.get(resource);
+      return text == null ? null : new ByteArrayInputStream(text.getBytes());
+    }
+
+    public String[] listResources(String packageName) {
+      List<String> names = new ArrayList<String>();
+      for (String file : files.keySet()) {
+        int index = file.lastIndexOf('/');
+        if (file.substring(0, Math.max(index, 0)).equals(packageName)) {
+          names.add(file.substring(index + 1));
+        }
+      }
+      return names.toArray(new String[names.size()]);
+    }
+
+    public boolean isResource(String resource) {
+      return files.containsKey(resource);
+    }
+
+    public boolean isPackage(String packageName) {
+      throw new UnsupportedOperationException();
+    }
+
+    public String[] listPackages(String packageName) {
+      throw new UnsupportedOperationException();
+    }
+
+    public String[] findResources(String rootPackageName, ResourceFilter filter) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  public void testLinesEndLikeTheyDoForReadLine() throws Exception {
+    SourceLoader loader = new SourceLoader(new FakeClassPath("a/B.java", "1\r\n2\r3\n\n5"));
+    Source source = loader.load("a.B");
+    assertEquals(5, source.getLines().size());
+    assertEquals("1", source.getLine(1).getText());
+    assertEquals("2", source.getLine(2).getText());
+    assertEquals("3", source.getLine(3).getText());
+    assertEquals("", source.getLine(4).getText());
+    assertEquals("5", source.getLine(5).getText());
+    assertEquals(0, loader.load("a.Empty").getLines().size());
+  }
+
+  public void testNestedClassesShareTheFileOfTheirClass() throws Exception {
+    FakeClassPath files = new FakeClassPath("a/B.java", "class B {\n}\n");
+    SourceLoader loader = new SourceLoader(files);
+    Source outer = loader.load("a.B");
+    Source inner = loader.load("a.B.C");
+    assertEquals("class B {", inner.getLine(1).getText());
+    assertEquals(1, files.reads.size());
+    inner.getLine(1).addCost(Cost.cyclomatic(1));
+    assertEquals(0, outer.getLine(1).getCost().getCyclomaticComplexityCost());
+  }
+
+  public void testLeastRecentlyReadFilesAreEvicted() throws Exception {
+    FakeClassPath files = new FakeClassPath("A.java", "aaaa", "B.java", "bbbb");
+    SourceLoader loader = new SourceLoader(files, 6);
+    loader.load("A");
+    loader.load("B");
+    loader.load("B");
+    loader.load("A");
+    assertEquals(asList("A.java", "B.java", "A.java"), files.reads);
+  }
+
 }
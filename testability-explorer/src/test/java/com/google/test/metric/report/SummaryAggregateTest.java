@@ -0,0 +1,157 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.Cost;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.CyclomaticCost;
+import com.google.test.metric.MethodCost;
+import com.google.test.metric.SourceLocation;
+import com.google.test.metric.WeightedAverage;
+
+public class SummaryAggregateTest extends TestCase {
+
+  private final CostModel costModel = new CostModel(1, 1, 1);
+
+  private ClassCost classCost(String name, int cost) {
+    MethodCost methodCost = new MethodCost(name, "void method()", 1, false, false, false);
+    for (int i = 0; i < cost; i++) {
+      methodCost.addCostSource(new CyclomaticCost(new SourceLocation(null, i),
+          Cost.cyclomatic(1)));
+    }
+    methodCost.link();
+    List<MethodCost> methods = new ArrayList<MethodCost>();
+    methods.add(methodCost);
+    return new ClassCost(name, methods);
+  }
+
+  private List<ClassCost> classes() {
+    List<ClassCost> classes = new ArrayList<ClassCost>();
+    int[] costs = {1, 70, 3, 101, 45, 250, 70, 12, 101, 99};
+    for (int i = 0; i < costs.length; i++) {
+      classes.add(classCost((i % 3 == 0 ? "a.b." : "a.c.") + "C" + i, costs[i]));
+    }
+    return classes;
+  }
+
+  public void testMergedPartsSummarizeLikeTheWhole() throws Exception {
+    SummaryAggregate whole = new SummaryAggregate(costModel, 50, 100, 3);
+    SummaryAggregate[] parts = new SummaryAggregate[3];
+    for (int i = 0; i < parts.length; i++) {
+      parts[i] = new SummaryAggregate(costModel, 50, 100, 3);
+    }
+    List<ClassCost> classes = classes();
+    for (int i = 0; i < classes.size(); i++) {
+      whole.addClassCost(classes.get(i));
+      parts[i % parts.length].addClassCost(classes.get(i));
+    }
+    SummaryAggregate merged = new SummaryAggregate(costModel, 50, 100, 3);
+    for (SummaryAggregate part : parts) {
+      merged.merge(part);
+    }
+    assertEquals(whole.getClassCount(), merged.getClassCount());
+    assertEquals(whole.getExcellentCount(), merged.getExcellentCount());
+    assertEquals(whole.getGoodCount(), merged.getGoodCount());
+    assertEquals(whole.getNeedsWorkCount(), merged.getNeedsWorkCount());
+    assertEquals(whole.getWorstCost(), merged.getWorstCost());
+    assertEquals(whole.getOverall(), merged.getOverall());
+    assertEquals(whole.getHistogram().toList(), merged.getHistogram().toList());
+    assertEquals(new ArrayList<ClassCost>(whole.getWorstOffenders()),
+        new ArrayList<ClassCost>(merged.getWorstOffenders()));
+    assertEquals(3, merged.getWorstOffenders().size());
+    assertEquals(whole.getPackages().keySet(), merged.getPackages().keySet());
+    for (String packageName : whole.getPackages().keySet()) {
+      SummaryAggregate.PackageRollup expected = whole.getPackages().get(packageName);
+      SummaryAggregate.PackageRollup actual = merged.getPackages().get(packageName);
+      assertEquals(expected.getClassCount(), actual.getClassCount());
+      assertEquals(expected.getNeedsWorkCount(), actual.getNeedsWorkCount());
+      assertEquals(expected.getOverall(), actual.getOverall());
+    }
+  }
+
+  public void testPackageRollups() throws Exception {
+    SummaryAggregate aggregate = new SummaryAggregate(costModel, 50, 100, 3);
+    for (ClassCost classCost : classes()) {
+      aggregate.addClassCost(classCost);
+    }
+    SummaryAggregate.PackageRollup rollup = aggregate.getPackages().get("a.b");
+    // C0, C3, C6 and C9 cost 1, 101, 70 and 99.
+    assertEquals(4, rollup.getClassCount());
+    assertEquals(1, rollup.getExcellentCount());
+    assertEquals(2, rollup.getGoodCount());
+    assertEquals(1, rollup.getNeedsWorkCount());
+  }
+
+  public void testPackageReportsHaveTheCostOfTheirRollup() throws Exception {
+    GradeCategories grades = new GradeCategories(50, 100);
+    SummaryAggregate aggregate = new SummaryAggregate(costModel, 50, 100, 3);
+    PackageReport byClass = new PackageReport("a.b", grades, new WeightedAverage());
+    for (ClassCost classCost : classes()) {
+      aggregate.addClassCost(classCost);
+      if (classCost.getPackageName().equals("a.b")) {
+        byClass.addClass(classCost.getClassName(), costModel.computeClass(classCost));
+      }
+    }
+    SummaryAggregate.PackageRollup rollup = aggregate.getPackages().get("a.b");
+    assertEquals(byClass.getOverallCost(), new PackageReport(rollup, grades).getOverallCost());
+    ProjectReport project = new ProjectReport("index", grades, new WeightedAverage());
+    project.addPackage(rollup);
+    assertEquals("a.b", project.getUnitCosts().get(0).getName());
+    assertEquals(rollup.getOverall(), project.getUnitCosts().get(0).getCost());
+  }
+
+  public void testMergedTextReportPrintsLikeTheWhole() throws Exception {
+    ByteArrayOutputStream wholeOut = new ByteArrayOutputStream();
+    TextReportGenerator whole = new TextReportGenerator(new PrintStream(wholeOut), costModel,
+        50, 100, 3);
+    ByteArrayOutputStream mergedOut = new ByteArrayOutputStream();
+    TextReportGenerator merged = new TextReportGenerator(new PrintStream(mergedOut), costModel,
+        50, 100, 3);
+    SummaryAggregate part = new SummaryAggregate(costModel, 50, 100, 3);
+    List<ClassCost> classes = classes();
+    for (int i = 0; i < classes.size(); i++) {
+      whole.addClassCost(classes.get(i));
+      if (i < 4) {
+        merged.addClassCost(classes.get(i));
+      } else {
+        part.addClassCost(classes.get(i));
+      }
+    }
+    merged.merge(part);
+    whole.printFooter();
+    merged.printFooter();
+    assertEquals(wholeOut.toString(), mergedOut.toString());
+  }
+
+  public void testDifferentGradesDoNotMerge() throws Exception {
+    try {
+      new SummaryAggregate(costModel, 50, 100, 3).merge(
+          new SummaryAggregate(costModel, 10, 100, 3));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
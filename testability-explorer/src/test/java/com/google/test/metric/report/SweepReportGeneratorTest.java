@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report;
+
+import static java.util.Arrays.asList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.Cost;
+import com.google.test.metric.CyclomaticCost;
+import com.google.test.metric.GlobalCost;
+import com.google.test.metric.JavaType;
+import com.google.test.metric.MethodCost;
+import com.google.test.metric.SourceLocation;
+import com.google.test.metric.Variable;
+
+public class SweepReportGeneratorTest extends TestCase {
+
+  private final ReportOptions defaults =
+      new ReportOptions(1, 10, 1, 50, 100, 3, 10, 10, 1, 1, "", "");
+
+  private ClassCost classCost(String name, int cyclomatic, int global) {
+    MethodCost methodCost = new MethodCost(name, "void method()", 1, false, false, false);
+    methodCost.addCostSource(new CyclomaticCost(new SourceLocation(null, 1),
+        Cost.cyclomatic(cyclomatic)));
+    methodCost.addCostSource(new GlobalCost(new SourceLocation(null, 2),
+        new Variable("x", JavaType.INT, false, true), Cost.global(global)));
+    methodCost.link();
+    return new ClassCost(name, asList(methodCost));
+  }
+
+  public void testParameterSetsFallBackOnTheDefaults() throws Exception {
+    List<ReportOptions> sets =
+        SweepReportGenerator.parseParameterSets(" 2,5,1  1,10,3,20,40 ", defaults);
+    assertEquals(2, sets.size());
+    assertEquals(2.0, sets.get(0).getCyclomaticMultiplier());
+    assertEquals(5.0, sets.get(0).getGlobalMultiplier());
+    assertEquals(50, sets.get(0).getMaxExcellentCost());
+    assertEquals(3.0, sets.get(1).getConstructorMultiplier());
+    assertEquals(20, sets.get(1).getMaxExcellentCost());
+    assertEquals(40, sets.get(1).getMaxAcceptableCost());
+    assertEquals(3, sets.get(1).getWorstOffenderCount());
+  }
+
+  public void testMalformedParameterSets() throws Exception {
+    for (String sets : asList("1,10", "1,10,1,50", "1,ten,1")) {
+      try {
+        SweepReportGenerator.parseParameterSets(sets, defaults);
+        fail(sets);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testEachParameterSetScoresTheSameClasses() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    SweepReportGenerator report = new SweepReportGenerator(new PrintStream(bytes),
+        SweepReportGenerator.parseParameterSets("1,10,1 1,0,1", defaults));
+    report.printHeader();
+    report.addClassCost(classCost("a.Global", 1, 10));
+    report.addClassCost(classCost("a.Simple", 20, 0));
+    report.printFooter();
+    SummaryAggregate withGlobal = report.getSummaries().get(0);
+    assertEquals(1, withGlobal.getExcellentCount());
+    assertEquals(1, withGlobal.getNeedsWorkCount());
+    assertEquals("a.Global", withGlobal.getWorstOffenders().get(0).getClassName());
+    SummaryAggregate withoutGlobal = report.getSummaries().get(1);
+    assertEquals(2, withoutGlobal.getExcellentCount());
+    assertEquals("a.Simple", withoutGlobal.getWorstOffenders().get(0).getClassName());
+    String[] lines = bytes.toString().split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[1], lines[1].endsWith("a.Global"));
+    assertTrue(lines[2], lines[2].endsWith("a.Simple"));
+  }
+
+}
@@ -2,6 +2,10 @@ package com.google.test.metric.report;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -120,6 +124,92 @@ public class XMLReportDifferTest extends TestCase {
     assertEquals(null, methodDiff.getNewMetric());
   }
 
+  public void testStreamedDiffFindsTheSameDifferences() throws Exception {
+    String oldReport = "<testability>"
+        + "<class class='A' cost='1'><method name='a()' overall='1'><cost overall='1'/></method>"
+        + "</class>"
+        + "<class class='B' cost='5'><method name='b()' overall='5'/>"
+        + "<method name='c()' overall='2'/></class>"
+        + "<class class='D' cost='3'/>"
+        + "</testability>";
+    String newReport = "<testability>"
+        + "<class class='A' cost='1'><method name='a()' overall='1'/></class>"
+        + "<class class='B' cost='5'><method name='b()' overall='7'/>"
+        + "<method name='d()' overall='1'/></class>"
+        + "<class class='C' cost='4'><method name='c()' overall='4'/></class>"
+        + "</testability>";
+    XMLReportDiffer differ = new XMLReportDiffer();
+    Diff expected = differ.diff(makeTestDoc(oldReport), makeTestDoc(newReport));
+    Diff actual = differ.diff(new StringReader(oldReport), new StringReader(newReport));
+    expected.sort();
+    actual.sort();
+    assertEquals(describe(expected), describe(actual));
+    assertEquals("D 3->null []; B 5->5 [b() 5->7, c() 2->null, d() null->1]; "
+        + "C null->4 [c() null->4]; ", describe(actual));
+  }
+
+  public void testStreamedDiffNeedsClassesInTheOrderOfTheirNames() throws Exception {
+    try {
+      new XMLReportDiffer().diff(new StringReader("<a><class class='B'/><class class='A'/></a>"),
+          new StringReader("<a></a>"));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testStreamedDiffClosesTheReports() throws Exception {
+    final List<String> closed = new ArrayList<String>();
+    StringReader oldReport = new StringReader("<a><class class='B'/><class class='A'/></a>") {
+      @Override
+      public void close() {
+        closed.add("old");
+        super.close();
+      }
+    };
+    StringReader newReport = new StringReader("<a></a>") {
+      @Override
+      public void close() {
+        closed.add("new");
+        super.close();
+      }
+    };
+    try {
+      new XMLReportDiffer().diff(oldReport, newReport);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertTrue(closed.toString(), closed.contains("old") && closed.contains("new"));
+  }
+
+  private String describe(Diff diff) {
+    StringBuilder description = new StringBuilder();
+    for (Diff.ClassDiff classDiff : diff.getClassDiffs()) {
+      description.append(classDiff.getClassName()).append(" ")
+          .append(classDiff.getOldMetric()).append("->").append(classDiff.getNewMetric())
+          .append(" [");
+      String separator = "";
+      for (Diff.MethodDiff methodDiff : sortByName(classDiff.getMethodDiffs())) {
+        description.append(separator).append(methodDiff.getMethodName()).append(" ")
+            .append(methodDiff.getOldMetric()).append("->").append(methodDiff.getNewMetric());
+        separator = ", ";
+      }
+      description.append("]; ");
+    }
+    return description.toString();
+  }
+
+  private List<Diff.MethodDiff> sortByName(List<Diff.MethodDiff> methodDiffs) {
+    List<Diff.MethodDiff> sorted = new ArrayList<Diff.MethodDiff>(methodDiffs);
+    Collections.sort(sorted, new Comparator<Diff.MethodDiff>() {
+      public int compare(Diff.MethodDiff a, Diff.MethodDiff b) {
+        return a.getMethodName().compareTo(b.getMethodName());
+      }
+    });
+    return sorted;
+  }
+
   private Document makeTestDoc(String content)
       throws ParserConfigurationException, IOException, SAXException {
     DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
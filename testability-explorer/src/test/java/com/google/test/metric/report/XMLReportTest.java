@@ -34,6 +34,8 @@ import org.apache.xml.serialize.XMLSerializer;
 import org.xml.sax.SAXException;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import static java.util.Arrays.asList;
 
 public class XMLReportTest extends TestCase {
@@ -151,4 +153,56 @@ public class XMLReportTest extends TestCase {
     		"needsWork=\"2\" overall=\"2\">C1;C2;</testability>");
   }
 
+  public void testClassesAreWrittenByName() throws Exception {
+    XMLReportGenerator report = new XMLReportGenerator(handler, costModel, 1, 2, 3) {
+      @Override
+      public void writeCost(ClassCost cost) throws SAXException {
+        write(cost.getClassName() + ";");
+      }
+    };
+    MethodCost cheap = new MethodCost("", "M1", -1, false, false, false);
+    cheap.link();
+    MethodCost costly = new MethodCost("", "M2", -1, false, false, false);
+    costly.addCostSource(new CyclomaticCost(new SourceLocation(null, 0), Cost.cyclomatic(5)));
+    costly.link();
+    report.addClassCost(new ClassCost("B", asList(costly)));
+    report.addClassCost(new ClassCost("A", asList(cheap)));
+    report.addClassCost(new ClassCost("C", asList(costly)));
+    report.printFooter();
+    assertXMLEquals("<testability excellent=\"1\" good=\"0\" " +
+        "needsWork=\"2\" overall=\"5\">A;B;C;</testability>");
+  }
+
+  public void testAllClassesAreWrittenAsTheyAreAdded() throws Exception {
+    final List<String> written = new ArrayList<String>();
+    XMLReportGenerator report = new XMLReportGenerator(handler, costModel, 1, 2, 3, true) {
+      @Override
+      public void writeCost(ClassCost cost) throws SAXException {
+        written.add(cost.getClassName());
+        write(cost.getClassName() + ";");
+      }
+    };
+    MethodCost m1 = new MethodCost("", "M1", -1, false, false, false);
+    m1.addCostSource(new CyclomaticCost(new SourceLocation(null, 0), Cost.cyclomatic(2)));
+    m1.link();
+    report.printHeader();
+    report.addClassCost(new ClassCost("A", asList(m1)));
+    assertEquals(asList("A"), written);
+    report.addClassCost(new ClassCost("B", asList(m1)));
+    report.printFooter();
+    assertXMLEquals("<testability>A;B;<summary excellent=\"0\" good=\"0\" "
+        + "needsWork=\"2\" overall=\"2\"/>\n</testability>");
+  }
+
+  public void testPrintTruncatedClassCost() throws Exception {
+    XMLReportGenerator report = new XMLReportGenerator(handler, costModel, 0, 0, 0);
+    MethodCost m1 = new MethodCost("", "M1", -1, false, false, false);
+    m1.setTruncated(true);
+    ClassCost classCost = new ClassCost("className", asList(m1));
+    report.writeCost(classCost);
+    assertXMLEquals("<class class=\"className\" cost=\"0\" truncated=\"true\">"
+        + "<method cyclomatic=\"0\" global=\"0\" line=\"-1\" lod=\"0\" name=\"M1\" "
+        + "overall=\"0\" truncated=\"true\"/></class>");
+  }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2009 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.test.metric.report.issues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.test.metric.ClassCost;
+import com.google.test.metric.Cost;
+import com.google.test.metric.CostModel;
+import com.google.test.metric.CyclomaticCost;
+import com.google.test.metric.MethodCost;
+import com.google.test.metric.SourceLocation;
+
+public class DeferredIssuesReporterTest extends TestCase {
+
+  private final HypotheticalCostModel costModel = new HypotheticalCostModel(new CostModel());
+  private final List<String> determined = new ArrayList<String>();
+  private final DeferredIssuesReporter deferred = new DeferredIssuesReporter(50, 2, costModel) {
+    @Override
+    public ClassIssues determineIssues(ClassCost classCost) {
+      determined.add(classCost.getClassName());
+      return super.determineIssues(classCost);
+    }
+  };
+
+  private ClassCost classCost(String name, int... costs) {
+    List<MethodCost> methods = new ArrayList<MethodCost>();
+    for (int i = 0; i < costs.length; i++) {
+      MethodCost methodCost = new MethodCost(name, "void m" + i + "()", i, false, false, false);
+      methodCost.addCostSource(new CyclomaticCost(new SourceLocation(null, i),
+          Cost.cyclomatic(costs[i])));
+      methodCost.link();
+      methods.add(methodCost);
+    }
+    return new ClassCost(name, methods);
+  }
+
+  private List<ClassCost> classes() {
+    List<ClassCost> classes = new ArrayList<ClassCost>();
+    classes.add(classCost("Fine", 10, 20));
+    classes.add(classCost("Bad", 100, 60));
+    classes.add(classCost("Worse", 300, 10, 80));
+    classes.add(classCost("Worst", 400, 500));
+    return classes;
+  }
+
+  public void testReportsTheSameIssuesAsTheEagerReporter() throws Exception {
+    IssuesReporter eager = new IssuesReporter(new TriageIssuesQueue<ClassIssues>(50, 2,
+        new ClassIssues.TotalCostComparator()), costModel);
+    for (ClassCost classCost : classes()) {
+      eager.inspectClass(classCost);
+      deferred.inspectClass(classCost);
+    }
+    List<ClassIssues> expected = eager.getMostImportantIssues();
+    List<ClassIssues> actual = deferred.getMostImportantIssues();
+    assertEquals(2, actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getClassName(), actual.get(i).getClassName());
+      assertEquals(expected.get(i).getTotalCost(), actual.get(i).getTotalCost());
+      assertEquals(expected.get(i).getMostImportantIssues().toString(),
+          actual.get(i).getMostImportantIssues().toString());
+    }
+  }
+
+  public void testOnlyTheMostImportantClassesAreDetermined() throws Exception {
+    for (ClassCost classCost : classes()) {
+      deferred.inspectClass(classCost);
+    }
+    assertTrue(determined.isEmpty());
+    deferred.getMostImportantIssues();
+    deferred.getMostImportantIssues();
+    assertEquals("[Worst, Worse]", determined.toString());
+  }
+
+}
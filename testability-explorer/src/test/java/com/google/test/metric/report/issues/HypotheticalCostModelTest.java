@@ -15,6 +15,7 @@ import com.google.test.metric.MethodInvocationCost;
 import com.google.test.metric.MetricComputer;
 import static com.google.test.metric.Reason.NON_OVERRIDABLE_METHOD_CALL;
 import com.google.test.metric.SourceLocation;
+import com.google.test.metric.ViolationCost;
 import com.google.test.metric.testing.MetricComputerBuilder;
 
 import junit.framework.TestCase;
@@ -59,6 +60,21 @@ public class HypotheticalCostModelTest extends TestCase {
         hypotheticalCostModel.computeContributionFromMethod(classCost, methodCost));
   }
 
+  public void testContributionsOfSeveralMethodsOfOneClass() {
+    MethodCost empty = new MethodCost("Foo", "empty()", 3, false, false, false);
+    ClassCost classCost = new ClassCost("com.google.Foo",
+        Arrays.asList(doThingMethod, methodWithIndirectCosts, empty));
+    float total = (100 + (50 + 33) + 0) / 3;
+    assertEquals(1 - ((0 + (50 + 33) + 0) / 3) / total,
+        hypotheticalCostModel.computeContributionFromMethod(classCost, doThingMethod));
+    assertEquals(1 - ((100 + 33 + 0) / 3) / total,
+        hypotheticalCostModel.computeContributionFromMethod(classCost, methodWithIndirectCosts));
+    ViolationCost cyclomatic = methodWithIndirectCosts.getViolationCosts().get(0);
+    assertEquals(1 - ((100 + 33 + 0) / 3) / total,
+        hypotheticalCostModel.computeContributionFromIssue(classCost, methodWithIndirectCosts,
+            cyclomatic));
+  }
+
   private static class Example {
     public Example() {
       new CostUtil().instanceCost4();
@@ -124,4 +124,17 @@ public class TriageIssuesQueueTest extends TestCase {
     assertEquals("BadClass", smallQueue.asList().get(0).getClassName());
     assertEquals("NotGreatClass", smallQueue.asList().get(1).getClassName());
   }
+
+  public void testMergedQueuesKeepTheMostImportantOfBoth() throws Exception {
+    TriageIssuesQueue<ClassIssues> other = new TriageIssuesQueue<ClassIssues>(maxExcellentCost,
+        maxOffenders, new ClassIssues.TotalCostComparator());
+    for (int cost = 40; cost < 200; cost += 10) {
+      (cost % 20 == 0 ? queue : other).offer(new ClassIssues("Class" + cost, cost));
+    }
+    queue.merge(other);
+    assertEquals(maxOffenders, queue.size());
+    assertEquals("Class190", queue.asList().get(0).getClassName());
+    assertEquals("Class100", queue.poll().getClassName());
+    assertEquals("Class110", queue.peek().getClassName());
+  }
 }